@@ -0,0 +1,51 @@
+package nl.hemiron.objectstorage.controller;
+
+import nl.hemiron.objectstorage.service.StringUtils;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.hateoas.Link;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+
+/**
+ * Benchmarks building the HATEOAS links the controllers add to their responses, inside a (mock) request
+ * like the controllers do
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LinkBuildingBenchmark {
+
+    private final UUID projectId = UUID.randomUUID();
+
+    private final String objectName = StringUtils.encodeBase64("reports/2023/object-1.pdf");
+
+    @Setup
+    public void setup() {
+        var request = new MockHttpServletRequest("GET", "/buckets/benchmark");
+        request.setServerName("objectstorage.example.com");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @TearDown
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public Link bucketLink() {
+        return linkTo(methodOn(BucketController.class).getBucket(projectId, "benchmark")).withSelfRel();
+    }
+
+    @Benchmark
+    public Link downloadObjectLink() throws IOException {
+        return linkTo(methodOn(ObjectController.class).downloadObject(projectId, "benchmark", objectName, null, null)).withSelfRel();
+    }
+}
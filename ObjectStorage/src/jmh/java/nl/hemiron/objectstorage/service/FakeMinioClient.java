@@ -0,0 +1,89 @@
+package nl.hemiron.objectstorage.service;
+
+import io.minio.BucketExistsArgs;
+import io.minio.GetBucketTagsArgs;
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.Result;
+import io.minio.messages.Item;
+import io.minio.messages.Tags;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MinioClient serving a synthetic bucket from memory, so benchmarks measure our own code instead of MinIO.
+ * Every bucket exists, belongs to the given project and contains the given amount of objects,
+ * of which every tenth is a directory in non-recursive listings
+ */
+public class FakeMinioClient extends MinioClient {
+
+    private final Tags tags;
+
+    private final List<Result<Item>> directoryListing = new ArrayList<>();
+
+    private final List<Result<Item>> recursiveListing = new ArrayList<>();
+
+    public FakeMinioClient(String projectId, int objectCount) {
+        super(MinioClient.builder()
+                .endpoint("http://localhost:9000")
+                .credentials("benchmark", "benchmark")
+                .build());
+        this.tags = Tags.newBucketTags(Map.of("projectId", projectId));
+
+        var lastModified = ZonedDateTime.now();
+        for (int i = 0; i < objectCount; i++) {
+            var name = "reports/2023/object-" + i + ".pdf";
+            recursiveListing.add(new Result<>(item(name, 1024L + i, false, lastModified)));
+            directoryListing.add(new Result<>(i % 10 == 0
+                    ? item("reports/2023/directory-" + i + "/", 0L, true, lastModified)
+                    : item(name, 1024L + i, false, lastModified)));
+        }
+    }
+
+    @Override
+    public boolean bucketExists(BucketExistsArgs args) {
+        return true;
+    }
+
+    @Override
+    public Tags getBucketTags(GetBucketTagsArgs args) {
+        return tags;
+    }
+
+    @Override
+    public Iterable<Result<Item>> listObjects(ListObjectsArgs args) {
+        return args.recursive() ? recursiveListing : directoryListing;
+    }
+
+    private static Item item(String name, long size, boolean isDir, ZonedDateTime lastModified) {
+        return new Item(name) {
+            @Override
+            public String objectName() {
+                return name;
+            }
+
+            @Override
+            public long size() {
+                return size;
+            }
+
+            @Override
+            public boolean isDir() {
+                return isDir;
+            }
+
+            @Override
+            public String etag() {
+                return "\"d41d8cd98f00b204e9800998ecf8427e\"";
+            }
+
+            @Override
+            public ZonedDateTime lastModified() {
+                return lastModified;
+            }
+        };
+    }
+}
@@ -0,0 +1,102 @@
+package nl.hemiron.objectstorage.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.hemiron.objectstorage.model.response.DirectoryContentsPage;
+import nl.hemiron.objectstorage.model.response.GetBucketResponse;
+import okhttp3.OkHttpClient;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the per-request work of MinioService on top of a FakeMinioClient with a synthetic listing
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MinioServiceBenchmark {
+
+    private static final String BUCKET_NAME = "benchmark";
+
+    private static final String ROOT_DIRECTORY = StringUtils.encodeBase64("/");
+
+    private static final int PAGE_SIZE = 1000;
+
+    @Param({"100", "10000"})
+    public int objectCount;
+
+    private final UUID projectId = UUID.randomUUID();
+
+    private ExecutorService executor;
+
+    private BucketUsageService bucketUsageService;
+
+    private MinioService minioService;
+
+    @Setup
+    public void setup() {
+        executor = Executors.newFixedThreadPool(4);
+        bucketUsageService = new BucketUsageService(900);
+        var properties = new Binder(new MapConfigurationPropertySource(Map.of(
+                "minio.archive.prefetch", "2",
+                "minio.upload.bulk.parallelism", "2"))).bindOrCreate("minio", MinioServiceProperties.class);
+        minioService = new MinioService(
+                properties,
+                new BucketOwnershipCache(100, 60, 5),
+                bucketUsageService,
+                new ConcurrentTaskExecutor(executor),
+                new JobService(new ProjectBulkhead(executor, 1, 10), 60, "local", new JobQueue(null, "objectstorage.jobs", "objectstorage.jobs.updates")),
+                new ConcurrentTaskExecutor(executor),
+                new ProjectBulkhead(executor, 8, 100),
+                new MinioMetrics(new SimpleMeterRegistry()),
+                new OkHttpClient(),
+                new ConcurrentTaskExecutor(executor),
+                new ConcurrentTaskExecutor(executor),
+                new ObjectCache(false, 0, 0, "", 0, 1, new SimpleMeterRegistry()),
+                new RabbitMQProducer(null, new ObjectMapper(), new SimpleMeterRegistry(), false, "objectstorage", "objectstorage", 10, 10, 1000, 1000, ""),
+                new PresignedUrlCache(3600, 900, 1000, new SimpleMeterRegistry()),
+                new MetadataIndex(false, "", 60, 1000000, 5000000, "local", new SimpleMeterRegistry()),
+                new ConcurrentTaskExecutor(Executors.newFixedThreadPool(4)),
+                new ReadCoalescer(true, 300_000, new SimpleMeterRegistry()),
+                new ConcurrentTaskExecutor(executor));
+        minioService.minioClient = new FakeMinioClient(projectId.toString(), objectCount);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Maps a page of the directory listing to ItemResponses
+     */
+    @Benchmark
+    public DirectoryContentsPage getDirectoryContents() throws Exception {
+        return minioService.getDirectoryContents(BUCKET_NAME, ROOT_DIRECTORY, projectId, null, PAGE_SIZE);
+    }
+
+    /**
+     * Describes a bucket of which the usage isn't tracked yet, so its size is aggregated from a full listing
+     */
+    @Benchmark
+    public GetBucketResponse getBucketByNameAggregatingListing() throws Exception {
+        bucketUsageService.remove(BUCKET_NAME);
+        return minioService.getBucketByName(BUCKET_NAME, projectId);
+    }
+
+    /**
+     * Describes a bucket of which the usage is tracked
+     */
+    @Benchmark
+    public GetBucketResponse getBucketByNameTrackedUsage() throws Exception {
+        return minioService.getBucketByName(BUCKET_NAME, projectId);
+    }
+}
@@ -0,0 +1,36 @@
+package nl.hemiron.objectstorage.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StringUtilsBenchmark {
+
+    @Param({"report.pdf", "projects/hemiron/reports/2023/quarterly/q4-financial-report-final-version-2.pdf"})
+    public String objectName;
+
+    private String encodedObjectName;
+
+    @Setup
+    public void setup() {
+        encodedObjectName = StringUtils.encodeBase64(objectName);
+    }
+
+    @Benchmark
+    public String encodeBase64() {
+        return StringUtils.encodeBase64(objectName);
+    }
+
+    @Benchmark
+    public String decodeBase64() {
+        return StringUtils.decodeBase64(encodedObjectName);
+    }
+
+    @Benchmark
+    public String getFilenameFromBase64() {
+        return StringUtils.getFilenameFromBase64(encodedObjectName);
+    }
+}
@@ -0,0 +1,453 @@
+package nl.hemiron.objectstorage.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory stand-in for MinIO, serving the subset of the S3 API the service uses over plain HTTP.
+ * Requests aren't authenticated, signatures (also those of presigned URLs) are ignored
+ */
+public class FakeS3Server implements AutoCloseable {
+
+    private static final String NAMESPACE = "http://s3.amazonaws.com/doc/2006-03-01/";
+
+    private static final String LAST_CODE_POINT = new String(Character.toChars(Character.MAX_CODE_POINT));
+
+    private static final DateTimeFormatter ISO_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US)
+            .withZone(ZoneOffset.UTC);
+
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US)
+            .withZone(ZoneOffset.UTC);
+
+    private static final Pattern TAG = Pattern.compile("<Tag>\\s*<Key>(.*?)</Key>\\s*<Value>(.*?)</Value>\\s*</Tag>", Pattern.DOTALL);
+
+    private static final Pattern KEY = Pattern.compile("<Key>(.*?)</Key>", Pattern.DOTALL);
+
+    private static final Pattern PART_NUMBER = Pattern.compile("<PartNumber>(\\d+)</PartNumber>");
+
+    private record StoredObject(byte[] data, String etag, String contentType, Instant lastModified) {
+    }
+
+    private static class Bucket {
+        private final Instant createdAt = Instant.now();
+        private final ConcurrentSkipListMap<String, StoredObject> objects = new ConcurrentSkipListMap<>();
+        private volatile Map<String, String> tags = Map.of();
+    }
+
+    private record Upload(String bucketName, String key, String contentType, ConcurrentSkipListMap<Integer, byte[]> parts) {
+    }
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+
+    private final HttpServer server;
+
+    public FakeS3Server(int port) throws IOException {
+        // Without TCP_NODELAY, small responses wait for delayed ACKs and every call takes ~40ms
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        var threadNumber = new AtomicInteger();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            var thread = new Thread(runnable, "fake-s3-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public String getEndpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            var body = exchange.getRequestBody().readAllBytes();
+            var path = exchange.getRequestURI().getPath();
+            var query = parseQuery(exchange.getRequestURI().getRawQuery());
+            var method = exchange.getRequestMethod();
+
+            var separator = path.indexOf('/', 1);
+            var bucketName = path.length() <= 1 ? null : path.substring(1, separator < 0 ? path.length() : separator);
+            var key = separator < 0 || separator == path.length() - 1 ? null : path.substring(separator + 1);
+
+            if (bucketName == null) {
+                listBuckets(exchange);
+            } else if (key == null) {
+                handleBucket(exchange, method, bucketName, query, body);
+            } else {
+                handleObject(exchange, method, bucketName, key, query, body);
+            }
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, "InternalError", e.toString());
+        }
+    }
+
+    private void handleBucket(HttpExchange exchange, String method, String bucketName, Map<String, String> query, byte[] body) throws IOException {
+        var bucket = buckets.get(bucketName);
+        if (method.equals("PUT") && !query.containsKey("tagging")) {
+            if (buckets.putIfAbsent(bucketName, new Bucket()) != null) {
+                sendError(exchange, 409, "BucketAlreadyOwnedByYou", "Bucket already exists");
+                return;
+            }
+            send(exchange, 200, null);
+            return;
+        }
+        if (bucket == null) {
+            sendError(exchange, 404, "NoSuchBucket", "The specified bucket does not exist");
+            return;
+        }
+
+        switch (method) {
+            case "HEAD" -> send(exchange, 200, null);
+            case "GET" -> {
+                if (query.containsKey("location")) {
+                    sendXml(exchange, "<LocationConstraint xmlns=\"" + NAMESPACE + "\"></LocationConstraint>");
+                } else if (query.containsKey("tagging")) {
+                    getBucketTags(exchange, bucket);
+                } else {
+                    listObjects(exchange, bucketName, bucket, query);
+                }
+            }
+            case "PUT" -> {
+                var tags = new LinkedHashMap<String, String>();
+                Matcher matcher = TAG.matcher(new String(body, StandardCharsets.UTF_8));
+                while (matcher.find()) {
+                    tags.put(unescape(matcher.group(1)), unescape(matcher.group(2)));
+                }
+                bucket.tags = tags;
+                send(exchange, 200, null);
+            }
+            case "POST" -> deleteObjects(exchange, bucket, body);
+            case "DELETE" -> {
+                if (query.containsKey("tagging")) {
+                    bucket.tags = Map.of();
+                } else if (!bucket.objects.isEmpty()) {
+                    sendError(exchange, 409, "BucketNotEmpty", "The bucket you tried to delete is not empty");
+                    return;
+                } else {
+                    buckets.remove(bucketName);
+                }
+                send(exchange, 204, null);
+            }
+            default -> sendError(exchange, 405, "MethodNotAllowed", "Method not allowed");
+        }
+    }
+
+    private void handleObject(HttpExchange exchange, String method, String bucketName, String key, Map<String, String> query, byte[] body) throws IOException {
+        var bucket = buckets.get(bucketName);
+        if (bucket == null) {
+            sendError(exchange, 404, "NoSuchBucket", "The specified bucket does not exist");
+            return;
+        }
+        var uploadId = query.get("uploadId");
+
+        switch (method) {
+            case "PUT" -> {
+                if (uploadId != null) {
+                    var upload = uploads.get(uploadId);
+                    if (upload == null) {
+                        sendError(exchange, 404, "NoSuchUpload", "The specified upload does not exist");
+                        return;
+                    }
+                    upload.parts().put(Integer.parseInt(query.get("partNumber")), body);
+                    exchange.getResponseHeaders().set("ETag", etag(body));
+                    send(exchange, 200, null);
+                    return;
+                }
+                var object = new StoredObject(body, etag(body), contentType(exchange), Instant.now());
+                bucket.objects.put(key, object);
+                exchange.getResponseHeaders().set("ETag", object.etag());
+                send(exchange, 200, null);
+            }
+            case "POST" -> {
+                if (query.containsKey("uploads")) {
+                    var id = UUID.randomUUID().toString();
+                    uploads.put(id, new Upload(bucketName, key, contentType(exchange), new ConcurrentSkipListMap<>()));
+                    sendXml(exchange, "<InitiateMultipartUploadResult xmlns=\"" + NAMESPACE + "\"><Bucket>" + escape(bucketName)
+                            + "</Bucket><Key>" + escape(key) + "</Key><UploadId>" + id + "</UploadId></InitiateMultipartUploadResult>");
+                    return;
+                }
+                completeMultipartUpload(exchange, bucket, key, uploadId, body);
+            }
+            case "DELETE" -> {
+                if (uploadId != null) {
+                    uploads.remove(uploadId);
+                } else {
+                    bucket.objects.remove(key);
+                }
+                send(exchange, 204, null);
+            }
+            case "GET", "HEAD" -> {
+                if (uploadId != null) {
+                    listParts(exchange, bucketName, key, uploadId);
+                    return;
+                }
+                var object = bucket.objects.get(key);
+                if (object == null) {
+                    sendError(exchange, 404, "NoSuchKey", "The specified key does not exist");
+                    return;
+                }
+                getObject(exchange, method, object);
+            }
+            default -> sendError(exchange, 405, "MethodNotAllowed", "Method not allowed");
+        }
+    }
+
+    private void listBuckets(HttpExchange exchange) throws IOException {
+        var xml = new StringBuilder("<ListAllMyBucketsResult xmlns=\"" + NAMESPACE + "\"><Owner><ID>fake</ID><DisplayName>fake</DisplayName></Owner><Buckets>");
+        new TreeMap<>(buckets).forEach((name, bucket) -> xml.append("<Bucket><Name>").append(escape(name))
+                .append("</Name><CreationDate>").append(ISO_DATE.format(bucket.createdAt)).append("</CreationDate></Bucket>"));
+        sendXml(exchange, xml.append("</Buckets></ListAllMyBucketsResult>").toString());
+    }
+
+    private void getBucketTags(HttpExchange exchange, Bucket bucket) throws IOException {
+        var tags = bucket.tags;
+        if (tags.isEmpty()) {
+            sendError(exchange, 404, "NoSuchTagSet", "The TagSet does not exist");
+            return;
+        }
+        var xml = new StringBuilder("<Tagging xmlns=\"" + NAMESPACE + "\"><TagSet>");
+        tags.forEach((key, value) -> xml.append("<Tag><Key>").append(escape(key)).append("</Key><Value>")
+                .append(escape(value)).append("</Value></Tag>"));
+        sendXml(exchange, xml.append("</TagSet></Tagging>").toString());
+    }
+
+    /**
+     * ListObjectsV2, continuation tokens are the last returned key (or common prefix followed by the last code point)
+     */
+    private void listObjects(HttpExchange exchange, String bucketName, Bucket bucket, Map<String, String> query) throws IOException {
+        var prefix = query.getOrDefault("prefix", "");
+        var delimiter = query.get("delimiter");
+        var maxKeys = Integer.parseInt(query.getOrDefault("max-keys", "1000"));
+        var startAfter = query.getOrDefault("start-after", "");
+        var continuationToken = query.get("continuation-token");
+        var marker = continuationToken != null && continuationToken.compareTo(startAfter) > 0 ? continuationToken : startAfter;
+
+        var contents = new StringBuilder();
+        var commonPrefixes = new StringBuilder();
+        int count = 0;
+        String lastPrefix = null;
+        String nextToken = null;
+        boolean truncated = false;
+        for (var entry : bucket.objects.tailMap(marker, false).entrySet()) {
+            var key = entry.getKey();
+            if (!key.startsWith(prefix)) {
+                if (key.compareTo(prefix) > 0) {
+                    break;
+                }
+                continue;
+            }
+            String commonPrefix = null;
+            if (delimiter != null && !delimiter.isEmpty()) {
+                var index = key.indexOf(delimiter, prefix.length());
+                if (index >= 0) {
+                    commonPrefix = key.substring(0, index + delimiter.length());
+                    if (commonPrefix.equals(lastPrefix)) {
+                        continue;
+                    }
+                }
+            }
+            if (count == maxKeys) {
+                truncated = true;
+                break;
+            }
+            count++;
+            if (commonPrefix != null) {
+                lastPrefix = commonPrefix;
+                nextToken = commonPrefix + LAST_CODE_POINT;
+                commonPrefixes.append("<CommonPrefixes><Prefix>").append(escape(commonPrefix)).append("</Prefix></CommonPrefixes>");
+            } else {
+                var object = entry.getValue();
+                nextToken = key;
+                contents.append("<Contents><Key>").append(escape(key)).append("</Key><LastModified>")
+                        .append(ISO_DATE.format(object.lastModified())).append("</LastModified><ETag>").append(escape(object.etag()))
+                        .append("</ETag><Size>").append(object.data().length).append("</Size><StorageClass>STANDARD</StorageClass></Contents>");
+            }
+        }
+        var xml = "<ListBucketResult xmlns=\"" + NAMESPACE + "\"><Name>" + escape(bucketName) + "</Name><Prefix>" + escape(prefix)
+                + "</Prefix><KeyCount>" + count + "</KeyCount><MaxKeys>" + maxKeys + "</MaxKeys>"
+                + (delimiter == null ? "" : "<Delimiter>" + escape(delimiter) + "</Delimiter>")
+                + "<IsTruncated>" + truncated + "</IsTruncated>"
+                + (truncated ? "<NextContinuationToken>" + escape(nextToken) + "</NextContinuationToken>" : "")
+                + contents + commonPrefixes + "</ListBucketResult>";
+        sendXml(exchange, xml);
+    }
+
+    private void deleteObjects(HttpExchange exchange, Bucket bucket, byte[] body) throws IOException {
+        Matcher matcher = KEY.matcher(new String(body, StandardCharsets.UTF_8));
+        while (matcher.find()) {
+            bucket.objects.remove(unescape(matcher.group(1)));
+        }
+        // Quiet mode, only errors are reported
+        sendXml(exchange, "<DeleteResult xmlns=\"" + NAMESPACE + "\"></DeleteResult>");
+    }
+
+    private void completeMultipartUpload(HttpExchange exchange, Bucket bucket, String key, String uploadId, byte[] body) throws IOException {
+        var upload = uploadId == null ? null : uploads.remove(uploadId);
+        if (upload == null) {
+            sendError(exchange, 404, "NoSuchUpload", "The specified upload does not exist");
+            return;
+        }
+        var data = new ByteArrayOutputStream();
+        Matcher matcher = PART_NUMBER.matcher(new String(body, StandardCharsets.UTF_8));
+        int parts = 0;
+        while (matcher.find()) {
+            var part = upload.parts().get(Integer.parseInt(matcher.group(1)));
+            if (part == null) {
+                sendError(exchange, 400, "InvalidPart", "One or more of the specified parts could not be found");
+                return;
+            }
+            data.write(part);
+            parts++;
+        }
+        var bytes = data.toByteArray();
+        var etag = "\"" + etag(bytes).replace("\"", "") + "-" + parts + "\"";
+        bucket.objects.put(key, new StoredObject(bytes, etag, upload.contentType(), Instant.now()));
+        sendXml(exchange, "<CompleteMultipartUploadResult xmlns=\"" + NAMESPACE + "\"><Location>/" + escape(upload.bucketName()) + "/" + escape(key)
+                + "</Location><Bucket>" + escape(upload.bucketName()) + "</Bucket><Key>" + escape(key) + "</Key><ETag>" + escape(etag)
+                + "</ETag></CompleteMultipartUploadResult>");
+    }
+
+    private void listParts(HttpExchange exchange, String bucketName, String key, String uploadId) throws IOException {
+        var upload = uploads.get(uploadId);
+        if (upload == null) {
+            sendError(exchange, 404, "NoSuchUpload", "The specified upload does not exist");
+            return;
+        }
+        var lastPartNumber = upload.parts().isEmpty() ? 0 : upload.parts().lastKey();
+        var xml = new StringBuilder("<ListPartsResult xmlns=\"" + NAMESPACE + "\"><Bucket>" + escape(bucketName) + "</Bucket><Key>"
+                + escape(key) + "</Key><UploadId>" + uploadId + "</UploadId>"
+                + "<Initiator><ID>fake</ID><DisplayName>fake</DisplayName></Initiator><Owner><ID>fake</ID><DisplayName>fake</DisplayName></Owner>"
+                + "<StorageClass>STANDARD</StorageClass><PartNumberMarker>0</PartNumberMarker><NextPartNumberMarker>" + lastPartNumber
+                + "</NextPartNumberMarker><MaxParts>10000</MaxParts><IsTruncated>false</IsTruncated>");
+        upload.parts().forEach((number, part) -> xml.append("<Part><PartNumber>").append(number).append("</PartNumber><LastModified>")
+                .append(ISO_DATE.format(Instant.now())).append("</LastModified><ETag>").append(escape(etag(part)))
+                .append("</ETag><Size>").append(part.length).append("</Size></Part>"));
+        sendXml(exchange, xml.append("</ListPartsResult>").toString());
+    }
+
+    private void getObject(HttpExchange exchange, String method, StoredObject object) throws IOException {
+        var headers = exchange.getResponseHeaders();
+        headers.set("ETag", object.etag());
+        headers.set("Last-Modified", HTTP_DATE.format(object.lastModified()));
+        headers.set("Content-Type", object.contentType());
+        headers.set("Accept-Ranges", "bytes");
+
+        if (method.equals("HEAD")) {
+            headers.set("Content-Length", Long.toString(object.data().length));
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+
+        var data = object.data();
+        int start = 0;
+        int end = data.length - 1;
+        int status = 200;
+        var range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null && range.startsWith("bytes=")) {
+            var bounds = range.substring("bytes=".length()).split("-", -1);
+            start = Integer.parseInt(bounds[0]);
+            if (!bounds[1].isEmpty()) {
+                end = Math.min(end, Integer.parseInt(bounds[1]));
+            }
+            headers.set("Content-Range", "bytes " + start + "-" + end + "/" + data.length);
+            status = 206;
+        }
+        int length = Math.max(0, end - start + 1);
+        exchange.sendResponseHeaders(status, length == 0 ? -1 : length);
+        if (length > 0) {
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(data, start, length);
+            }
+        }
+    }
+
+    private static String contentType(HttpExchange exchange) {
+        var contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        return contentType == null ? "application/octet-stream" : contentType;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            var index = parameter.indexOf('=');
+            var name = URLDecoder.decode(index < 0 ? parameter : parameter.substring(0, index), StandardCharsets.UTF_8);
+            var value = index < 0 ? "" : URLDecoder.decode(parameter.substring(index + 1), StandardCharsets.UTF_8);
+            query.put(name, value);
+        }
+        return query;
+    }
+
+    private static String etag(byte[] data) {
+        try {
+            return "\"" + HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(data)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sendXml(HttpExchange exchange, String xml) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        send(exchange, 200, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + xml);
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String code, String message) throws IOException {
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        var path = exchange.getRequestURI().getPath();
+        send(exchange, status, "<?xml version=\"1.0\" encoding=\"UTF-8\"?><Error><Code>" + code + "</Code><Message>" + escape(message)
+                + "</Message><Resource>" + escape(path) + "</Resource><RequestId>fake</RequestId><HostId>fake</HostId></Error>");
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        var bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static String unescape(String value) {
+        return value.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&apos;", "'").replace("&amp;", "&");
+    }
+}
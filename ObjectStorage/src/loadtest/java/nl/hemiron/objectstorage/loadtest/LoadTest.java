@@ -0,0 +1,321 @@
+package nl.hemiron.objectstorage.loadtest;
+
+import nl.hemiron.objectstorage.ObjectStorageApplication;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Boots ObjectStorageApplication against a FakeS3Server and drives the endpoints of BucketController and
+ * ObjectController one workload at a time, reporting throughput, latency percentiles and the allocation rate
+ * of the application while the workload ran.
+ * <p>
+ * Options (all optional): concurrency=16 duration=20 warmup=5 objects=200 buckets=20
+ * sizes=1024:60,65536:30,1048576:9,16777216:1 (object size in bytes : weight)
+ * workloads=upload,download,list-directory,list-buckets,get-bucket,delete
+ */
+public class LoadTest {
+
+    private static final String BUCKET_NAME = "loadtest";
+
+    private static final String PROJECT_ID = UUID.randomUUID().toString();
+
+    /**
+     * Threads of the load generator and the fake S3 server, which aren't counted in the allocation rate
+     */
+    private static final List<String> EXCLUDED_THREAD_PREFIXES = List.of("loadtest-", "fake-s3-", "HttpClient");
+
+    @FunctionalInterface
+    private interface Operation {
+        int execute() throws Exception;
+    }
+
+    private record Options(int concurrency, Duration duration, Duration warmup, int objects, int buckets,
+                           long[] sizes, int[] cumulativeWeights, List<String> workloads) {
+
+        static Options parse(String[] args) {
+            Map<String, String> values = new HashMap<>();
+            for (String arg : args) {
+                var index = arg.indexOf('=');
+                if (index < 0) {
+                    throw new IllegalArgumentException("Expected option=value, got " + arg);
+                }
+                values.put(arg.substring(0, index), arg.substring(index + 1));
+            }
+
+            var sizeWeights = values.getOrDefault("sizes", "1024:60,65536:30,1048576:9,16777216:1").split(",");
+            var sizes = new long[sizeWeights.length];
+            var cumulativeWeights = new int[sizeWeights.length];
+            int total = 0;
+            for (int i = 0; i < sizeWeights.length; i++) {
+                var sizeWeight = sizeWeights[i].split(":");
+                sizes[i] = Long.parseLong(sizeWeight[0]);
+                total += sizeWeight.length > 1 ? Integer.parseInt(sizeWeight[1]) : 1;
+                cumulativeWeights[i] = total;
+            }
+
+            return new Options(
+                    Integer.parseInt(values.getOrDefault("concurrency", "16")),
+                    Duration.ofSeconds(Long.parseLong(values.getOrDefault("duration", "20"))),
+                    Duration.ofSeconds(Long.parseLong(values.getOrDefault("warmup", "5"))),
+                    Integer.parseInt(values.getOrDefault("objects", "200")),
+                    Integer.parseInt(values.getOrDefault("buckets", "20")),
+                    sizes,
+                    cumulativeWeights,
+                    List.of(values.getOrDefault("workloads", "upload,download,list-directory,list-buckets,get-bucket,delete").split(",")));
+        }
+
+        long randomSize() {
+            var weight = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            for (int i = 0; i < cumulativeWeights.length; i++) {
+                if (weight < cumulativeWeights[i]) {
+                    return sizes[i];
+                }
+            }
+            return sizes[sizes.length - 1];
+        }
+    }
+
+    private record Result(String workload, long requests, long errors, Duration duration, Histogram latencies,
+                          long allocatedBytes) {
+    }
+
+    private final Options options;
+
+    private final String baseUrl;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    private final byte[] payload;
+
+    private final List<String> preloadedObjects = new ArrayList<>();
+
+    private final Queue<String> uploadedObjects = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong uploadCounter = new AtomicLong();
+
+    private LoadTest(Options options, String baseUrl) {
+        this.options = options;
+        this.baseUrl = baseUrl;
+        this.payload = new byte[(int) Arrays.stream(options.sizes()).max().orElse(0)];
+        new Random(42).nextBytes(payload);
+    }
+
+    public static void main(String[] args) throws Exception {
+        var options = Options.parse(args);
+        try (var s3 = new FakeS3Server(0);
+             var context = new SpringApplicationBuilder(ObjectStorageApplication.class)
+                     .properties(
+                             "server.port=0",
+                             "minio.builder.endpoint=" + s3.getEndpoint(),
+                             "minio.builder.access.key=loadtest",
+                             "minio.builder.secret.key=loadtest",
+                             "spring.mvc.cors.allowed-origins=*",
+                             "spring.mvc.cors.allowed-methods=*",
+                             "spring.mvc.cors.allowed-headers=*",
+                             "spring.servlet.multipart.max-file-size=-1",
+                             "spring.servlet.multipart.max-request-size=-1",
+                             "logging.level.root=WARN")
+                     .run()) {
+            var port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            var loadTest = new LoadTest(options, "http://127.0.0.1:" + port);
+            loadTest.setUp();
+
+            List<Result> results = new ArrayList<>();
+            for (String workload : options.workloads()) {
+                loadTest.run(workload, options.warmup());
+                results.add(loadTest.run(workload, options.duration()));
+            }
+            print(options, results);
+        }
+    }
+
+    private void setUp() throws Exception {
+        createBucket(BUCKET_NAME);
+        for (int i = 0; i < options.buckets(); i++) {
+            createBucket(BUCKET_NAME + "-" + i);
+        }
+        for (int i = 0; i < options.objects(); i++) {
+            // Half of the objects in subdirectories, so directory listings contain both
+            var name = i % 2 == 0 ? "preload/object-" + i : "preload/directory-" + (i % 20) + "/object-" + i;
+            var encodedName = upload(name, options.randomSize());
+            preloadedObjects.add(encodedName);
+        }
+    }
+
+    private Result run(String workload, Duration duration) throws InterruptedException {
+        var operation = operation(workload);
+        var latencies = new ConcurrentHistogram(3);
+        var requests = new AtomicLong();
+        var errors = new AtomicLong();
+        var threadNumber = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(options.concurrency(),
+                runnable -> new Thread(runnable, "loadtest-" + threadNumber.incrementAndGet()));
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        for (int i = 0; i < options.concurrency(); i++) {
+            workers.execute(() -> {
+                while (System.nanoTime() < deadline) {
+                    long requestStart = System.nanoTime();
+                    try {
+                        if (operation.execute() >= 400) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                    latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - requestStart));
+                    requests.incrementAndGet();
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(duration.toSeconds() + 60, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - start;
+
+        return new Result(workload, requests.get(), errors.get(), Duration.ofNanos(elapsed), latencies,
+                allocatedBytes() - allocatedBefore);
+    }
+
+    private Operation operation(String workload) {
+        var encodedDirectory = encode("preload/");
+        return switch (workload) {
+            case "upload" -> () -> {
+                var name = "upload/object-" + uploadCounter.incrementAndGet();
+                var response = httpClient.send(request(objectPath(encode(name)))
+                        .PUT(HttpRequest.BodyPublishers.ofByteArray(payload, 0, (int) options.randomSize()))
+                        .build(), HttpResponse.BodyHandlers.discarding());
+                uploadedObjects.add(encode(name));
+                return response.statusCode();
+            };
+            case "download" -> () -> httpClient.send(request(objectPath(randomPreloadedObject())).GET().build(),
+                    HttpResponse.BodyHandlers.discarding()).statusCode();
+            case "list-directory" -> () -> httpClient.send(request(objectPath("directory/" + encodedDirectory) + "?limit=100")
+                    .header("Accept", "application/json")
+                    .GET().build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+            case "list-buckets" -> () -> httpClient.send(request("/buckets").GET().build(),
+                    HttpResponse.BodyHandlers.discarding()).statusCode();
+            case "get-bucket" -> () -> httpClient.send(request("/buckets/" + BUCKET_NAME).GET().build(),
+                    HttpResponse.BodyHandlers.discarding()).statusCode();
+            case "delete" -> () -> {
+                var name = uploadedObjects.poll();
+                if (name == null) {
+                    name = encode("missing/object-" + uploadCounter.incrementAndGet());
+                }
+                return httpClient.send(request("/buckets/" + BUCKET_NAME + "/objects")
+                        .header("Content-Type", "application/json")
+                        .method("DELETE", HttpRequest.BodyPublishers.ofString("[\"" + name + "\"]"))
+                        .build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+            };
+            default -> throw new IllegalArgumentException("Unknown workload " + workload);
+        };
+    }
+
+    private void createBucket(String name) throws Exception {
+        var response = httpClient.send(request("/buckets")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"name\":\"" + name + "\"}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 400) {
+            throw new IllegalStateException("Could not create bucket " + name + ": " + response.statusCode() + " " + response.body());
+        }
+    }
+
+    private String upload(String name, long size) throws Exception {
+        var encodedName = encode(name);
+        var response = httpClient.send(request(objectPath(encodedName))
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(payload, 0, (int) size))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 400) {
+            throw new IllegalStateException("Could not upload " + name + ": " + response.statusCode() + " " + response.body());
+        }
+        return encodedName;
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Project-Id", PROJECT_ID)
+                .timeout(Duration.ofSeconds(60));
+    }
+
+    private String objectPath(String encodedName) {
+        return "/buckets/" + BUCKET_NAME + "/objects/" + encodedName;
+    }
+
+    private String randomPreloadedObject() {
+        return preloadedObjects.get(ThreadLocalRandom.current().nextInt(preloadedObjects.size()));
+    }
+
+    /**
+     * Base64 encodes the name like the clients do. A '/' in the encoded name can't be used in a path,
+     * so the name gets a suffix until its encoding doesn't contain one
+     */
+    private static String encode(String name) {
+        var candidate = name;
+        for (int suffix = 1; ; suffix++) {
+            var encoded = Base64.getEncoder().encodeToString(candidate.getBytes(StandardCharsets.UTF_8));
+            if (!encoded.contains("/")) {
+                return encoded;
+            }
+            candidate = name + "-" + suffix;
+        }
+    }
+
+    /**
+     * Bytes allocated so far by the live threads of the application. Threads that ended in the meantime are missed,
+     * which is fine for the pooled request and MinIO threads
+     */
+    private static long allocatedBytes() {
+        var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (ThreadInfo thread : threadBean.getThreadInfo(threadBean.getAllThreadIds())) {
+            if (thread == null || EXCLUDED_THREAD_PREFIXES.stream().anyMatch(thread.getThreadName()::startsWith)) {
+                continue;
+            }
+            long allocated = threadBean.getThreadAllocatedBytes(thread.getThreadId());
+            if (allocated > 0) {
+                total += allocated;
+            }
+        }
+        return total;
+    }
+
+    private static void print(Options options, List<Result> results) {
+        System.out.printf("%nConcurrency %d, %ds per workload after %ds warmup, object sizes %s%n%n",
+                options.concurrency(), options.duration().toSeconds(), options.warmup().toSeconds(), Arrays.toString(options.sizes()));
+        System.out.printf("%-16s %10s %8s %12s %10s %10s %10s %12s%n",
+                "workload", "requests", "errors", "requests/s", "p50 ms", "p99 ms", "p999 ms", "alloc MB/s");
+        for (Result result : results) {
+            double seconds = result.duration().toNanos() / 1e9;
+            System.out.printf("%-16s %10d %8d %12.1f %10.2f %10.2f %10.2f %12.1f%n",
+                    result.workload(), result.requests(), result.errors(), result.requests() / seconds,
+                    result.latencies().getValueAtPercentile(50) / 1000.0,
+                    result.latencies().getValueAtPercentile(99) / 1000.0,
+                    result.latencies().getValueAtPercentile(99.9) / 1000.0,
+                    result.allocatedBytes() / seconds / (1024 * 1024));
+        }
+    }
+}
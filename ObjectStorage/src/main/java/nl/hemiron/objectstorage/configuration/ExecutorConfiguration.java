@@ -0,0 +1,192 @@
+package nl.hemiron.objectstorage.configuration;
+
+import lombok.extern.java.Log;
+import nl.hemiron.objectstorage.service.LogContext;
+import nl.hemiron.objectstorage.service.ProjectBulkhead;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Log
+@Configuration
+public class ExecutorConfiguration {
+
+    /**
+     * Executor opening the objects of directory archives ahead of writing them
+     */
+    @Bean
+    public ThreadPoolTaskExecutor archivePrefetchExecutor(
+            @Value("${minio.archive.parallelism:16}") int parallelism) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setThreadNamePrefix("archive-prefetch-");
+        executor.setTaskDecorator(LogContext::propagate);
+        return executor;
+    }
+
+    /**
+     * Executor for the blocking MinIO calls behind the async service methods.
+     * Uses a virtual thread per task when enabled and the runtime supports it (Java 21+),
+     * otherwise a bounded pool of platform threads which rejects tasks once its queue is full
+     */
+    @Bean
+    public ExecutorService minioExecutor(
+            @Value("${minio.executor.virtual.threads:true}") boolean virtualThreads,
+            @Value("${minio.executor.pool.size:32}") int poolSize,
+            @Value("${minio.executor.queue.capacity:1000}") int queueCapacity) {
+        if (virtualThreads) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                log.info(() -> "Virtual threads aren't available on this runtime, using a pool of " + poolSize + " threads for MinIO calls");
+            }
+        }
+        return new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("minio-"));
+    }
+
+    /**
+     * Limits the MinIO calls of a single project on the minioExecutor
+     */
+    @Bean
+    public ProjectBulkhead minioBulkhead(
+            @Qualifier("minioExecutor") ExecutorService minioExecutor,
+            @Value("${minio.project.max.concurrent:8}") int maxConcurrent,
+            @Value("${minio.project.max.queued:100}") int maxQueued) {
+        return new ProjectBulkhead(minioExecutor, maxConcurrent, maxQueued);
+    }
+
+    /**
+     * Limits the background jobs of a single project on the jobExecutor, so one project's force deletes
+     * can't occupy every job thread
+     */
+    @Bean
+    public ProjectBulkhead jobBulkhead(
+            @Qualifier("jobExecutor") ThreadPoolTaskExecutor jobExecutor,
+            @Value("${minio.jobs.project.max.concurrent:1}") int maxConcurrent,
+            @Value("${minio.jobs.project.max.queued:10}") int maxQueued) {
+        return new ProjectBulkhead(jobExecutor, maxConcurrent, maxQueued);
+    }
+
+    /**
+     * Executor for the per-bucket work when listing all buckets, bounded to the configured parallelism
+     */
+    @Bean
+    public ThreadPoolTaskExecutor bucketListingExecutor(
+            @Value("${minio.buckets.parallelism:8}") int parallelism) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setThreadNamePrefix("bucket-listing-");
+        executor.setTaskDecorator(LogContext::propagate);
+        return executor;
+    }
+
+    /**
+     * Executor for the full listings of buckets in the background, such as the crawls of the metadata index and the
+     * reconciliation of bucket usage.
+     * Kept apart from the bucketListingExecutor, so large buckets don't take the threads getting all buckets needs.
+     * Once the pool and its queue are full further listings are skipped until the next run
+     */
+    @Bean
+    public ThreadPoolTaskExecutor bucketScanExecutor(
+            @Value("${minio.scan.parallelism:2}") int parallelism,
+            @Value("${minio.scan.queue.capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setThreadNamePrefix("bucket-scan-");
+        executor.setTaskDecorator(LogContext::propagate);
+        return executor;
+    }
+
+    /**
+     * Executor for background jobs, such as force-deleting a bucket
+     */
+    @Bean
+    public ThreadPoolTaskExecutor jobExecutor(
+            @Value("${minio.jobs.parallelism:4}") int parallelism) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setThreadNamePrefix("job-");
+        return executor;
+    }
+
+    /**
+     * Executor for the objects of a bulk upload, bounding the amount of putObject calls in flight
+     */
+    @Bean
+    public ThreadPoolTaskExecutor bulkUploadExecutor(
+            @Value("${minio.upload.bulk.parallelism:8}") int parallelism) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setThreadNamePrefix("bulk-upload-");
+        executor.setTaskDecorator(LogContext::propagate);
+        return executor;
+    }
+
+    /**
+     * Executor writing streamed responses (downloads, archives, directory streams) so they don't hold a Tomcat thread.
+     * Slow clients occupy one of these threads for the whole transfer, so the pool bounds the concurrent streams.
+     * Once the pool and its queue are full the Tomcat thread writes the response itself
+     */
+    @Bean
+    public ThreadPoolTaskExecutor streamingExecutor(
+            @Value("${minio.download.parallelism:200}") int parallelism,
+            @Value("${minio.download.queue.capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("streaming-");
+        executor.setTaskDecorator(LogContext::propagate);
+        return executor;
+    }
+
+    /**
+     * Executor for the batches of a bulk delete, bounding the amount of removeObjects calls in flight
+     */
+    @Bean
+    public ThreadPoolTaskExecutor deleteBatchExecutor(
+            @Value("${minio.delete.parallelism:4}") int parallelism) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setThreadNamePrefix("delete-batch-");
+        executor.setTaskDecorator(LogContext::propagate);
+        return executor;
+    }
+
+    /**
+     * Executor listing the shards of object searches, every search uses up to its amount of shards of threads.
+     * Once the pool and its queue are full new searches are rejected
+     */
+    @Bean
+    public ThreadPoolTaskExecutor searchExecutor(
+            @Value("${minio.search.parallelism:16}") int parallelism,
+            @Value("${minio.search.queue.capacity:64}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setThreadNamePrefix("search-");
+        executor.setTaskDecorator(LogContext::propagate);
+        return executor;
+    }
+}
@@ -0,0 +1,122 @@
+package nl.hemiron.objectstorage.configuration;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.okhttp3.OkHttpConnectionPoolMetrics;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.io.SocketConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP clients for the traffic to MinIO: an OkHttpClient for the MinIO SDK and an Apache HttpClient for the
+ * RestTemplate (uploads to presigned URLs). Both keep a pool of persistent connections configured by the same
+ * http.client properties, and the state of the pools is published as metrics
+ */
+@Configuration
+public class HttpClientConfiguration {
+
+    @Value("${http.client.max.connections:64}")
+    private int maxConnections;
+
+    @Value("${http.client.max.connections.per.host:64}")
+    private int maxConnectionsPerHost;
+
+    @Value("${http.client.keep.alive.seconds:300}")
+    private long keepAliveSeconds;
+
+    @Value("${http.client.connect.timeout.millis:5000}")
+    private long connectTimeoutMillis;
+
+    @Value("${http.client.read.timeout.millis:300000}")
+    private long readTimeoutMillis;
+
+    @Value("${http.client.write.timeout.millis:300000}")
+    private long writeTimeoutMillis;
+
+    /**
+     * Whether the MinIO client may negotiate HTTP/2, which only happens over TLS
+     */
+    @Value("${http.client.http2:false}")
+    private boolean http2;
+
+    @Bean
+    public OkHttpClient minioHttpClient(MeterRegistry meterRegistry) {
+        var connectionPool = new ConnectionPool(maxConnections, keepAliveSeconds, TimeUnit.SECONDS);
+        var dispatcher = new Dispatcher();
+        // Limits the asynchronous calls (e.g. the parts of a multipart upload), further calls are queued
+        dispatcher.setMaxRequests(maxConnections);
+        dispatcher.setMaxRequestsPerHost(maxConnectionsPerHost);
+
+        new OkHttpConnectionPoolMetrics(connectionPool, Tags.of("client", "minio")).bindTo(meterRegistry);
+        Gauge.builder("http.client.dispatcher.requests", dispatcher, Dispatcher::runningCallsCount)
+                .description("Asynchronous calls of the MinIO client")
+                .tag("client", "minio")
+                .tag("state", "running")
+                .register(meterRegistry);
+        Gauge.builder("http.client.dispatcher.requests", dispatcher, Dispatcher::queuedCallsCount)
+                .description("Asynchronous calls of the MinIO client")
+                .tag("client", "minio")
+                .tag("state", "queued")
+                .register(meterRegistry);
+
+        return new OkHttpClient.Builder()
+                .connectionPool(connectionPool)
+                .dispatcher(dispatcher)
+                .protocols(http2 ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1) : List.of(Protocol.HTTP_1_1))
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .readTimeout(Duration.ofMillis(readTimeoutMillis))
+                .writeTimeout(Duration.ofMillis(writeTimeoutMillis))
+                .retryOnConnectionFailure(true)
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager restConnectionManager(MeterRegistry meterRegistry) {
+        var connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerHost)
+                .setDefaultSocketConfig(SocketConfig.custom()
+                        .setSoTimeout(Timeout.ofMilliseconds(readTimeoutMillis))
+                        .build())
+                .build();
+
+        for (String state : List.of("leased", "available", "pending")) {
+            Gauge.builder("http.client.pool.connections", connectionManager, manager -> switch (state) {
+                        case "leased" -> manager.getTotalStats().getLeased();
+                        case "available" -> manager.getTotalStats().getAvailable();
+                        default -> manager.getTotalStats().getPending();
+                    })
+                    .description("Connections of the RestTemplate connection pool")
+                    .tag("client", "rest")
+                    .tag("state", state)
+                    .register(meterRegistry);
+        }
+        return connectionManager;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient restHttpClient(PoolingHttpClientConnectionManager restConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(restConnectionManager)
+                .setKeepAliveStrategy((response, context) -> TimeValue.ofSeconds(keepAliveSeconds))
+                .evictIdleConnections(TimeValue.ofSeconds(keepAliveSeconds))
+                .evictExpiredConnections()
+                .build();
+    }
+}
@@ -0,0 +1,75 @@
+package nl.hemiron.objectstorage.configuration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts requests per project in objectstorage.project.requests, so request rates can be followed per project.
+ * The Project-Id header is sent by the client, so only valid UUIDs are tagged and only up to the max amount of
+ * projects. Requests of other projects are tagged "other", invalid ids "invalid" and requests without one "none"
+ */
+@Component
+public class ProjectRequestMetricsFilter extends OncePerRequestFilter {
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    private final MeterRegistry meterRegistry;
+
+    private final int maxProjects;
+
+    public ProjectRequestMetricsFilter(MeterRegistry meterRegistry,
+                                       @Value("${metrics.project.max.tagged:1000}") int maxProjects) {
+        this.meterRegistry = meterRegistry;
+        this.maxProjects = maxProjects;
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain filterChain) throws ServletException, IOException {
+        getCounter(request.getHeader("Project-Id")).increment();
+        filterChain.doFilter(request, response);
+    }
+
+    private Counter getCounter(String projectId) {
+        var tag = toTag(projectId);
+        var counter = counters.get(tag);
+        if (counter != null) {
+            return counter;
+        }
+        // Racing requests of new projects can go slightly over the max, which still bounds the amount of series
+        if (counters.size() >= maxProjects) {
+            tag = "other";
+        }
+        return counters.computeIfAbsent(tag, this::register);
+    }
+
+    private static String toTag(String projectId) {
+        if (projectId == null) {
+            return "none";
+        }
+        try {
+            return UUID.fromString(projectId).toString();
+        } catch (IllegalArgumentException e) {
+            return "invalid";
+        }
+    }
+
+    private Counter register(String project) {
+        return Counter.builder("objectstorage.project.requests")
+                .description("Requests per project")
+                .tag("project", project)
+                .register(meterRegistry);
+    }
+}
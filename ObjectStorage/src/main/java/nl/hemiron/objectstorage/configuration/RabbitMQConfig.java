@@ -1,43 +1,74 @@
-//package nl.hemiron.objectstorage.configuration;
-//
-//import org.springframework.amqp.core.Binding;
-//import org.springframework.amqp.core.BindingBuilder;
-//import org.springframework.amqp.core.Queue;
-//import org.springframework.amqp.core.TopicExchange;
-//import org.springframework.amqp.rabbit.annotation.EnableRabbit;
-//import org.springframework.beans.factory.annotation.Value;
-//import org.springframework.context.annotation.Bean;
-//import org.springframework.context.annotation.Configuration;
-//
-//@Configuration
-//@EnableRabbit
-//public class RabbitMQConfig {
-//
-//    @Value("${rabbitmq.queue.name}")
-//    private String queue;
-//
-//    @Value("${rabbitmq.exchange.name}")
-//    private String exchange;
-//
-//    @Value("${rabbitmq.routing.key}")
-//    private String routingKey;
-//
-//    @Bean
-//    public Queue queue() {
-//        return new Queue(queue);
-//    }
-//
-//    @Bean
-//    public TopicExchange exchange() {
-//        return new TopicExchange(exchange);
-//    }
-//
-//    @Bean
-//    public Binding binding() {
-//        return BindingBuilder
-//                .bind(queue())
-//                .to(exchange())
-//                .with(routingKey);
-//    }
-//}
-//
+package nl.hemiron.objectstorage.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.rabbit.annotation.EnableRabbit;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Declares the exchange the mutation events are published to, when publishing events is enabled.
+ * Consumers bind their own queues to it, e.g. with objectstorage.object.# for all object events.
+ * When jobs go through the job queue (queue mode, or on a worker) it also declares that queue and sends
+ * jobs and their updates as JSON
+ */
+@Configuration
+@EnableRabbit
+public class RabbitMQConfig {
+
+    public static final String JOB_QUEUE_IN_USE = "'${minio.jobs.mode:local}' == 'queue' or ${rabbitmq.worker.enabled:false}";
+
+    @Value("${rabbitmq.exchange.name:objectstorage}")
+    private String exchange;
+
+    @Value("${rabbitmq.queue.name:objectstorage.jobs}")
+    private String queue;
+
+    @Bean
+    @ConditionalOnProperty(name = "rabbitmq.events.enabled", havingValue = "true")
+    public TopicExchange exchange() {
+        return new TopicExchange(exchange);
+    }
+
+    @Bean
+    @ConditionalOnExpression(JOB_QUEUE_IN_USE)
+    public Queue queue() {
+        return new Queue(queue);
+    }
+
+    @Bean
+    @ConditionalOnExpression(JOB_QUEUE_IN_USE)
+    public MessageConverter jobMessageConverter(ObjectMapper objectMapper) {
+        return new Jackson2JsonMessageConverter(objectMapper);
+    }
+
+    /**
+     * Consumers of the job queue. Jobs are long-running, so by default a consumer only takes the job it works on
+     * and the amount of jobs a worker runs at once is the concurrency
+     */
+    @Bean
+    @ConditionalOnProperty(name = "rabbitmq.worker.enabled", havingValue = "true")
+    public SimpleRabbitListenerContainerFactory jobListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            @Value("${rabbitmq.worker.prefetch:1}") int prefetch,
+            @Value("${rabbitmq.worker.concurrency:2}") int concurrency) {
+        var factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setPrefetchCount(prefetch);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(concurrency);
+        // A failing job is reported as failed, redelivering it would only fail it again
+        factory.setDefaultRequeueRejected(false);
+        return factory;
+    }
+}
@@ -0,0 +1,132 @@
+package nl.hemiron.objectstorage.configuration;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.java.Log;
+import org.slf4j.MDC;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * Puts the project, bucket and operation of a request in the MDC, so every line logged while handling it carries
+ * them, and logs a single summary line per request with its status and duration instead of lines per object.
+ * Streamed responses are summarized once the stream is complete
+ */
+@Log
+@Component
+public class RequestLogFilter extends OncePerRequestFilter {
+
+    static final String PROJECT = "project";
+
+    static final String BUCKET = "bucket";
+
+    static final String OPERATION = "operation";
+
+    private static final String BUCKETS_PATH = "/buckets/";
+
+    /**
+     * Sets the operation once the handler of the request is known, the name of the controller method
+     */
+    static class OperationInterceptor implements HandlerInterceptor {
+
+        @Override
+        public boolean preHandle(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull Object handler) {
+            if (handler instanceof HandlerMethod handlerMethod) {
+                MDC.put(OPERATION, handlerMethod.getMethod().getName());
+            }
+            return true;
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain filterChain) throws ServletException, IOException {
+        long start = System.nanoTime();
+        var projectId = request.getHeader("Project-Id");
+        if (projectId != null) {
+            MDC.put(PROJECT, projectId);
+        }
+        var bucketName = getBucketName(getPath(request));
+        if (bucketName != null) {
+            MDC.put(BUCKET, bucketName);
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            var context = MDC.getCopyOfContextMap();
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        logSummary(context, request, response, start);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                logSummary(context, request, response, start);
+            }
+            MDC.remove(PROJECT);
+            MDC.remove(BUCKET);
+            MDC.remove(OPERATION);
+        }
+    }
+
+    private static void logSummary(Map<String, String> context, HttpServletRequest request, HttpServletResponse response, long start) {
+        if (!log.isLoggable(Level.INFO)) {
+            return;
+        }
+        var previous = MDC.getCopyOfContextMap();
+        if (context != null) {
+            MDC.setContextMap(context);
+        }
+        try {
+            var operation = context != null && context.containsKey(OPERATION) ? context.get(OPERATION) : getPath(request);
+            long durationMillis = (System.nanoTime() - start) / 1_000_000;
+            log.log(Level.INFO, () -> request.getMethod() + " " + operation
+                    + " status=" + response.getStatus()
+                    + " duration_ms=" + durationMillis);
+        } finally {
+            if (previous != null) {
+                MDC.setContextMap(previous);
+            } else {
+                MDC.clear();
+            }
+        }
+    }
+
+    /**
+     * @return the path of the request without the context path (server.servlet.contextPath)
+     */
+    private static String getPath(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private static String getBucketName(String path) {
+        if (!path.startsWith(BUCKETS_PATH) || path.length() == BUCKETS_PATH.length()) {
+            return null;
+        }
+        int end = path.indexOf('/', BUCKETS_PATH.length());
+        return path.substring(BUCKETS_PATH.length(), end >= 0 ? end : path.length());
+    }
+}
@@ -1,17 +1,24 @@
 package nl.hemiron.objectstorage.configuration;
 
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
 @Configuration
 public class RestTemplateConfiguration {
 
     @Bean
-    public RestTemplate restTemplate() {
-        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+    public RestTemplate restTemplate(CloseableHttpClient restHttpClient,
+                                     @Value("${http.client.connect.timeout.millis:5000}") int connectTimeoutMillis) {
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(restHttpClient);
         requestFactory.setBufferRequestBody(false); // stream request body directly to server instead of buffering it into memory
+        requestFactory.setConnectTimeout(connectTimeoutMillis);
+        // Time to wait for a connection from the pool
+        requestFactory.setConnectionRequestTimeout(connectTimeoutMillis);
+        // The read timeout is the socket timeout of the connection manager in HttpClientConfiguration
 
         return new RestTemplate(requestFactory);
     }
@@ -0,0 +1,15 @@
+package nl.hemiron.objectstorage.configuration;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an endpoint whose streamed response is a transfer that can outlast the default async request timeout,
+ * e.g. a large download. Its response gets minio.download.timeout.millis instead
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface StreamingTransfer {
+}
@@ -1,10 +1,23 @@
 package nl.hemiron.objectstorage.configuration;
 
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.concurrent.Callable;
+
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
@@ -17,6 +30,16 @@ public class WebConfig implements WebMvcConfigurer {
     @Value("${spring.mvc.cors.allowed-headers}")
     private String[] allowedHeaders;
 
+    private final ThreadPoolTaskExecutor streamingExecutor;
+
+    private final long streamingTimeoutMillis;
+
+    public WebConfig(@Qualifier("streamingExecutor") ThreadPoolTaskExecutor streamingExecutor,
+                     @Value("${minio.download.timeout.millis:3600000}") long streamingTimeoutMillis) {
+        this.streamingExecutor = streamingExecutor;
+        this.streamingTimeoutMillis = streamingTimeoutMillis;
+    }
+
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         registry.addMapping("/**")
@@ -24,4 +47,42 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowedMethods(allowedMethods)
                 .allowedHeaders(allowedHeaders);
     }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new RequestLogFilter.OperationInterceptor());
+    }
+
+    /**
+     * Streamed responses run on the streamingExecutor. Spring Boot only configures its applicationTaskExecutor here,
+     * which our own executor beans replace, leaving a thread per response otherwise.
+     * Async requests keep the default timeout, only the transfers of @StreamingTransfer endpoints get the streaming
+     * timeout, the 30 seconds of Tomcat would cut off large downloads
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(streamingExecutor);
+        configurer.registerCallableInterceptors(new StreamingTransferTimeout(streamingTimeoutMillis));
+    }
+
+    /**
+     * Sets the timeout of a @StreamingTransfer response before its async processing starts
+     */
+    static class StreamingTransferTimeout implements CallableProcessingInterceptor {
+
+        private final long timeoutMillis;
+
+        StreamingTransferTimeout(long timeoutMillis) {
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        public <T> void beforeConcurrentHandling(@NonNull NativeWebRequest request, @NonNull Callable<T> task) {
+            var handler = request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+            if (handler instanceof HandlerMethod handlerMethod && handlerMethod.hasMethodAnnotation(StreamingTransfer.class)
+                    && request instanceof AsyncWebRequest asyncWebRequest) {
+                asyncWebRequest.setTimeout(timeoutMillis);
+            }
+        }
+    }
 }
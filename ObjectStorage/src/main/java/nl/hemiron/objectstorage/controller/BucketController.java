@@ -10,9 +10,9 @@ import nl.hemiron.objectstorage.model.response.CreateBucketResponse;
 import nl.hemiron.objectstorage.model.response.DeleteBucketResponse;
 import nl.hemiron.objectstorage.model.response.GetBucketResponse;
 import nl.hemiron.objectstorage.service.MinioService;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
@@ -36,7 +36,6 @@ public class BucketController {
         this.minioService = minioService;
     }
 
-    @Async
     @PostMapping()
     @Operation(summary = "Create bucket", responses = {
             @ApiResponse(responseCode = "201", description = "Bucket created successfully"),
@@ -108,10 +107,10 @@ public class BucketController {
         }
     }
 
-    @Async
     @DeleteMapping("/{bucketName}")
     @Operation(summary = "Delete a single bucket", responses = {
             @ApiResponse(responseCode = "200", description = "Bucket deleted successfully"),
+            @ApiResponse(responseCode = "202", description = "Bucket is being emptied and deleted by a background job, see the job link"),
             @ApiResponse(responseCode = "404", description = "No bucket found with this name"),
             @ApiResponse(responseCode = "409", description = "Bucket could not be deleted due to it not being empty"),
             @ApiResponse(responseCode = "500", description = "Bucket could not be deleted due to an unexpected error")
@@ -122,10 +121,15 @@ public class BucketController {
             @PathVariable final String bucketName) {
         try {
             return this.minioService.deleteBucketAsync(bucketName, forceDelete, projectId)
-                    .thenApply(deleteBucketResponse -> new ResponseEntity<>(
-                            deleteBucketResponse,
-                            HttpStatus.OK
-                    ));
+                    .thenApply(deleteBucketResponse -> {
+                        if (deleteBucketResponse.getJobId() == null) {
+                            return new ResponseEntity<>(deleteBucketResponse, HttpStatus.OK);
+                        }
+                        var jobLink = linkTo(methodOn(JobController.class).getJob(projectId, deleteBucketResponse.getJobId())).withRel("job");
+                        HttpHeaders httpHeaders = new HttpHeaders();
+                        httpHeaders.setLocation(jobLink.toUri());
+                        return new ResponseEntity<>(deleteBucketResponse.add(jobLink), httpHeaders, HttpStatus.ACCEPTED);
+                    });
         } catch (Exception e) {
             CompletableFuture<ResponseEntity<DeleteBucketResponse>> future = new CompletableFuture<>();
             future.completeExceptionally(new InternalServerErrorException(e.getMessage()));
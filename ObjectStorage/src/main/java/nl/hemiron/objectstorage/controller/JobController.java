@@ -0,0 +1,74 @@
+package nl.hemiron.objectstorage.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import nl.hemiron.objectstorage.model.response.JobResponse;
+import nl.hemiron.objectstorage.service.Job;
+import nl.hemiron.objectstorage.service.JobService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.UUID;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+
+@RestController
+@RequestMapping("/jobs")
+@Tag(name = "JobController", description = "Endpoints to follow and cancel long-running background jobs")
+public class JobController {
+
+    private final JobService jobService;
+
+    public JobController(JobService jobService) {
+        this.jobService = jobService;
+    }
+
+    @GetMapping("/{jobId}")
+    @Operation(summary = "Get the status and progress of a job", responses = {
+            @ApiResponse(responseCode = "200", description = "Job retrieved successfully"),
+            @ApiResponse(responseCode = "404", description = "No job found with this id")
+    })
+    public ResponseEntity<JobResponse> getJob(
+            @RequestHeader("Project-Id") UUID projectId,
+            @PathVariable String jobId) {
+        var job = jobService.getJob(jobId, projectId);
+        return new ResponseEntity<>(
+                toJobResponse(job, projectId),
+                HttpStatus.OK
+        );
+    }
+
+    @DeleteMapping("/{jobId}")
+    @Operation(summary = "Cancel a running job, work that is already in flight is finished first", responses = {
+            @ApiResponse(responseCode = "202", description = "Cancellation requested successfully"),
+            @ApiResponse(responseCode = "404", description = "No job found with this id")
+    })
+    public ResponseEntity<JobResponse> cancelJob(
+            @RequestHeader("Project-Id") UUID projectId,
+            @PathVariable String jobId) {
+        var job = jobService.cancel(jobId, projectId);
+        return new ResponseEntity<>(
+                toJobResponse(job, projectId),
+                HttpStatus.ACCEPTED
+        );
+    }
+
+    static JobResponse toJobResponse(Job job, UUID projectId) {
+        return new JobResponse(
+                job.getId(),
+                job.getType(),
+                job.getBucketName(),
+                job.getTarget(),
+                job.getStatus().name(),
+                job.getProcessedObjects().get(),
+                job.getProcessedBytes().get(),
+                job.getFailedObjects().get(),
+                job.getMessage(),
+                job.getCreatedAt(),
+                job.getFinishedAt()
+        ).add(linkTo(methodOn(JobController.class).getJob(projectId, job.getId())).withSelfRel());
+    }
+}
@@ -1,35 +1,56 @@
 package nl.hemiron.objectstorage.controller;
 
-import io.minio.Result;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.CountingOutputStream;
+import io.minio.StatObjectResponse;
 import io.minio.errors.*;
-import io.minio.messages.DeleteError;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import nl.hemiron.objectstorage.configuration.StreamingTransfer;
 import nl.hemiron.objectstorage.exceptions.BadRequestException;
 import nl.hemiron.objectstorage.exceptions.BucketNotFoundException;
 import nl.hemiron.objectstorage.exceptions.InternalServerErrorException;
 import nl.hemiron.objectstorage.exceptions.NotFoundException;
+import nl.hemiron.objectstorage.model.request.BulkUploadRequest;
 import nl.hemiron.objectstorage.model.request.UploadFileToBucketRequest;
+import nl.hemiron.objectstorage.model.response.BulkUploadResponse;
 import nl.hemiron.objectstorage.model.response.DeleteFileResponse;
+import nl.hemiron.objectstorage.model.response.DirectoryUsageResponse;
 import nl.hemiron.objectstorage.model.response.ItemResponse;
+import nl.hemiron.objectstorage.model.response.JobResponse;
+import nl.hemiron.objectstorage.model.response.PresignedUrlResponse;
 import nl.hemiron.objectstorage.model.response.UploadFileToBucketResponse;
+import nl.hemiron.objectstorage.model.response.UploadSessionResponse;
 import nl.hemiron.objectstorage.service.ExchangeService;
+import nl.hemiron.objectstorage.service.MinioMetrics;
 import nl.hemiron.objectstorage.service.MinioService;
+import nl.hemiron.objectstorage.service.ObjectUpload;
+import nl.hemiron.objectstorage.service.PresignedUrl;
+import nl.hemiron.objectstorage.service.SearchFilter;
 import nl.hemiron.objectstorage.service.StringUtils;
-import org.springframework.core.io.InputStreamResource;
+import nl.hemiron.objectstorage.service.TransferBuffers;
+import nl.hemiron.objectstorage.service.UploadSession;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.*;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
 import java.util.UUID;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
@@ -40,16 +61,31 @@ import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 @Tag(name = "ObjectController", description = "Endpoints for everything related to MinIO bucket objects")
 public class ObjectController {
 
+    private static final String CONTINUATION_TOKEN_HEADER = "Continuation-Token";
+
+    private static final String APPLICATION_ZIP_VALUE = "application/zip";
+
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
     private final MinioService minioService;
 
     private final ExchangeService exchangeService;
 
-    public ObjectController(MinioService minioService, ExchangeService exchangeService) {
+    private final ObjectMapper objectMapper;
+
+    private final MinioMetrics minioMetrics;
+
+    private final TransferBuffers transferBuffers;
+
+    public ObjectController(MinioService minioService, ExchangeService exchangeService, ObjectMapper objectMapper, MinioMetrics minioMetrics, TransferBuffers transferBuffers) {
         this.minioService = minioService;
         this.exchangeService = exchangeService;
+        this.minioMetrics = minioMetrics;
+        this.transferBuffers = transferBuffers;
+        // Don't let the mapper close the response stream after writing a single item
+        this.objectMapper = objectMapper.copy().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
     }
 
-    @Async
     @PostMapping(consumes = {"multipart/form-data"})
     @Operation(summary = "Upload multipart file to bucket", responses = {
             @ApiResponse(responseCode = "200", description = "Multipart file uploaded successfully to bucket"),
@@ -69,13 +105,14 @@ public class ObjectController {
                     .thenApply(uploadObjectURL -> {
                         try {
                             exchangeService.put(multipartFile, uploadObjectURL);
+                            minioService.recordUpload(bucketName, objectName, multipartFile.getSize());
                         } catch (IOException e) {
                             throw new RuntimeException(e);
                         }
                         try {
                             return new ResponseEntity<>(
                                     new UploadFileToBucketResponse()
-                                            .add(linkTo(methodOn(ObjectController.class).downloadObject(projectId, bucketName, StringUtils.encodeBase64(objectName))).withSelfRel()),
+                                            .add(linkTo(methodOn(ObjectController.class).downloadObject(projectId, bucketName, StringUtils.encodeBase64(objectName), null, null)).withSelfRel()),
                                     HttpStatus.OK
                             );
                         } catch (IOException e) {
@@ -89,33 +126,362 @@ public class ObjectController {
         }
     }
 
+    @PostMapping(value = "/bulk", consumes = {"multipart/form-data"})
+    @Operation(summary = "Upload several multipart files to bucket at once, returning the result of every file", responses = {
+            @ApiResponse(responseCode = "200", description = "Files handled, the response lists which of them were uploaded"),
+            @ApiResponse(responseCode = "400", description = "Too many files in a single request"),
+            @ApiResponse(responseCode = "404", description = "Bucket with specified name does not exist"),
+            @ApiResponse(responseCode = "500", description = "Files could not be uploaded due to an unexpected error")
+    })
+    public ResponseEntity<BulkUploadResponse> uploadFilesToBucket(
+            @RequestHeader("Project-Id") UUID projectId,
+            @PathVariable String bucketName,
+            @ModelAttribute BulkUploadRequest bulkUploadRequest) {
+        try {
+            var objectPath = bulkUploadRequest.getObjectPath();
+            var prefix = objectPath == null || objectPath.isBlank() || objectPath.equals("/")
+                    ? ""
+                    : objectPath.endsWith("/") ? objectPath : objectPath + "/";
+            var files = bulkUploadRequest.getObjects() == null ? List.<MultipartFile>of() : bulkUploadRequest.getObjects();
+            var uploads = files.stream()
+                    .map(file -> new ObjectUpload(
+                            prefix + Objects.requireNonNullElse(file.getOriginalFilename(), ""),
+                            file.getSize(),
+                            file.getContentType(),
+                            file))
+                    .toList();
 
-    @GetMapping(value = "/{objectName}", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
-    @Operation(summary = "Download a single object", responses = {
-            @ApiResponse(responseCode = "200", description = "Object downloaded successfully"),
+            var result = minioService.uploadObjects(bucketName, uploads, projectId);
+            var objects = result.objects().stream()
+                    .map(object -> new BulkUploadResponse.UploadedObject(
+                            object.objectName(),
+                            StringUtils.encodeBase64(object.objectName()),
+                            object.size(),
+                            object.etag(),
+                            object.reason()))
+                    .toList();
+            return new ResponseEntity<>(
+                    new BulkUploadResponse(bucketName, result.uploaded(), result.failed(), objects),
+                    HttpStatus.OK
+            );
+        } catch (BucketNotFoundException e) {
+            throw new NotFoundException(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        } catch (ServerException | ErrorResponseException | InternalException | XmlParserException |
+                 InvalidResponseException | InvalidKeyException | NoSuchAlgorithmException |
+                 InsufficientDataException | IOException e) {
+            throw new InternalServerErrorException(e.getMessage());
+        }
+    }
+
+    @PutMapping(value = "/{objectName}")
+    @Operation(summary = "Upload the request body as object, streamed directly to the bucket using a base64 encoded name", responses = {
+            @ApiResponse(responseCode = "200", description = "Object uploaded successfully to bucket"),
+            @ApiResponse(responseCode = "400", description = "Invalid base64 object name, or object too large"),
+            @ApiResponse(responseCode = "404", description = "Bucket with specified name does not exist"),
+            @ApiResponse(responseCode = "429", description = "Too many uploads in progress, try again later"),
+            @ApiResponse(responseCode = "500", description = "Object could not be uploaded due to an unexpected error")
+    })
+    public ResponseEntity<UploadFileToBucketResponse> uploadObjectStream(
+            @RequestHeader("Project-Id") UUID projectId,
+            @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+            @PathVariable String bucketName,
+            @PathVariable String objectName,
+            HttpServletRequest request) throws IOException {
+        try {
+            this.minioService.uploadObjectStream(bucketName, objectName, request.getInputStream(), request.getContentLengthLong(), contentType, projectId);
+
+            return new ResponseEntity<>(
+                    new UploadFileToBucketResponse()
+                            .add(linkTo(methodOn(ObjectController.class).downloadObject(projectId, bucketName, objectName, null, null)).withSelfRel()),
+                    HttpStatus.OK
+            );
+        } catch (BucketNotFoundException e) {
+            throw new NotFoundException(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        } catch (ServerException | ErrorResponseException | InternalException | XmlParserException |
+                 InvalidResponseException | InvalidKeyException | NoSuchAlgorithmException |
+                 InsufficientDataException e) {
+            throw new InternalServerErrorException(e.getMessage());
+        }
+    }
+
+    @PostMapping("/uploads/{objectName}")
+    @Operation(summary = "Start an upload session in which the client uploads the parts of a large object directly to MinIO", responses = {
+            @ApiResponse(responseCode = "201", description = "Upload session started, the response holds presigned URLs to PUT the parts"),
+            @ApiResponse(responseCode = "400", description = "Invalid base64 object name or size"),
+            @ApiResponse(responseCode = "404", description = "Bucket with specified name does not exist"),
+            @ApiResponse(responseCode = "500", description = "Upload session could not be started due to an unexpected error")
+    })
+    public ResponseEntity<UploadSessionResponse> startUploadSession(
+            @RequestHeader("Project-Id") UUID projectId,
+            @PathVariable String bucketName,
+            @PathVariable String objectName,
+            @RequestParam long size,
+            @RequestParam(required = false) String contentType) {
+        try {
+            var session = this.minioService.startUploadSession(bucketName, objectName, size, contentType, projectId);
+            var uploadSessionResponse = toUploadSessionResponse(session, projectId, bucketName, objectName);
+            HttpHeaders httpHeaders = new HttpHeaders();
+            httpHeaders.setLocation(uploadSessionResponse.getRequiredLink("self").toUri());
+            return new ResponseEntity<>(uploadSessionResponse, httpHeaders, HttpStatus.CREATED);
+        } catch (BucketNotFoundException e) {
+            throw new NotFoundException(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        } catch (ServerException | ErrorResponseException | InternalException | XmlParserException |
+                 InvalidResponseException | InvalidKeyException | NoSuchAlgorithmException |
+                 InsufficientDataException | IOException e) {
+            throw new InternalServerErrorException(e.getMessage());
+        }
+    }
+
+    @GetMapping("/uploads/{objectName}/{uploadId}")
+    @Operation(summary = "Get the parts uploaded so far and fresh presigned URLs for the others, to resume an upload session", responses = {
+            @ApiResponse(responseCode = "200", description = "Upload session retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid base64 object name or size"),
+            @ApiResponse(responseCode = "404", description = "Could not find bucket or upload session"),
+            @ApiResponse(responseCode = "500", description = "Upload session could not be retrieved due to an unexpected error")
+    })
+    public ResponseEntity<UploadSessionResponse> getUploadSession(
+            @RequestHeader("Project-Id") UUID projectId,
+            @PathVariable String bucketName,
+            @PathVariable String objectName,
+            @PathVariable String uploadId,
+            @RequestParam long size) {
+        try {
+            var session = this.minioService.getUploadSession(bucketName, objectName, uploadId, size, projectId);
+            return new ResponseEntity<>(
+                    toUploadSessionResponse(session, projectId, bucketName, objectName),
+                    HttpStatus.OK
+            );
+        } catch (BucketNotFoundException | ErrorResponseException e) {
+            throw new NotFoundException(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        } catch (ServerException | InternalException | XmlParserException | InvalidResponseException |
+                 InvalidKeyException | NoSuchAlgorithmException | InsufficientDataException | IOException e) {
+            throw new InternalServerErrorException(e.getMessage());
+        }
+    }
+
+    @PostMapping("/uploads/{objectName}/{uploadId}/complete")
+    @Operation(summary = "Complete an upload session once all parts have been uploaded", responses = {
+            @ApiResponse(responseCode = "200", description = "Object assembled from its parts successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid base64 object name or size, or parts MinIO doesn't accept, e.g. too small"),
+            @ApiResponse(responseCode = "404", description = "Could not find bucket or upload session"),
+            @ApiResponse(responseCode = "409", description = "Not all parts have been uploaded or they don't add up to the size"),
+            @ApiResponse(responseCode = "500", description = "Upload session could not be completed due to an unexpected error")
+    })
+    public ResponseEntity<UploadFileToBucketResponse> completeUploadSession(
+            @RequestHeader("Project-Id") UUID projectId,
+            @PathVariable String bucketName,
+            @PathVariable String objectName,
+            @PathVariable String uploadId,
+            @RequestParam long size) throws IOException {
+        try {
+            var result = this.minioService.completeUploadSession(bucketName, objectName, uploadId, size, projectId);
+            HttpHeaders httpHeaders = new HttpHeaders();
+            httpHeaders.setETag(result.etag().startsWith("\"") ? result.etag() : "\"" + result.etag() + "\"");
+            return new ResponseEntity<>(
+                    new UploadFileToBucketResponse()
+                            .add(linkTo(methodOn(ObjectController.class).downloadObject(projectId, bucketName, objectName, null, null)).withSelfRel()),
+                    httpHeaders,
+                    HttpStatus.OK
+            );
+        } catch (BucketNotFoundException | ErrorResponseException e) {
+            throw new NotFoundException(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        } catch (ServerException | InternalException | XmlParserException | InvalidResponseException |
+                 InvalidKeyException | NoSuchAlgorithmException | InsufficientDataException e) {
+            throw new InternalServerErrorException(e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/uploads/{objectName}/{uploadId}")
+    @Operation(summary = "Abort an upload session, discarding the parts uploaded so far", responses = {
+            @ApiResponse(responseCode = "204", description = "Upload session aborted successfully"),
             @ApiResponse(responseCode = "400", description = "Invalid base64 object name"),
-            @ApiResponse(responseCode = "404", description = "Could not find bucket and/or object with this name"),
-            @ApiResponse(responseCode = "500", description = "Object could not be retrieved due to an unexpected error")
+            @ApiResponse(responseCode = "404", description = "Could not find bucket or upload session"),
+            @ApiResponse(responseCode = "500", description = "Upload session could not be aborted due to an unexpected error")
     })
-    public ResponseEntity<InputStreamResource> downloadObject(
+    public ResponseEntity<Void> abortUploadSession(
             @RequestHeader("Project-Id") UUID projectId,
             @PathVariable String bucketName,
-            @PathVariable String objectName) throws IOException {
+            @PathVariable String objectName,
+            @PathVariable String uploadId) {
         try {
-            var inputstream = this.minioService.getObject(bucketName, objectName, projectId);
+            this.minioService.abortUploadSession(bucketName, objectName, uploadId, projectId);
+            return ResponseEntity.noContent().build();
+        } catch (BucketNotFoundException | ErrorResponseException e) {
+            throw new NotFoundException(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        } catch (ServerException | InternalException | XmlParserException | InvalidResponseException |
+                 InvalidKeyException | NoSuchAlgorithmException | InsufficientDataException | IOException e) {
+            throw new InternalServerErrorException(e.getMessage());
+        }
+    }
+
+    @GetMapping("/urls/{objectName}")
+    @Operation(summary = "Get a presigned URL to download a single object directly from MinIO using a base64 encoded name", responses = {
+            @ApiResponse(responseCode = "200", description = "Presigned URL created successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid base64 object name"),
+            @ApiResponse(responseCode = "404", description = "Bucket with specified name does not exist"),
+            @ApiResponse(responseCode = "500", description = "Presigned URL could not be created due to an unexpected error")
+    })
+    public ResponseEntity<PresignedUrlResponse> getDownloadUrl(
+            @RequestHeader("Project-Id") UUID projectId,
+            @PathVariable String bucketName,
+            @PathVariable String objectName) {
+        try {
+            return new ResponseEntity<>(
+                    toPresignedUrlResponse(this.minioService.getDownloadUrl(bucketName, objectName, projectId)),
+                    HttpStatus.OK
+            );
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        } catch (BucketNotFoundException e) {
+            throw new NotFoundException(e.getMessage());
+        } catch (ServerException | ErrorResponseException | InternalException | XmlParserException |
+                 InvalidResponseException | InvalidKeyException | NoSuchAlgorithmException |
+                 InsufficientDataException | IOException e) {
+            throw new InternalServerErrorException(e.getMessage());
+        }
+    }
+
+    @GetMapping("/urls/directory/{directoryName}")
+    @Operation(summary = "Get presigned download URLs of the objects in a page of the directory contents, the next page is requested with the returned Continuation-Token header", responses = {
+            @ApiResponse(responseCode = "200", description = "Presigned URLs created successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid base64 directory name or continuation token"),
+            @ApiResponse(responseCode = "404", description = "Could not find bucket or directory with this name"),
+            @ApiResponse(responseCode = "500", description = "Presigned URLs could not be created due to an unexpected error")
+    })
+    public ResponseEntity<List<PresignedUrlResponse>> getDirectoryDownloadUrls(
+            @RequestHeader("Project-Id") UUID projectId,
+            @PathVariable String bucketName,
+            @PathVariable String directoryName,
+            @RequestParam(value = "continuation-token", required = false) String continuationToken,
+            @RequestParam(value = "limit", defaultValue = "1000") int limit) {
+        try {
+            var page = this.minioService.getDirectoryDownloadUrls(bucketName, directoryName, projectId, continuationToken, limit);
 
-            var filename = StringUtils.getFilenameFromBase64(objectName);
             HttpHeaders httpHeaders = new HttpHeaders();
-            httpHeaders.add("Content-Disposition", "attachment; filename=" + filename);
+            if (page.nextContinuationToken() != null) {
+                httpHeaders.add(CONTINUATION_TOKEN_HEADER, page.nextContinuationToken());
+            }
 
             return new ResponseEntity<>(
-                    new InputStreamResource(inputstream),
+                    page.urls().stream().map(ObjectController::toPresignedUrlResponse).toList(),
                     httpHeaders,
                     HttpStatus.OK
             );
         } catch (IllegalArgumentException e) {
             throw new BadRequestException(e.getMessage());
-        } catch (ErrorResponseException e) {
+        } catch (BucketNotFoundException | ErrorResponseException e) {
+            throw new NotFoundException(e.getMessage());
+        } catch (ServerException | InternalException | XmlParserException | InvalidResponseException |
+                 InvalidKeyException | NoSuchAlgorithmException | InsufficientDataException | IOException e) {
+            throw new InternalServerErrorException(e.getMessage());
+        }
+    }
+
+    @GetMapping(value = "/{objectName}", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @StreamingTransfer
+    @Operation(summary = "Download a single object, or byte ranges of it", responses = {
+            @ApiResponse(responseCode = "200", description = "Object downloaded successfully"),
+            @ApiResponse(responseCode = "206", description = "Requested byte range(s) of the object downloaded successfully"),
+            @ApiResponse(responseCode = "304", description = "Object not modified since the given ETag or date"),
+            @ApiResponse(responseCode = "400", description = "Invalid base64 object name"),
+            @ApiResponse(responseCode = "404", description = "Could not find bucket and/or object with this name"),
+            @ApiResponse(responseCode = "416", description = "Requested range not satisfiable"),
+            @ApiResponse(responseCode = "500", description = "Object could not be retrieved due to an unexpected error")
+    })
+    public ResponseEntity<StreamingResponseBody> downloadObject(
+            @RequestHeader("Project-Id") UUID projectId,
+            @PathVariable String bucketName,
+            @PathVariable String objectName,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            WebRequest webRequest) throws IOException {
+        try {
+            var stat = this.minioService.statObject(bucketName, objectName, projectId);
+            if (webRequest.checkNotModified(getETag(stat), stat.lastModified().toInstant().toEpochMilli())) {
+                // Status (304 or 412) and validators have already been set on the response
+                return null;
+            }
+
+            var httpHeaders = getObjectHeaders(stat, objectName);
+            if (range == null) {
+                httpHeaders.setContentLength(stat.size());
+                var cached = this.minioService.getCachedObject(bucketName, objectName, projectId, stat);
+                if (cached != null) {
+                    return new ResponseEntity<>(
+                            outputStream -> transferBuffers.write(cached, outputStream, minioMetrics::recordBytesOut),
+                            httpHeaders, HttpStatus.OK);
+                }
+                // The object is only opened once the body is written, a body that never runs holds no connection to MinIO
+                return new ResponseEntity<>(outputStream -> {
+                    try {
+                        var inputstream = this.minioService.getObject(bucketName, objectName, projectId);
+                        transferBuffers.copy(inputstream, outputStream, minioMetrics::recordBytesOut);
+                    } catch (MinioException | InvalidKeyException | NoSuchAlgorithmException e) {
+                        throw new IOException(e);
+                    }
+                }, httpHeaders, HttpStatus.OK);
+            }
+
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                return rangeNotSatisfiable(stat.size());
+            }
+            if (ranges.isEmpty() || stat.size() == 0 ||
+                    ranges.stream().anyMatch(httpRange -> httpRange.getRangeStart(stat.size()) >= stat.size())) {
+                return rangeNotSatisfiable(stat.size());
+            }
+
+            if (ranges.size() == 1) {
+                long start = ranges.get(0).getRangeStart(stat.size());
+                long end = ranges.get(0).getRangeEnd(stat.size());
+                httpHeaders.setContentLength(end - start + 1);
+                httpHeaders.set(HttpHeaders.CONTENT_RANGE, getContentRange(start, end, stat.size()));
+                return new ResponseEntity<>(outputStream -> {
+                    try {
+                        var inputstream = this.minioService.getObject(bucketName, objectName, projectId, start, end - start + 1);
+                        transferBuffers.copy(inputstream, outputStream, minioMetrics::recordBytesOut);
+                    } catch (MinioException | InvalidKeyException | NoSuchAlgorithmException e) {
+                        throw new IOException(e);
+                    }
+                }, httpHeaders, HttpStatus.PARTIAL_CONTENT);
+            }
+
+            var boundary = MimeTypeUtils.generateMultipartBoundaryString();
+            var partContentType = httpHeaders.getContentType();
+            httpHeaders.setContentType(MediaType.parseMediaType("multipart/byteranges; boundary=" + boundary));
+            return new ResponseEntity<>(outputStream -> {
+                for (HttpRange httpRange : ranges) {
+                    long start = httpRange.getRangeStart(stat.size());
+                    long end = httpRange.getRangeEnd(stat.size());
+                    var partHeaders = "\r\n--" + boundary + "\r\n" +
+                            HttpHeaders.CONTENT_TYPE + ": " + partContentType + "\r\n" +
+                            HttpHeaders.CONTENT_RANGE + ": " + getContentRange(start, end, stat.size()) + "\r\n\r\n";
+                    outputStream.write(partHeaders.getBytes(StandardCharsets.US_ASCII));
+                    try {
+                        var inputstream = this.minioService.getObject(bucketName, objectName, projectId, start, end - start + 1);
+                        transferBuffers.copy(inputstream, outputStream, minioMetrics::recordBytesOut);
+                    } catch (MinioException | InvalidKeyException | NoSuchAlgorithmException e) {
+                        throw new IOException(e);
+                    }
+                }
+                outputStream.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+            }, httpHeaders, HttpStatus.PARTIAL_CONTENT);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        } catch (BucketNotFoundException | ErrorResponseException e) {
             throw new NotFoundException(e.getMessage());
         } catch (ServerException | InternalException | XmlParserException | InvalidResponseException |
                  InvalidKeyException | NoSuchAlgorithmException | InsufficientDataException e) {
@@ -123,6 +489,67 @@ public class ObjectController {
         }
     }
 
+    @RequestMapping(value = "/{objectName}", method = RequestMethod.HEAD)
+    @Operation(summary = "Get the headers (size, ETag, last modified) of a single object without downloading it", responses = {
+            @ApiResponse(responseCode = "200", description = "Object headers retrieved successfully"),
+            @ApiResponse(responseCode = "304", description = "Object not modified since the given ETag or date"),
+            @ApiResponse(responseCode = "400", description = "Invalid base64 object name"),
+            @ApiResponse(responseCode = "404", description = "Could not find bucket and/or object with this name"),
+            @ApiResponse(responseCode = "500", description = "Object headers could not be retrieved due to an unexpected error")
+    })
+    public ResponseEntity<Void> headObject(
+            @RequestHeader("Project-Id") UUID projectId,
+            @PathVariable String bucketName,
+            @PathVariable String objectName,
+            WebRequest webRequest) throws IOException {
+        try {
+            var stat = this.minioService.statObject(bucketName, objectName, projectId);
+            if (webRequest.checkNotModified(getETag(stat), stat.lastModified().toInstant().toEpochMilli())) {
+                return null;
+            }
+
+            var httpHeaders = getObjectHeaders(stat, objectName);
+            httpHeaders.setContentLength(stat.size());
+            return new ResponseEntity<>(httpHeaders, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        } catch (BucketNotFoundException | ErrorResponseException e) {
+            throw new NotFoundException(e.getMessage());
+        } catch (ServerException | InternalException | XmlParserException | InvalidResponseException |
+                 InvalidKeyException | NoSuchAlgorithmException | InsufficientDataException e) {
+            throw new InternalServerErrorException(e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/directory/{directoryName}")
+    @Operation(summary = "Remove a directory and everything in it using a base64 encoded directory name", responses = {
+            @ApiResponse(responseCode = "202", description = "Directory is being emptied by a background job, see the self link"),
+            @ApiResponse(responseCode = "400", description = "Invalid base64 directory name or not a directory"),
+            @ApiResponse(responseCode = "404", description = "Could not find bucket with this name"),
+            @ApiResponse(responseCode = "429", description = "Too many jobs queued for this project"),
+            @ApiResponse(responseCode = "500", description = "Directory could not be removed due to an unexpected error")
+    })
+    public ResponseEntity<JobResponse> deleteDirectory(
+            @RequestHeader("Project-Id") UUID projectId,
+            @PathVariable String bucketName,
+            @PathVariable String directoryName) {
+        try {
+            var job = minioService.deleteDirectoryAsync(bucketName, directoryName, projectId);
+            var jobResponse = JobController.toJobResponse(job, projectId);
+            HttpHeaders httpHeaders = new HttpHeaders();
+            httpHeaders.setLocation(jobResponse.getRequiredLink("self").toUri());
+            return new ResponseEntity<>(jobResponse, httpHeaders, HttpStatus.ACCEPTED);
+        } catch (BucketNotFoundException e) {
+            throw new NotFoundException(e.getMessage());
+        } catch (HttpClientErrorException | IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        } catch (HttpServerErrorException | ServerException | ErrorResponseException |
+                 InsufficientDataException | IOException | InvalidKeyException |
+                 InvalidResponseException | XmlParserException | InternalException | NoSuchAlgorithmException e) {
+            throw new InternalServerErrorException(e.getMessage());
+        }
+    }
+
     @DeleteMapping()
     @Operation(summary = "Remove object(s) from a bucket using base64 encoded names", responses = {
             @ApiResponse(responseCode = "200", description = "Objects removed successfully"),
@@ -135,9 +562,12 @@ public class ObjectController {
             @PathVariable String bucketName,
             @RequestBody String[] objectNames) {
         try {
-            Iterable<Result<DeleteError>> deleteResponses = minioService.deleteObjects(bucketName, objectNames, projectId);
+            var result = minioService.deleteObjects(bucketName, objectNames, projectId);
+            var failures = result.failures().stream()
+                    .map(failure -> new DeleteFileResponse.DeleteFailure(failure.objectName(), failure.reason()))
+                    .toList();
             return new ResponseEntity<>(
-                    new DeleteFileResponse(bucketName, deleteResponses),
+                    new DeleteFileResponse(bucketName, result.deleted(), result.failed(), failures),
                     HttpStatus.OK
             );
         } catch (BucketNotFoundException e) {
@@ -151,31 +581,232 @@ public class ObjectController {
         }
     }
 
-    @GetMapping(value = "/directory/{directoryName}")
-    @Operation(summary = "Get directory contents", responses = {
+    @GetMapping(value = "/directory/{directoryName}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Get a page of the directory contents, the next page is requested with the returned Continuation-Token header", responses = {
             @ApiResponse(responseCode = "200", description = "Directory contents retrieved successfully"),
-            @ApiResponse(responseCode = "400", description = "Invalid base64 directory name"),
+            @ApiResponse(responseCode = "400", description = "Invalid base64 directory name or continuation token"),
             @ApiResponse(responseCode = "404", description = "Could not find bucket or directory with this name"),
             @ApiResponse(responseCode = "500", description = "Directory contents could not be retrieved due to an unexpected error")
     })
     public ResponseEntity<List<ItemResponse>> getDirectory(
             @RequestHeader("Project-Id") UUID projectId,
             @PathVariable String bucketName,
-            @PathVariable String directoryName) throws IOException {
+            @PathVariable String directoryName,
+            @RequestParam(value = "continuation-token", required = false) String continuationToken,
+            @RequestParam(value = "limit", defaultValue = "1000") int limit) throws IOException {
+        try {
+            var directoryContents = this.minioService.getDirectoryContents(bucketName, directoryName, projectId, continuationToken, limit);
+
+            HttpHeaders httpHeaders = new HttpHeaders();
+            if (directoryContents.getNextContinuationToken() != null) {
+                httpHeaders.add(CONTINUATION_TOKEN_HEADER, directoryContents.getNextContinuationToken());
+            }
+
+            return new ResponseEntity<>(
+                    directoryContents.getItems(),
+                    httpHeaders,
+                    HttpStatus.OK
+            );
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        } catch (BucketNotFoundException | ErrorResponseException e) {
+            throw new NotFoundException(e.getMessage());
+        } catch (ServerException | InternalException | XmlParserException | InvalidResponseException |
+                 InvalidKeyException | NoSuchAlgorithmException | InsufficientDataException e) {
+            throw new InternalServerErrorException(e.getMessage());
+        }
+    }
+
+    @GetMapping(value = "/directory/{directoryName}", produces = APPLICATION_NDJSON_VALUE)
+    @StreamingTransfer
+    @Operation(summary = "Stream all directory contents as newline delimited JSON, one item per line", responses = {
+            @ApiResponse(responseCode = "200", description = "Directory contents streamed successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid base64 directory name or continuation token"),
+            @ApiResponse(responseCode = "404", description = "Could not find bucket or directory with this name"),
+            @ApiResponse(responseCode = "500", description = "Directory contents could not be retrieved due to an unexpected error")
+    })
+    public ResponseEntity<StreamingResponseBody> streamDirectory(
+            @RequestHeader("Project-Id") UUID projectId,
+            @PathVariable String bucketName,
+            @PathVariable String directoryName,
+            @RequestParam(value = "continuation-token", required = false) String continuationToken) throws IOException {
         try {
-            var directoryContents = this.minioService.getDirectoryContents(bucketName, directoryName, projectId);
+            var directoryContents = this.minioService.streamDirectoryContents(bucketName, directoryName, projectId, continuationToken);
 
+            HttpHeaders httpHeaders = new HttpHeaders();
+            httpHeaders.setContentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE));
+
+            return new ResponseEntity<>(outputStream -> {
+                for (ItemResponse item : directoryContents) {
+                    objectMapper.writeValue(outputStream, item);
+                    outputStream.write('\n');
+                }
+            }, httpHeaders, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        } catch (BucketNotFoundException | ErrorResponseException e) {
+            throw new NotFoundException(e.getMessage());
+        } catch (ServerException | InternalException | XmlParserException | InvalidResponseException |
+                 InvalidKeyException | NoSuchAlgorithmException | InsufficientDataException e) {
+            throw new InternalServerErrorException(e.getMessage());
+        }
+    }
+
+    @GetMapping(value = "/search", produces = APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Search objects by prefix, name glob (e.g. *.pdf), size range and modification time. Matches are streamed as newline delimited JSON in no particular order, up to the limit", responses = {
+            @ApiResponse(responseCode = "200", description = "Matching objects streamed successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid size range or modification time"),
+            @ApiResponse(responseCode = "404", description = "Could not find bucket with this name"),
+            @ApiResponse(responseCode = "429", description = "Too many searches running, try again later"),
+            @ApiResponse(responseCode = "500", description = "Objects could not be searched due to an unexpected error")
+    })
+    public ResponseEntity<StreamingResponseBody> searchObjects(
+            @RequestHeader("Project-Id") UUID projectId,
+            @PathVariable String bucketName,
+            @RequestParam(value = "prefix", required = false) String prefix,
+            @RequestParam(value = "glob", required = false) String glob,
+            @RequestParam(value = "min-size", required = false) Long minSize,
+            @RequestParam(value = "max-size", required = false) Long maxSize,
+            @RequestParam(value = "modified-since", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) ZonedDateTime modifiedSince,
+            @RequestParam(value = "limit", defaultValue = "1000") int limit) {
+        try {
+            var filter = new SearchFilter(prefix, glob, minSize, maxSize, modifiedSince);
+            var search = this.minioService.searchObjects(bucketName, filter, limit, projectId);
+
+            HttpHeaders httpHeaders = new HttpHeaders();
+            httpHeaders.setContentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE));
+
+            return new ResponseEntity<>(outputStream -> search.writeTo(item -> {
+                objectMapper.writeValue(outputStream, item);
+                outputStream.write('\n');
+            }), httpHeaders, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        } catch (BucketNotFoundException e) {
+            throw new NotFoundException(e.getMessage());
+        } catch (ServerException | ErrorResponseException | InternalException | XmlParserException |
+                 InvalidResponseException | InvalidKeyException | NoSuchAlgorithmException |
+                 InsufficientDataException | IOException e) {
+            throw new InternalServerErrorException(e.getMessage());
+        }
+    }
+
+    @GetMapping("/usage/{directoryName}")
+    @Operation(summary = "Get the total size and amount of objects under a directory, including subdirectories", responses = {
+            @ApiResponse(responseCode = "200", description = "Directory usage retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid base64 directory name"),
+            @ApiResponse(responseCode = "404", description = "Could not find bucket with this name"),
+            @ApiResponse(responseCode = "500", description = "Directory usage could not be retrieved due to an unexpected error")
+    })
+    public ResponseEntity<DirectoryUsageResponse> getDirectoryUsage(
+            @RequestHeader("Project-Id") UUID projectId,
+            @PathVariable String bucketName,
+            @PathVariable String directoryName) {
+        try {
+            var usage = this.minioService.getDirectoryUsage(bucketName, directoryName, projectId);
             return new ResponseEntity<>(
-                    directoryContents,
+                    new DirectoryUsageResponse(StringUtils.decodeBase64(directoryName), usage.size(), usage.amountOfObjects()),
                     HttpStatus.OK
             );
         } catch (IllegalArgumentException e) {
             throw new BadRequestException(e.getMessage());
-        } catch (ErrorResponseException e) {
+        } catch (BucketNotFoundException | ErrorResponseException e) {
+            throw new NotFoundException(e.getMessage());
+        } catch (ServerException | InternalException | XmlParserException | InvalidResponseException |
+                 InvalidKeyException | NoSuchAlgorithmException | InsufficientDataException | IOException e) {
+            throw new InternalServerErrorException(e.getMessage());
+        }
+    }
+
+    @GetMapping(value = "/archive/{directoryName}", produces = APPLICATION_ZIP_VALUE)
+    @StreamingTransfer
+    @Operation(summary = "Download all objects under a directory as a ZIP archive", responses = {
+            @ApiResponse(responseCode = "200", description = "Archive of the directory streamed successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid base64 directory name"),
+            @ApiResponse(responseCode = "404", description = "Could not find bucket with this name"),
+            @ApiResponse(responseCode = "500", description = "Archive could not be created due to an unexpected error")
+    })
+    public ResponseEntity<StreamingResponseBody> downloadDirectoryArchive(
+            @RequestHeader("Project-Id") UUID projectId,
+            @PathVariable String bucketName,
+            @PathVariable String directoryName) throws IOException {
+        try {
+            var archive = this.minioService.getDirectoryArchive(bucketName, directoryName, projectId);
+
+            var decodedName = StringUtils.decodeBase64(directoryName);
+            var archiveName = decodedName.equals("/") ? bucketName : StringUtils.getFilenameFromBase64(directoryName);
+            HttpHeaders httpHeaders = new HttpHeaders();
+            httpHeaders.setContentType(MediaType.parseMediaType(APPLICATION_ZIP_VALUE));
+            httpHeaders.setContentDisposition(ContentDisposition.attachment()
+                    .filename(archiveName + ".zip", StandardCharsets.UTF_8)
+                    .build());
+
+            return new ResponseEntity<>(outputStream -> {
+                var countingOutputStream = new CountingOutputStream(outputStream);
+                try {
+                    archive.writeTo(countingOutputStream);
+                } finally {
+                    minioMetrics.recordBytesOut(countingOutputStream.getCount());
+                }
+            }, httpHeaders, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        } catch (BucketNotFoundException | ErrorResponseException e) {
             throw new NotFoundException(e.getMessage());
         } catch (ServerException | InternalException | XmlParserException | InvalidResponseException |
                  InvalidKeyException | NoSuchAlgorithmException | InsufficientDataException e) {
             throw new InternalServerErrorException(e.getMessage());
         }
     }
+
+    private static PresignedUrlResponse toPresignedUrlResponse(PresignedUrl url) {
+        return new PresignedUrlResponse(url.objectName(), StringUtils.encodeBase64(url.objectName()), url.url(), url.expiresAt());
+    }
+
+    private static UploadSessionResponse toUploadSessionResponse(UploadSession session, UUID projectId, String bucketName, String objectName) {
+        return new UploadSessionResponse(
+                bucketName,
+                session.objectName(),
+                objectName,
+                session.uploadId(),
+                session.size(),
+                session.partSize(),
+                session.partCount(),
+                session.uploadedParts().stream()
+                        .map(part -> new UploadSessionResponse.UploadedPart(part.partNumber(), part.etag(), part.size()))
+                        .toList(),
+                session.partUrls().stream()
+                        .map(partUrl -> new UploadSessionResponse.PartUrl(partUrl.partNumber(), partUrl.url()))
+                        .toList(),
+                session.urlsExpireAt()
+        ).add(linkTo(methodOn(ObjectController.class).getUploadSession(projectId, bucketName, objectName, session.uploadId(), session.size())).withSelfRel(),
+                linkTo(methodOn(ObjectController.class).abortUploadSession(projectId, bucketName, objectName, session.uploadId())).withRel("abort"));
+    }
+
+    private static String getETag(StatObjectResponse stat) {
+        var etag = stat.etag();
+        return etag.startsWith("\"") ? etag : "\"" + etag + "\"";
+    }
+
+    private static HttpHeaders getObjectHeaders(StatObjectResponse stat, String objectName) {
+        HttpHeaders httpHeaders = new HttpHeaders();
+        httpHeaders.add("Content-Disposition", "attachment; filename=" + StringUtils.getFilenameFromBase64(objectName));
+        httpHeaders.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        httpHeaders.setETag(getETag(stat));
+        httpHeaders.setLastModified(stat.lastModified());
+        httpHeaders.setContentType(stat.contentType() != null
+                ? MediaType.parseMediaType(stat.contentType())
+                : MediaType.APPLICATION_OCTET_STREAM);
+        return httpHeaders;
+    }
+
+    private static String getContentRange(long start, long end, long size) {
+        return "bytes " + start + "-" + end + "/" + size;
+    }
+
+    private static ResponseEntity<StreamingResponseBody> rangeNotSatisfiable(long size) {
+        HttpHeaders httpHeaders = new HttpHeaders();
+        httpHeaders.set(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+        return new ResponseEntity<>(httpHeaders, HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+    }
 }
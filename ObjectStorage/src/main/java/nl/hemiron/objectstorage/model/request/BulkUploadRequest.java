@@ -0,0 +1,16 @@
+package nl.hemiron.objectstorage.model.request;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class BulkUploadRequest {
+
+    private String objectPath;
+
+    private List<MultipartFile> objects;
+}
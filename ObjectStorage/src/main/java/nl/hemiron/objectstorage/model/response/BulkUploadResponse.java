@@ -0,0 +1,40 @@
+package nl.hemiron.objectstorage.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@AllArgsConstructor
+public class BulkUploadResponse {
+    /**
+     * Name of the bucket
+     */
+    @Getter
+    public final String bucketName;
+
+    /**
+     * Amount of objects uploaded
+     */
+    @Getter
+    public final long uploadedObjects;
+
+    /**
+     * Amount of objects that could not be uploaded
+     */
+    @Getter
+    public final long failedObjects;
+
+    /**
+     * Result of every object of the request, in the order they were sent
+     */
+    @Getter
+    public final List<UploadedObject> objects;
+
+    /**
+     * The objectId is the base64 encoded object name as used by the other object endpoints.
+     * The etag is null and the reason is set when the object could not be uploaded
+     */
+    public record UploadedObject(String objectName, String objectId, long size, String etag, String reason) {
+    }
+}
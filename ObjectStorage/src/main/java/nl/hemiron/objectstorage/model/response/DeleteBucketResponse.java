@@ -2,12 +2,19 @@ package nl.hemiron.objectstorage.model.response;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import org.springframework.hateoas.RepresentationModel;
 
 @AllArgsConstructor
-public class DeleteBucketResponse {
+public class DeleteBucketResponse extends RepresentationModel<DeleteBucketResponse> {
     /**
      * Name of the bucket
      */
     @Getter
     public final String name;
+
+    /**
+     * Id of the background job that is still deleting the bucket, null if the bucket has been deleted
+     */
+    @Getter
+    public final String jobId;
 }
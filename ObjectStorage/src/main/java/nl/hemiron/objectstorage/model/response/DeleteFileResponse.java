@@ -1,10 +1,10 @@
 package nl.hemiron.objectstorage.model.response;
 
-import io.minio.Result;
-import io.minio.messages.DeleteError;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
+import java.util.List;
+
 @AllArgsConstructor
 public class DeleteFileResponse {
     /**
@@ -13,6 +13,24 @@ public class DeleteFileResponse {
     @Getter
     public final String bucketName;
 
+    /**
+     * Amount of objects deleted, including the objects inside deleted directories
+     */
+    @Getter
+    public final long deletedObjects;
+
+    /**
+     * Amount of objects that could not be deleted
+     */
+    @Getter
+    public final long failedObjects;
+
+    /**
+     * Objects that could not be deleted with the reason, limited to the first 1000
+     */
     @Getter
-    public final Iterable<Result<DeleteError>> deleteErrors;
+    public final List<DeleteFailure> failures;
+
+    public record DeleteFailure(String objectName, String reason) {
+    }
 }
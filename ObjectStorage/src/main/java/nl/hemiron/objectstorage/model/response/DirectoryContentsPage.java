@@ -0,0 +1,20 @@
+package nl.hemiron.objectstorage.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@AllArgsConstructor
+@Getter
+public class DirectoryContentsPage {
+    /**
+     * Objects and subdirectories in this page of the directory
+     */
+    private final List<ItemResponse> items;
+
+    /**
+     * Token to request the next page with, null if this is the last page
+     */
+    private final String nextContinuationToken;
+}
@@ -0,0 +1,21 @@
+package nl.hemiron.objectstorage.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+public class DirectoryUsageResponse {
+
+    private final String directoryName;
+
+    /**
+     * Total size of the objects under the directory, including subdirectories (in bytes)
+     */
+    private final long size;
+
+    /**
+     * Amount of objects under the directory, including subdirectories
+     */
+    private final long amountOfObjects;
+}
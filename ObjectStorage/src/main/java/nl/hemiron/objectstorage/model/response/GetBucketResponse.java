@@ -19,4 +19,13 @@ public class GetBucketResponse extends RepresentationModel<GetBucketResponse> {
      * Amount of objects in the bucket. Directories are not counted as objects
      */
     public final int amountOfObjects;
+
+    /**
+     * False if the statistics of the bucket could not be retrieved in time, size and amountOfObjects are 0 then
+     */
+    public final boolean complete;
+
+    public GetBucketResponse(String name, long size, int amountOfObjects) {
+        this(name, size, amountOfObjects, true);
+    }
 }
@@ -0,0 +1,55 @@
+package nl.hemiron.objectstorage.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.hateoas.RepresentationModel;
+
+import java.time.ZonedDateTime;
+
+@AllArgsConstructor
+@Getter
+public class JobResponse extends RepresentationModel<JobResponse> {
+
+    private final String id;
+
+    /**
+     * Kind of operation, e.g. delete-bucket
+     */
+    private final String type;
+
+    private final String bucketName;
+
+    /**
+     * What the job works on within the bucket, e.g. the directory of a delete-directory job. Null for whole buckets
+     */
+    private final String target;
+
+    /**
+     * QUEUED, RUNNING, COMPLETED, FAILED or CANCELLED
+     */
+    private final String status;
+
+    /**
+     * Amount of objects processed successfully so far
+     */
+    private final long processedObjects;
+
+    /**
+     * Amount of bytes processed so far, for jobs that count them (usage-scan)
+     */
+    private final long processedBytes;
+
+    /**
+     * Amount of objects that could not be processed so far
+     */
+    private final long failedObjects;
+
+    /**
+     * Reason of failure, null unless the job failed
+     */
+    private final String message;
+
+    private final ZonedDateTime createdAt;
+
+    private final ZonedDateTime finishedAt;
+}
@@ -0,0 +1,25 @@
+package nl.hemiron.objectstorage.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.ZonedDateTime;
+
+@AllArgsConstructor
+@Getter
+public class PresignedUrlResponse {
+
+    private final String objectName;
+
+    /**
+     * Base64 encoded object name as used by the other object endpoints
+     */
+    private final String objectId;
+
+    /**
+     * URL to GET the object directly from MinIO, without the Project-Id header
+     */
+    private final String url;
+
+    private final ZonedDateTime expiresAt;
+}
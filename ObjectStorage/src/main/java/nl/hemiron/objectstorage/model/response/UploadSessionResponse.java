@@ -0,0 +1,54 @@
+package nl.hemiron.objectstorage.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.hateoas.RepresentationModel;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+@AllArgsConstructor
+@Getter
+public class UploadSessionResponse extends RepresentationModel<UploadSessionResponse> {
+
+    private final String bucketName;
+
+    private final String objectName;
+
+    /**
+     * Base64 encoded object name as used by the other object endpoints
+     */
+    private final String objectId;
+
+    private final String uploadId;
+
+    private final long size;
+
+    /**
+     * Size of every part except the last one, which holds the remainder
+     */
+    private final long partSize;
+
+    private final int partCount;
+
+    /**
+     * Parts MinIO has received so far
+     */
+    private final List<UploadedPart> uploadedParts;
+
+    /**
+     * Presigned URLs to PUT the parts that haven't been uploaded yet
+     */
+    private final List<PartUrl> partUrls;
+
+    /**
+     * When the part URLs expire, get the session again for fresh URLs
+     */
+    private final ZonedDateTime urlsExpireAt;
+
+    public record UploadedPart(int partNumber, String etag, long size) {
+    }
+
+    public record PartUrl(int partNumber, String url) {
+    }
+}
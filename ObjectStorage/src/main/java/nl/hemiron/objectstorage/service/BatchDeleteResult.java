@@ -0,0 +1,12 @@
+package nl.hemiron.objectstorage.service;
+
+import java.util.List;
+
+/**
+ * Outcome of deleting objects in batches. Only the first failures are kept, failed counts all of them
+ */
+public record BatchDeleteResult(long deleted, long failed, List<Failure> failures) {
+
+    public record Failure(String objectName, String reason) {
+    }
+}
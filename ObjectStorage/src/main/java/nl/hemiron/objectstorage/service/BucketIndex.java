@@ -0,0 +1,314 @@
+package nl.hemiron.objectstorage.service;
+
+import nl.hemiron.objectstorage.model.response.ItemResponse;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Prefix tree of the objects of one bucket, with a node per directory. Every directory keeps the total size and
+ * amount of objects below it, so a listing or the size of a prefix only visits the entries it returns.
+ * Names are ordered by code point like MinIO orders keys, so pages and continuation tokens are the same as
+ * those of a listing by MinIO
+ */
+final class BucketIndex {
+
+    record Entry(long size, String etag, ZonedDateTime lastModified) {
+    }
+
+    interface Visitor {
+        void visit(String objectName, Entry entry);
+    }
+
+    /**
+     * The order in which MinIO lists object names
+     */
+    static final Comparator<String> CODE_POINT_ORDER = (a, b) -> {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int codePointA = a.codePointAt(i);
+            int codePointB = b.codePointAt(j);
+            if (codePointA != codePointB) {
+                return Integer.compare(codePointA, codePointB);
+            }
+            i += Character.charCount(codePointA);
+            j += Character.charCount(codePointB);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    };
+
+    private static final class Directory {
+        // Subdirectories are keyed by their name including the trailing slash, objects by their name
+        private final NavigableMap<String, Object> children = new TreeMap<>(CODE_POINT_ORDER);
+        private long size;
+        private long amountOfObjects;
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Directory root = new Directory();
+
+    private final long crawledAt;
+
+    private volatile boolean stale;
+
+    private volatile boolean read;
+
+    BucketIndex(long crawledAt) {
+        this.crawledAt = crawledAt;
+    }
+
+    long getCrawledAt() {
+        return crawledAt;
+    }
+
+    boolean isStale() {
+        return stale;
+    }
+
+    void markStale() {
+        stale = true;
+    }
+
+    /**
+     * @return whether the index was read since it was crawled
+     */
+    boolean isRead() {
+        return read;
+    }
+
+    void markRead() {
+        read = true;
+    }
+
+    void put(String objectName, Entry entry) {
+        lock.writeLock().lock();
+        try {
+            var path = new ArrayList<Directory>();
+            var directory = root;
+            path.add(directory);
+            int start = 0;
+            int slash;
+            while ((slash = objectName.indexOf('/', start)) >= 0) {
+                directory = (Directory) directory.children.computeIfAbsent(objectName.substring(start, slash + 1), key -> new Directory());
+                path.add(directory);
+                start = slash + 1;
+            }
+            var previous = (Entry) directory.children.put(objectName.substring(start), entry);
+            long sizeDelta = entry.size() - (previous != null ? previous.size() : 0);
+            long amountDelta = previous != null ? 0 : 1;
+            for (Directory onPath : path) {
+                onPath.size += sizeDelta;
+                onPath.amountOfObjects += amountDelta;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(String objectName) {
+        lock.writeLock().lock();
+        try {
+            var path = new ArrayList<Directory>();
+            var names = new ArrayList<String>();
+            var directory = root;
+            path.add(directory);
+            int start = 0;
+            int slash;
+            while ((slash = objectName.indexOf('/', start)) >= 0) {
+                var name = objectName.substring(start, slash + 1);
+                directory = (Directory) directory.children.get(name);
+                if (directory == null) {
+                    return;
+                }
+                path.add(directory);
+                names.add(name);
+                start = slash + 1;
+            }
+            var removed = (Entry) directory.children.remove(objectName.substring(start));
+            if (removed == null) {
+                return;
+            }
+            for (Directory onPath : path) {
+                onPath.size -= removed.size();
+                onPath.amountOfObjects--;
+            }
+            // Directories only exist through their objects, like in MinIO
+            for (int i = path.size() - 1; i > 0 && path.get(i).children.isEmpty(); i--) {
+                path.get(i - 1).children.remove(names.get(i - 1));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Lists the objects and directories directly under the prefix in the same way as a non-recursive listing
+     * by MinIO: everything after startAfter (if given), with objects in subdirectories rolled up into the subdirectory
+     */
+    List<ItemResponse> list(String prefix, String startAfter, int maxItems) {
+        int slash = prefix.lastIndexOf('/');
+        var directoryName = prefix.substring(0, slash + 1);
+        var namePrefix = prefix.substring(slash + 1);
+
+        lock.readLock().lock();
+        try {
+            var directory = getDirectory(directoryName);
+            List<ItemResponse> items = new ArrayList<>();
+            if (directory == null) {
+                return items;
+            }
+
+            var children = directory.children.tailMap(namePrefix, true);
+            if (startAfter != null) {
+                if (!startAfter.startsWith(directoryName)) {
+                    if (CODE_POINT_ORDER.compare(startAfter, directoryName) > 0) {
+                        return items;
+                    }
+                } else {
+                    var after = startAfter.substring(directoryName.length());
+                    if (CODE_POINT_ORDER.compare(after, namePrefix) >= 0) {
+                        children = directory.children.tailMap(after, false);
+                    }
+                }
+            }
+
+            for (Map.Entry<String, Object> child : children.entrySet()) {
+                if (items.size() == maxItems || !child.getKey().startsWith(namePrefix)) {
+                    break;
+                }
+                var objectName = directoryName + child.getKey();
+                if (child.getValue() instanceof Entry entry) {
+                    items.add(toItemResponse(objectName, entry));
+                } else {
+                    items.add(new ItemResponse(objectName, true));
+                }
+            }
+            return items;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return up to the limit of objects matching the filter, in order
+     */
+    List<ItemResponse> search(SearchFilter filter, int limit) {
+        var prefix = filter.getPrefix();
+        int slash = prefix.lastIndexOf('/');
+        var directoryName = prefix.substring(0, slash + 1);
+        var namePrefix = prefix.substring(slash + 1);
+
+        lock.readLock().lock();
+        try {
+            var directory = getDirectory(directoryName);
+            List<ItemResponse> matches = new ArrayList<>();
+            if (directory != null) {
+                search(directoryName, directory.children.tailMap(namePrefix, true), namePrefix, filter, limit, matches);
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void search(String directoryName, NavigableMap<String, Object> children, String namePrefix, SearchFilter filter, int limit, List<ItemResponse> matches) {
+        for (Map.Entry<String, Object> child : children.entrySet()) {
+            if (matches.size() == limit || !child.getKey().startsWith(namePrefix)) {
+                return;
+            }
+            var name = directoryName + child.getKey();
+            if (child.getValue() instanceof Entry entry) {
+                if (filter.matches(name, entry.size(), entry.lastModified())) {
+                    matches.add(toItemResponse(name, entry));
+                }
+            } else if (filter.mayMatchIn(((Directory) child.getValue()).size)) {
+                search(name, ((Directory) child.getValue()).children, "", filter, limit, matches);
+            }
+        }
+    }
+
+    private static ItemResponse toItemResponse(String objectName, Entry entry) {
+        return new ItemResponse(entry.etag(), objectName, entry.lastModified(), null, entry.size(),
+                null, false, null, null, false);
+    }
+
+    /**
+     * @return the total size and amount of objects of which the name starts with the prefix
+     */
+    BucketUsageService.Usage getUsage(String prefix) {
+        int slash = prefix.lastIndexOf('/');
+        var directoryName = prefix.substring(0, slash + 1);
+        var namePrefix = prefix.substring(slash + 1);
+
+        lock.readLock().lock();
+        try {
+            var directory = getDirectory(directoryName);
+            if (directory == null) {
+                return new BucketUsageService.Usage(0, 0);
+            }
+            if (namePrefix.isEmpty()) {
+                return new BucketUsageService.Usage(directory.size, directory.amountOfObjects);
+            }
+
+            long size = 0;
+            long amountOfObjects = 0;
+            for (Map.Entry<String, Object> child : directory.children.tailMap(namePrefix, true).entrySet()) {
+                if (!child.getKey().startsWith(namePrefix)) {
+                    break;
+                }
+                if (child.getValue() instanceof Entry entry) {
+                    size += entry.size();
+                    amountOfObjects++;
+                } else {
+                    size += ((Directory) child.getValue()).size;
+                    amountOfObjects += ((Directory) child.getValue()).amountOfObjects;
+                }
+            }
+            return new BucketUsageService.Usage(size, amountOfObjects);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Visits all objects in order while holding the read lock, so changes wait until the visitor is done
+     */
+    void forEach(Visitor visitor) {
+        lock.readLock().lock();
+        try {
+            forEach("", root, visitor);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void forEach(String directoryName, Directory directory, Visitor visitor) {
+        for (Map.Entry<String, Object> child : directory.children.entrySet()) {
+            if (child.getValue() instanceof Entry entry) {
+                visitor.visit(directoryName + child.getKey(), entry);
+            } else {
+                forEach(directoryName + child.getKey(), (Directory) child.getValue(), visitor);
+            }
+        }
+    }
+
+    private Directory getDirectory(String directoryName) {
+        var directory = root;
+        int start = 0;
+        int slash;
+        while (directory != null && (slash = directoryName.indexOf('/', start)) >= 0) {
+            directory = (Directory) directory.children.get(directoryName.substring(start, slash + 1));
+            start = slash + 1;
+        }
+        return directory;
+    }
+}
@@ -0,0 +1,69 @@
+package nl.hemiron.objectstorage.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * In-process cache of bucket existence and project ownership, keyed by bucket name.
+ * Known buckets are remembered together with the projectId tag they carry, so verifying a request
+ * doesn't need a bucketExists and getBucketTags round-trip to MinIO every time.
+ * Buckets that turned out not to exist are cached separately with a shorter TTL.
+ */
+@Component
+public class BucketOwnershipCache {
+
+    /**
+     * Ownership of an existing bucket. The projectId is the raw value of the bucket's projectId tag
+     * and is null when the bucket isn't tagged.
+     */
+    public record BucketOwnership(String projectId) {
+    }
+
+    private final Cache<String, BucketOwnership> owners;
+
+    private final Cache<String, Boolean> missing;
+
+    public BucketOwnershipCache(
+            @Value("${minio.bucket.cache.size:10000}") long maximumSize,
+            @Value("${minio.bucket.cache.ttl.seconds:60}") long ttlSeconds,
+            @Value("${minio.bucket.cache.negative.ttl.seconds:5}") long negativeTtlSeconds) {
+        this.owners = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+        this.missing = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(negativeTtlSeconds))
+                .build();
+    }
+
+    /**
+     * @return the cached ownership of the bucket, or null if it's not cached (or known to be missing)
+     */
+    public BucketOwnership getOwnership(String bucketName) {
+        return owners.getIfPresent(bucketName);
+    }
+
+    public boolean isKnownMissing(String bucketName) {
+        return missing.getIfPresent(bucketName) != null;
+    }
+
+    public void putOwnership(String bucketName, String projectId) {
+        missing.invalidate(bucketName);
+        owners.put(bucketName, new BucketOwnership(projectId));
+    }
+
+    public void putMissing(String bucketName) {
+        owners.invalidate(bucketName);
+        missing.put(bucketName, Boolean.TRUE);
+    }
+
+    public void invalidate(String bucketName) {
+        owners.invalidate(bucketName);
+        missing.invalidate(bucketName);
+    }
+}
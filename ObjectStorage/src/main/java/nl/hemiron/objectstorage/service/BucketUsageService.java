@@ -0,0 +1,208 @@
+package nl.hemiron.objectstorage.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps per-bucket usage statistics (total size and amount of objects) so bucket information can be served
+ * without listing every object in the bucket.
+ * The counters are updated by the upload and delete paths, deletes of which the sizes aren't known mark them stale,
+ * and they are periodically reconciled against a full listing, which also corrects any drift (e.g. overwritten
+ * objects).
+ */
+@Service
+public class BucketUsageService {
+
+    public record Usage(long size, long amountOfObjects) {
+    }
+
+    /**
+     * A full listing of a bucket. Uploads and deletes recorded while listing are applied to the listed totals once
+     * the listing is complete, if the listing had passed their object already. Those of objects still ahead of the
+     * listing are left to the listing. A listing made elsewhere (e.g. by a worker) has no known position, changes
+     * recorded while it runs leave the counters stale
+     */
+    public static final class Listing {
+
+        private final String bucketName;
+
+        private final boolean remote;
+
+        private final AtomicLong size = new AtomicLong();
+
+        private final AtomicLong amountOfObjects = new AtomicLong();
+
+        private volatile String position;
+
+        private volatile boolean stale;
+
+        private volatile boolean removed;
+
+        private Listing(String bucketName, boolean remote) {
+            this.bucketName = bucketName;
+            this.remote = remote;
+        }
+
+        /**
+         * Moves the listing past the object, objects are listed in the order of their names
+         */
+        public void listed(String objectName) {
+            position = objectName;
+        }
+
+        private void record(String objectName, long sizeChange, long amountChange) {
+            if (remote) {
+                stale = true;
+                return;
+            }
+            var current = position;
+            if (current != null && BucketIndex.CODE_POINT_ORDER.compare(objectName, current) <= 0) {
+                size.addAndGet(sizeChange);
+                amountOfObjects.addAndGet(amountChange);
+            }
+        }
+    }
+
+    private static class BucketUsage {
+        private final AtomicLong size = new AtomicLong();
+        private final AtomicLong amountOfObjects = new AtomicLong();
+        private volatile long reconciledAt;
+        private volatile boolean stale;
+    }
+
+    private final Map<String, BucketUsage> usages = new ConcurrentHashMap<>();
+
+    private final Set<Listing> listings = ConcurrentHashMap.newKeySet();
+
+    private final long maxAgeMillis;
+
+    public BucketUsageService(@Value("${minio.usage.max.age.seconds:900}") long maxAgeSeconds) {
+        this.maxAgeMillis = Duration.ofSeconds(maxAgeSeconds).toMillis();
+    }
+
+    /**
+     * @return the usage of the bucket, or null if the bucket isn't tracked yet
+     */
+    public Usage getUsage(String bucketName) {
+        var usage = usages.get(bucketName);
+        if (usage == null) {
+            return null;
+        }
+        return new Usage(usage.size.get(), usage.amountOfObjects.get());
+    }
+
+    /**
+     * Replaces the counters of a bucket with totals that are known to be exact, e.g. those of a new bucket
+     */
+    public void reconcile(String bucketName, long size, long amountOfObjects) {
+        var usage = new BucketUsage();
+        usage.size.set(size);
+        usage.amountOfObjects.set(amountOfObjects);
+        usage.reconciledAt = System.currentTimeMillis();
+        usages.put(bucketName, usage);
+    }
+
+    /**
+     * Starts recording the changes of the bucket, to apply them to the totals of the listing that starts now
+     *
+     * @param remote whether the bucket is listed elsewhere, so the position of the listing isn't known
+     */
+    public Listing startListing(String bucketName, boolean remote) {
+        var listing = new Listing(bucketName, remote);
+        listings.add(listing);
+        return listing;
+    }
+
+    /**
+     * Replaces the counters of the bucket with the totals of the listing plus the changes recorded while listing
+     * of objects it had passed. A change of an object while the page holding it was being fetched may still be
+     * counted wrong, until the next reconciliation. Nothing is replaced if the bucket was removed while listing
+     *
+     * @return the usage of the bucket after reconciling
+     */
+    public Usage reconcile(Listing listing, long size, long amountOfObjects) {
+        listings.remove(listing);
+        var reconciled = new Usage(size + listing.size.get(), amountOfObjects + listing.amountOfObjects.get());
+        if (listing.removed) {
+            return reconciled;
+        }
+        var usage = new BucketUsage();
+        usage.size.set(reconciled.size());
+        usage.amountOfObjects.set(reconciled.amountOfObjects());
+        usage.reconciledAt = System.currentTimeMillis();
+        usage.stale = listing.stale;
+        usages.put(listing.bucketName, usage);
+        return reconciled;
+    }
+
+    /**
+     * Stops recording the changes of the bucket for a listing that failed
+     */
+    public void abortListing(Listing listing) {
+        listings.remove(listing);
+    }
+
+    public void recordUpload(String bucketName, String objectName, long size) {
+        record(bucketName, objectName, size, 1);
+    }
+
+    public void recordDelete(String bucketName, String objectName, long size) {
+        record(bucketName, objectName, -size, -1);
+    }
+
+    private void record(String bucketName, String objectName, long sizeChange, long amountChange) {
+        var usage = usages.get(bucketName);
+        if (usage != null) {
+            usage.size.addAndGet(sizeChange);
+            usage.amountOfObjects.addAndGet(amountChange);
+        }
+        for (var listing : listings) {
+            if (listing.bucketName.equals(bucketName)) {
+                listing.record(objectName, sizeChange, amountChange);
+            }
+        }
+    }
+
+    /**
+     * Marks the counters of a bucket as inaccurate, for changes of which the size isn't known.
+     * The bucket will be reconciled on the next run
+     */
+    public void markStale(String bucketName) {
+        var usage = usages.get(bucketName);
+        if (usage != null) {
+            usage.stale = true;
+        }
+        for (var listing : listings) {
+            if (listing.bucketName.equals(bucketName)) {
+                listing.stale = true;
+            }
+        }
+    }
+
+    public void remove(String bucketName) {
+        usages.remove(bucketName);
+        for (var listing : listings) {
+            if (listing.bucketName.equals(bucketName)) {
+                listing.removed = true;
+            }
+        }
+    }
+
+    /**
+     * @return names of the tracked buckets which are marked stale or haven't been reconciled for the max age
+     */
+    public List<String> getBucketsToReconcile() {
+        var threshold = System.currentTimeMillis() - maxAgeMillis;
+        return usages.entrySet().stream()
+                .filter(entry -> entry.getValue().stale || entry.getValue().reconciledAt < threshold)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+}
@@ -0,0 +1,15 @@
+package nl.hemiron.objectstorage.service;
+
+import java.util.List;
+
+/**
+ * Outcome of uploading several objects at once, with the result of every object in the order they were given
+ */
+public record BulkUploadResult(long uploaded, long failed, List<ObjectResult> objects) {
+
+    /**
+     * Result of a single object, the etag is null and the reason is set when it couldn't be uploaded
+     */
+    public record ObjectResult(String objectName, long size, String etag, String reason) {
+    }
+}
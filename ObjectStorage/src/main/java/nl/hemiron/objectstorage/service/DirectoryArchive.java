@@ -0,0 +1,164 @@
+package nl.hemiron.objectstorage.service;
+
+import io.minio.messages.Item;
+import lombok.extern.java.Log;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * ZIP archive of all objects under a directory, written as a stream.
+ * While an object is written, the next objects are already requested from MinIO (up to the prefetch amount),
+ * so the archive isn't held up by the latency of every single getObject. Only the opened object streams are held,
+ * so memory use doesn't depend on the size of the directory or its objects, and nothing is written to disk
+ */
+@Log
+public class DirectoryArchive {
+
+    private static final RateLimitedLog itemLog = new RateLimitedLog(log, 10, Duration.ofSeconds(10));
+
+    @FunctionalInterface
+    interface ObjectOpener {
+        InputStream open(String objectName) throws Exception;
+    }
+
+    /**
+     * An entry of the archive, the stream is null for directory markers
+     */
+    private record PendingEntry(Item item, CompletableFuture<InputStream> stream) {
+    }
+
+    private final Iterator<Item> items;
+
+    private final String prefix;
+
+    private final ObjectOpener objectOpener;
+
+    private final AsyncTaskExecutor prefetchExecutor;
+
+    private final int prefetch;
+
+    // Set once the archive is done, objects that weren't opened yet aren't opened anymore
+    private volatile boolean abandoned;
+
+    DirectoryArchive(Iterator<Item> items, String prefix, ObjectOpener objectOpener, AsyncTaskExecutor prefetchExecutor, int prefetch) {
+        this.items = items;
+        this.prefix = prefix;
+        this.objectOpener = objectOpener;
+        this.prefetchExecutor = prefetchExecutor;
+        this.prefetch = prefetch;
+    }
+
+    public void writeTo(OutputStream outputStream) throws IOException {
+        Deque<PendingEntry> pending = new ArrayDeque<>();
+        PendingEntry current = null;
+        try {
+            var zip = new ZipOutputStream(new FilterOutputStream(outputStream) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    // The response stream is closed by the container
+                    flush();
+                }
+            });
+            // Objects are often compressed already, so spend as little time as possible on compressing
+            zip.setLevel(Deflater.BEST_SPEED);
+            prefetch(pending);
+            while (!pending.isEmpty()) {
+                current = pending.poll();
+                prefetch(pending);
+                writeEntry(zip, current);
+                current = null;
+            }
+            // Only finish the archive when everything was written, a failure leaves it visibly truncated
+            zip.close();
+        } finally {
+            // The client went away or an object failed, close the streams that were or are being opened
+            abandoned = true;
+            if (current != null) {
+                closeQuietly(current);
+            }
+            for (PendingEntry entry : pending) {
+                closeQuietly(entry);
+            }
+        }
+    }
+
+    private void prefetch(Deque<PendingEntry> pending) {
+        while (pending.size() < prefetch && items.hasNext()) {
+            var item = items.next();
+            var name = item.objectName();
+            if (name.length() <= prefix.length() || name.contains("../")) {
+                itemLog.log(Level.WARNING, () -> "Skipping object " + name + " in archive");
+                continue;
+            }
+            pending.add(new PendingEntry(item, name.endsWith("/")
+                    ? null
+                    : prefetchExecutor.submitCompletable(() -> abandoned ? null : objectOpener.open(name))));
+        }
+    }
+
+    private void writeEntry(ZipOutputStream zip, PendingEntry entry) throws IOException {
+        var item = entry.item();
+        var zipEntry = new ZipEntry(item.objectName().substring(prefix.length()));
+        if (item.lastModified() != null) {
+            zipEntry.setLastModifiedTime(FileTime.from(item.lastModified().toInstant()));
+        }
+        zip.putNextEntry(zipEntry);
+        if (entry.stream() != null) {
+            try (var stream = await(entry)) {
+                stream.transferTo(zip);
+            }
+        }
+        zip.closeEntry();
+    }
+
+    private static InputStream await(PendingEntry entry) throws IOException {
+        try {
+            return entry.stream().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while getting object " + entry.item().objectName());
+        } catch (ExecutionException e) {
+            throw new IOException("Could not get object " + entry.item().objectName() + ": " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Closes the stream of the entry once it's opened, a task that is still opening it can't be cancelled.
+     * Nothing is closed when opening the object failed
+     */
+    private static void closeQuietly(PendingEntry entry) {
+        if (entry.stream() == null) {
+            return;
+        }
+        entry.stream().thenAccept(stream -> {
+            if (stream == null) {
+                return;
+            }
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+                // The connection is discarded either way
+            }
+        });
+    }
+}
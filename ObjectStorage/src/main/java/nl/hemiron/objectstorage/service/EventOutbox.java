@@ -0,0 +1,70 @@
+package nl.hemiron.objectstorage.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Local file of serialized events that could not be published yet, one per line.
+ * New events are appended to the outbox file. To replay, the file is first moved aside, so events appended
+ * while replaying end up in a new outbox file and the moved file can be deleted once all of it was published
+ */
+class EventOutbox {
+
+    private final Path file;
+
+    private final Path replayFile;
+
+    private BufferedWriter writer;
+
+    EventOutbox(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.file = directory.resolve("outbox.jsonl");
+        this.replayFile = directory.resolve("outbox-replay.jsonl");
+    }
+
+    synchronized void append(List<String> events) throws IOException {
+        if (writer == null) {
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        for (String event : events) {
+            writer.write(event);
+            writer.newLine();
+        }
+        writer.flush();
+    }
+
+    /**
+     * @return the file of events to replay, or null if there are none
+     */
+    synchronized Path takeForReplay() throws IOException {
+        if (Files.exists(replayFile)) {
+            // A previous replay didn't finish
+            return replayFile;
+        }
+        if (!Files.exists(file) || Files.size(file) == 0) {
+            return null;
+        }
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+        return Files.move(file, replayFile, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    void replayed(Path replayed) throws IOException {
+        Files.deleteIfExists(replayed);
+    }
+
+    synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+}
@@ -39,6 +39,6 @@ public class ExchangeService {
 
         restTemplate.exchange(requestEntity, void.class);
 
-        log.log(Level.INFO, "Uploaded file " + file.getName());
+        log.log(Level.FINE, () -> "Uploaded file " + file.getName());
     }
 }
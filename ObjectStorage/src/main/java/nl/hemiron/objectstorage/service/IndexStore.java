@@ -0,0 +1,124 @@
+package nl.hemiron.objectstorage.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+/**
+ * Local files of the metadata index, one per bucket. A file starts with the time the bucket was crawled,
+ * followed by the objects found by the crawl and every change since, one per line, so reading it back
+ * restores the index. It is rewritten after every crawl. Object names are base64 encoded, as they may contain
+ * any character
+ */
+class IndexStore {
+
+    private static final String SUFFIX = ".index";
+
+    private final Path directory;
+
+    IndexStore(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.directory = directory;
+    }
+
+    /**
+     * Replaces the file of the bucket with the content of the index
+     */
+    void write(String bucketName, BucketIndex index) throws IOException {
+        var temporaryFile = directory.resolve(bucketName + SUFFIX + ".tmp");
+        try (var writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+            writer.write("#\t" + index.getCrawledAt());
+            writer.newLine();
+            index.forEach((objectName, entry) -> {
+                try {
+                    writePut(writer, objectName, entry);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Files.move(temporaryFile, directory.resolve(bucketName + SUFFIX), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    void appendPut(String bucketName, String objectName, BucketIndex.Entry entry) throws IOException {
+        try (var writer = Files.newBufferedWriter(directory.resolve(bucketName + SUFFIX), StandardCharsets.UTF_8, StandardOpenOption.APPEND)) {
+            writePut(writer, objectName, entry);
+        }
+    }
+
+    void appendRemove(String bucketName, String objectName) throws IOException {
+        try (var writer = Files.newBufferedWriter(directory.resolve(bucketName + SUFFIX), StandardCharsets.UTF_8, StandardOpenOption.APPEND)) {
+            writer.write("-\t" + StringUtils.encodeBase64(objectName));
+            writer.newLine();
+        }
+    }
+
+    private static void writePut(BufferedWriter writer, String objectName, BucketIndex.Entry entry) throws IOException {
+        writer.write("+\t" + StringUtils.encodeBase64(objectName)
+                + "\t" + entry.size()
+                + "\t" + (entry.etag() != null ? entry.etag() : "")
+                + "\t" + (entry.lastModified() != null ? entry.lastModified().toInstant().toEpochMilli() : ""));
+        writer.newLine();
+    }
+
+    /**
+     * @return the files of all buckets
+     */
+    Iterable<Path> getFiles() throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).toList();
+        }
+    }
+
+    static String getBucketName(Path file) {
+        var fileName = file.getFileName().toString();
+        return fileName.substring(0, fileName.length() - SUFFIX.length());
+    }
+
+    /**
+     * @return the index stored in the file, or null if the file is damaged
+     */
+    BucketIndex read(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            var header = reader.readLine();
+            if (header == null || !header.startsWith("#\t")) {
+                return null;
+            }
+            var index = new BucketIndex(Long.parseLong(header.substring(2)));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                var fields = line.split("\t", -1);
+                var objectName = StringUtils.decodeBase64(fields[1]);
+                if (fields[0].equals("-")) {
+                    index.remove(objectName);
+                } else if (fields.length == 5) {
+                    index.put(objectName, new BucketIndex.Entry(
+                            Long.parseLong(fields[2]),
+                            fields[3].isEmpty() ? null : fields[3],
+                            fields[4].isEmpty() ? null : ZonedDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(fields[4])), ZoneOffset.UTC)));
+                } else {
+                    // Only the last line can be incomplete, when the service stopped while appending to it
+                    break;
+                }
+            }
+            return index;
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    void delete(String bucketName) throws IOException {
+        Files.deleteIfExists(directory.resolve(bucketName + SUFFIX));
+    }
+}
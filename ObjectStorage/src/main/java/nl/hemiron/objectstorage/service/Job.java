@@ -0,0 +1,102 @@
+package nl.hemiron.objectstorage.service;
+
+import lombok.Getter;
+import nl.hemiron.objectstorage.exceptions.InternalServerErrorException;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A long-running operation on a bucket (e.g. force-deleting it) that runs in the background.
+ * Progress is counted in objects, so clients can follow the job while it runs.
+ * A remote job runs on a worker instance, its state is kept up to date from the updates the worker publishes
+ */
+@Getter
+public class Job {
+
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED
+    }
+
+    private final String id;
+
+    private final String type;
+
+    private final String bucketName;
+
+    /**
+     * What the job works on inside the bucket, e.g. the directory of a delete-directory job. Null for whole buckets
+     */
+    private final String target;
+
+    private final UUID projectId;
+
+    private final boolean remote;
+
+    private final ZonedDateTime createdAt = ZonedDateTime.now();
+
+    private final AtomicLong processedObjects = new AtomicLong();
+
+    private final AtomicLong processedBytes = new AtomicLong();
+
+    private final AtomicLong failedObjects = new AtomicLong();
+
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    private volatile Status status = Status.QUEUED;
+
+    private volatile String message;
+
+    private volatile ZonedDateTime finishedAt;
+
+    private volatile boolean cancelRequested;
+
+    public Job(String id, String type, String bucketName, String target, UUID projectId, boolean remote) {
+        this.id = id;
+        this.type = type;
+        this.bucketName = bucketName;
+        this.target = target;
+        this.projectId = projectId;
+        this.remote = remote;
+    }
+
+    public void cancel() {
+        this.cancelRequested = true;
+    }
+
+    void start() {
+        this.status = Status.RUNNING;
+    }
+
+    void finish(Status status, String message) {
+        this.status = status;
+        this.message = message;
+        this.finishedAt = ZonedDateTime.now();
+    }
+
+    /**
+     * Takes over the state a worker reported for this remote job
+     */
+    synchronized void apply(JobUpdate update) {
+        processedObjects.set(update.processedObjects());
+        processedBytes.set(update.processedBytes());
+        failedObjects.set(update.failedObjects());
+        cancelRequested = cancelRequested || update.cancelRequested();
+        var updatedStatus = Status.valueOf(update.status());
+        if (finishedAt != null) {
+            return;
+        }
+        if (updatedStatus == Status.QUEUED || updatedStatus == Status.RUNNING) {
+            status = updatedStatus;
+            return;
+        }
+        finish(updatedStatus, update.message());
+        if (updatedStatus == Status.FAILED) {
+            completion.completeExceptionally(new InternalServerErrorException(update.message()));
+        } else {
+            completion.complete(null);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package nl.hemiron.objectstorage.service;
+
+import java.util.UUID;
+
+/**
+ * Request to run a job, sent to the job queue for a worker instance to pick up
+ */
+public record JobMessage(String id, String type, String bucketName, String target, UUID projectId) {
+
+    public static JobMessage of(Job job) {
+        return new JobMessage(job.getId(), job.getType(), job.getBucketName(), job.getTarget(), job.getProjectId());
+    }
+}
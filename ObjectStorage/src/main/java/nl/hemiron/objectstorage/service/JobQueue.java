@@ -0,0 +1,35 @@
+package nl.hemiron.objectstorage.service;
+
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sends jobs to the queue the worker instances consume, and broadcasts job updates to all instances
+ */
+@Component
+public class JobQueue {
+
+    private final RabbitTemplate rabbitTemplate;
+
+    private final String queueName;
+
+    private final String updatesExchange;
+
+    public JobQueue(RabbitTemplate rabbitTemplate,
+                    @Value("${rabbitmq.queue.name:objectstorage.jobs}") String queueName,
+                    @Value("${rabbitmq.jobs.updates.exchange.name:objectstorage.jobs.updates}") String updatesExchange) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.queueName = queueName;
+        this.updatesExchange = updatesExchange;
+    }
+
+    public void enqueue(JobMessage message) {
+        // The default exchange routes to the queue with the routing key as name
+        rabbitTemplate.convertAndSend("", queueName, message);
+    }
+
+    public void publishUpdate(JobUpdate update) {
+        rabbitTemplate.convertAndSend(updatesExchange, "", update);
+    }
+}
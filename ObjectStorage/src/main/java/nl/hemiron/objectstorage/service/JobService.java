@@ -0,0 +1,185 @@
+package nl.hemiron.objectstorage.service;
+
+import lombok.extern.java.Log;
+import nl.hemiron.objectstorage.exceptions.InternalServerErrorException;
+import nl.hemiron.objectstorage.exceptions.NotFoundException;
+import nl.hemiron.objectstorage.exceptions.TooManyRequestsException;
+import org.springframework.amqp.AmqpException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Runs jobs in the background and keeps track of them, finished jobs are kept for the configured retention.
+ * In local mode jobs run on this instance. In queue mode they are sent to the job queue and run by a worker
+ * instance, which reports their progress back through job updates
+ */
+@Log
+@Service
+public class JobService {
+
+    @FunctionalInterface
+    public interface JobTask {
+        void run(Job job) throws Exception;
+    }
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    private final Map<String, JobTask> handlers = new ConcurrentHashMap<>();
+
+    private final ProjectBulkhead jobBulkhead;
+
+    private final long retentionMinutes;
+
+    private final boolean queued;
+
+    private final JobQueue jobQueue;
+
+    public JobService(@Qualifier("jobBulkhead") ProjectBulkhead jobBulkhead,
+                      @Value("${minio.jobs.retention.minutes:60}") long retentionMinutes,
+                      @Value("${minio.jobs.mode:local}") String mode,
+                      JobQueue jobQueue) {
+        this.jobBulkhead = jobBulkhead;
+        this.retentionMinutes = retentionMinutes;
+        this.queued = mode.equals("queue");
+        this.jobQueue = jobQueue;
+    }
+
+    /**
+     * Registers the task that runs the jobs of the given type, on this instance or on a worker
+     */
+    public void registerHandler(String type, JobTask handler) {
+        handlers.put(type, handler);
+    }
+
+    /**
+     * @return whether jobs are sent to the job queue instead of running on this instance
+     */
+    public boolean isQueued() {
+        return queued;
+    }
+
+    /**
+     * Queues the job. Locally, jobs of the same project run one after the other up to the limit of the jobBulkhead
+     *
+     * @throws TooManyRequestsException if the project has too many jobs queued already
+     */
+    public Job submit(String type, String bucketName, String target, UUID projectId) {
+        if (!handlers.containsKey(type)) {
+            throw new IllegalArgumentException("No handler for jobs of type " + type);
+        }
+        if (queued) {
+            return enqueue(type, bucketName, target, projectId);
+        }
+
+        var job = new Job(UUID.randomUUID().toString(), type, bucketName, target, projectId, false);
+        var execution = jobBulkhead.supplyAsync(projectId, () -> {
+            run(job);
+            return null;
+        });
+        if (execution.isCompletedExceptionally()) {
+            throw new TooManyRequestsException("Too many jobs queued for project " + projectId + ", try again later");
+        }
+        execution.whenComplete((result, e) -> {
+            // The job was rejected by the executor while it was queued
+            if (e != null && job.getFinishedAt() == null) {
+                job.finish(Job.Status.FAILED, e.getMessage());
+                job.getCompletion().completeExceptionally(e);
+            }
+        });
+
+        jobs.put(job.getId(), job);
+        log.log(Level.INFO, () -> "Queued job " + job.getId() + " (" + type + " of bucket " + bucketName + ")");
+        return job;
+    }
+
+    private Job enqueue(String type, String bucketName, String target, UUID projectId) {
+        var job = new Job(UUID.randomUUID().toString(), type, bucketName, target, projectId, true);
+        jobs.put(job.getId(), job);
+        try {
+            jobQueue.enqueue(JobMessage.of(job));
+        } catch (AmqpException e) {
+            jobs.remove(job.getId());
+            log.log(Level.WARNING, () -> "Could not send job " + job.getId() + " to the job queue: " + e.getMessage());
+            throw new InternalServerErrorException("Could not queue " + type + " job of bucket " + bucketName);
+        }
+        log.log(Level.INFO, () -> "Sent job " + job.getId() + " (" + type + " of bucket " + bucketName + ") to the job queue");
+        return job;
+    }
+
+    /**
+     * Keeps track of a job taken from the job queue, to run it on this (worker) instance
+     */
+    Job receive(JobMessage message) {
+        var job = new Job(message.id(), message.type(), message.bucketName(), message.target(), message.projectId(), false);
+        jobs.put(job.getId(), job);
+        return job;
+    }
+
+    /**
+     * Runs the job on the calling thread, returning once it has finished
+     */
+    void run(Job job) {
+        job.start();
+        try {
+            var handler = handlers.get(job.getType());
+            if (handler == null) {
+                throw new IllegalStateException("No handler for jobs of type " + job.getType());
+            }
+            handler.run(job);
+            job.finish(job.isCancelRequested() ? Job.Status.CANCELLED : Job.Status.COMPLETED, null);
+            job.getCompletion().complete(null);
+        } catch (Exception e) {
+            log.log(Level.WARNING, () -> "Job " + job.getId() + " (" + job.getType() + " of bucket " + job.getBucketName() + ") failed: " + e.getMessage());
+            job.finish(Job.Status.FAILED, e.getMessage());
+            job.getCompletion().completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Applies an update broadcast by another instance. Updates of jobs this instance didn't submit or receive are
+     * ignored, so the broadcasts of other instances don't pile up here. Remote jobs take over the reported state,
+     * jobs running here only take cancellations
+     */
+    public void applyUpdate(JobUpdate update) {
+        jobs.computeIfPresent(update.id(), (id, job) -> {
+            if (job.isRemote()) {
+                job.apply(update);
+            } else if (update.cancelRequested()) {
+                job.cancel();
+            }
+            return job;
+        });
+    }
+
+    public Job getJob(String jobId, UUID projectId) throws NotFoundException {
+        var job = jobs.get(jobId);
+        if (job == null || !projectId.equals(job.getProjectId())) {
+            throw new NotFoundException("Job with id " + jobId + " not found");
+        }
+        return job;
+    }
+
+    public Job cancel(String jobId, UUID projectId) throws NotFoundException {
+        var job = getJob(jobId, projectId);
+        job.cancel();
+        if (job.isRemote()) {
+            jobQueue.publishUpdate(JobUpdate.of(job));
+        }
+        return job;
+    }
+
+    @Scheduled(fixedDelay = 1, timeUnit = TimeUnit.MINUTES)
+    public void removeFinishedJobs() {
+        var threshold = ZonedDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> job.getFinishedAt() != null && job.getFinishedAt().isBefore(threshold));
+    }
+}
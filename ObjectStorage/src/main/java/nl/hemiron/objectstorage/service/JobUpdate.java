@@ -0,0 +1,18 @@
+package nl.hemiron.objectstorage.service;
+
+import java.util.UUID;
+
+/**
+ * State of a job, broadcast to all instances. Workers publish the progress of the jobs they run,
+ * and the API instances publish cancellation requests
+ */
+public record JobUpdate(String id, String type, String bucketName, String target, UUID projectId, String status,
+                        long processedObjects, long processedBytes, long failedObjects, String message,
+                        boolean cancelRequested) {
+
+    public static JobUpdate of(Job job) {
+        return new JobUpdate(job.getId(), job.getType(), job.getBucketName(), job.getTarget(), job.getProjectId(),
+                job.getStatus().name(), job.getProcessedObjects().get(), job.getProcessedBytes().get(),
+                job.getFailedObjects().get(), job.getMessage(), job.isCancelRequested());
+    }
+}
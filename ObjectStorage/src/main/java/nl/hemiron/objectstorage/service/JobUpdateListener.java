@@ -0,0 +1,32 @@
+package nl.hemiron.objectstorage.service;
+
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import static nl.hemiron.objectstorage.configuration.RabbitMQConfig.JOB_QUEUE_IN_USE;
+
+/**
+ * Receives the job updates of all instances on a queue of its own, so every instance knows the state of every job
+ */
+@Component
+@ConditionalOnExpression(JOB_QUEUE_IN_USE)
+public class JobUpdateListener {
+
+    private final JobService jobService;
+
+    public JobUpdateListener(JobService jobService) {
+        this.jobService = jobService;
+    }
+
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue,
+            exchange = @Exchange(value = "${rabbitmq.jobs.updates.exchange.name:objectstorage.jobs.updates}", type = ExchangeTypes.FANOUT)))
+    public void onUpdate(JobUpdate update) {
+        jobService.applyUpdate(update);
+    }
+}
@@ -0,0 +1,36 @@
+package nl.hemiron.objectstorage.service;
+
+import org.slf4j.MDC;
+
+/**
+ * Carries the log context (MDC) of a request to the threads running parts of it, so their lines have the same
+ * project, bucket and operation
+ */
+public final class LogContext {
+
+    private LogContext() {
+    }
+
+    /**
+     * @return the task, running with the MDC of the thread calling this method
+     */
+    public static Runnable propagate(Runnable task) {
+        var context = MDC.getCopyOfContextMap();
+        if (context == null) {
+            return task;
+        }
+        return () -> {
+            var previous = MDC.getCopyOfContextMap();
+            MDC.setContextMap(context);
+            try {
+                task.run();
+            } finally {
+                if (previous != null) {
+                    MDC.setContextMap(previous);
+                } else {
+                    MDC.clear();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,378 @@
+package nl.hemiron.objectstorage.service;
+
+import com.google.common.util.concurrent.Striped;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Index of the names, sizes, ETags and modification times of the objects per bucket, so directory listings,
+ * object counts and prefix sizes can be served without listing MinIO.
+ * A bucket is crawled once it's requested, until then (and whenever the index is stale or older than the max age)
+ * requests fall back to MinIO. The index is kept current by the changes made through this service and recrawled
+ * halfway its max age while it's being read, which also picks up changes made around the service.
+ * Only the changes made through this instance are seen, so the index is meant for a single instance serving a
+ * bucket, and can't be enabled in queue mode where workers change the buckets. Buckets are only indexed while the
+ * indexes of all buckets stay within the max total objects.
+ * When a path is configured the index is also kept in local files, so it survives a restart
+ */
+@Log
+@Component
+public class MetadataIndex {
+
+    /**
+     * A full listing of a bucket into a new index. Changes made while crawling are applied again
+     * once the crawl is complete, as the listing may have passed them already
+     */
+    public static final class Crawl {
+
+        private final String bucketName;
+
+        private final long maxObjects;
+
+        private final BucketIndex index = new BucketIndex(System.currentTimeMillis());
+
+        private final List<Consumer<BucketIndex>> changes = new ArrayList<>();
+
+        private long amountOfObjects;
+
+        private Crawl(String bucketName, long maxObjects) {
+            this.bucketName = bucketName;
+            this.maxObjects = maxObjects;
+        }
+
+        public String getBucketName() {
+            return bucketName;
+        }
+
+        /**
+         * @return false if the bucket has more objects than can be indexed, the crawl should be aborted then
+         */
+        public boolean add(String objectName, long size, String etag, ZonedDateTime lastModified) {
+            index.put(objectName, new BucketIndex.Entry(size, etag, lastModified));
+            return ++amountOfObjects <= maxObjects;
+        }
+    }
+
+    private final boolean enabled;
+
+    private final long maxAgeMillis;
+
+    private final long maxObjects;
+
+    private final long maxTotalObjects;
+
+    private final IndexStore store;
+
+    private final Map<String, BucketIndex> indexes = new ConcurrentHashMap<>();
+
+    private final Map<String, Crawl> crawls = new ConcurrentHashMap<>();
+
+    private final Set<String> requestedCrawls = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Buckets with too many objects to index, by the time they were found to be too large
+     */
+    private final Map<String, Long> tooLarge = new ConcurrentHashMap<>();
+
+    private final Striped<Lock> bucketLocks = Striped.lock(64);
+
+    private final Counter hits;
+
+    private final Counter fallbacks;
+
+    public MetadataIndex(@Value("${minio.index.enabled:false}") boolean enabled,
+                         @Value("${minio.index.path:}") String path,
+                         @Value("${minio.index.max.age.minutes:60}") long maxAgeMinutes,
+                         @Value("${minio.index.max.objects:1000000}") long maxObjects,
+                         @Value("${minio.index.max.total.objects:5000000}") long maxTotalObjects,
+                         @Value("${minio.jobs.mode:local}") String jobsMode,
+                         MeterRegistry meterRegistry) {
+        if (enabled && jobsMode.equals("queue")) {
+            throw new IllegalStateException("minio.index.enabled requires minio.jobs.mode=local, the index doesn't see the changes made by workers");
+        }
+        this.enabled = enabled;
+        this.maxAgeMillis = Duration.ofMinutes(maxAgeMinutes).toMillis();
+        this.maxObjects = maxObjects;
+        this.maxTotalObjects = maxTotalObjects;
+        this.store = enabled && !path.isBlank() ? openStore(Path.of(path)) : null;
+
+        this.hits = requestCounter(meterRegistry, "hit");
+        this.fallbacks = requestCounter(meterRegistry, "fallback");
+        Gauge.builder("objectstorage.index.buckets", indexes, Map::size)
+                .description("Buckets held by the metadata index")
+                .register(meterRegistry);
+        Gauge.builder("objectstorage.index.objects", this, index -> index.getIndexedObjects(null))
+                .description("Objects held by the metadata index")
+                .register(meterRegistry);
+    }
+
+    private static Counter requestCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("objectstorage.index.requests")
+                .description("Requests served from the metadata index or falling back to MinIO")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private IndexStore openStore(Path directory) {
+        try {
+            var indexStore = new IndexStore(directory);
+            var threshold = System.currentTimeMillis() - maxAgeMillis;
+            for (Path file : indexStore.getFiles()) {
+                var bucketName = IndexStore.getBucketName(file);
+                var index = indexStore.read(file);
+                if (index == null || index.getCrawledAt() < threshold) {
+                    indexStore.delete(bucketName);
+                    continue;
+                }
+                // Read once, so the bucket is recrawled before the loaded index expires
+                index.markRead();
+                indexes.put(bucketName, index);
+            }
+            log.log(Level.INFO, () -> "Loaded the metadata index of " + indexes.size() + " buckets from " + directory);
+            return indexStore;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load the metadata index from " + directory, e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the index of the bucket if it's complete and fresh, otherwise null and the bucket is crawled
+     * on the next run, requests should fall back to MinIO then
+     */
+    BucketIndex get(String bucketName) {
+        if (!enabled) {
+            return null;
+        }
+        var index = indexes.get(bucketName);
+        if (index == null || index.isStale() || index.getCrawledAt() < System.currentTimeMillis() - maxAgeMillis) {
+            requestedCrawls.add(bucketName);
+            fallbacks.increment();
+            return null;
+        }
+        index.markRead();
+        hits.increment();
+        return index;
+    }
+
+    /**
+     * Indexes a new bucket, which is empty and therefore complete right away
+     */
+    public void recordBucketCreated(String bucketName) {
+        if (!enabled) {
+            return;
+        }
+        var index = new BucketIndex(System.currentTimeMillis());
+        withBucketLock(bucketName, () -> {
+            indexes.put(bucketName, index);
+            store(bucketName, indexStore -> indexStore.write(bucketName, index));
+        });
+    }
+
+    /**
+     * Records an object written through this service. The modification time is the time it's recorded,
+     * which is close to the one MinIO gives the object. The ETag is quoted like in a listing by MinIO
+     */
+    public void recordUpload(String bucketName, String objectName, long size, String etag) {
+        if (!enabled) {
+            return;
+        }
+        var quotedEtag = etag != null && !etag.startsWith("\"") ? "\"" + etag + "\"" : etag;
+        var entry = new BucketIndex.Entry(size, quotedEtag, ZonedDateTime.now(ZoneOffset.UTC));
+        change(bucketName, index -> index.put(objectName, entry), indexStore -> indexStore.appendPut(bucketName, objectName, entry));
+    }
+
+    public void recordDelete(String bucketName, String objectName) {
+        if (!enabled) {
+            return;
+        }
+        change(bucketName, index -> index.remove(objectName), indexStore -> indexStore.appendRemove(bucketName, objectName));
+    }
+
+    /**
+     * Marks the index of a bucket as inaccurate, for changes which weren't recorded (e.g. made by a worker).
+     * Requests fall back to MinIO until the bucket is recrawled
+     */
+    public void markStale(String bucketName) {
+        var index = indexes.get(bucketName);
+        if (index != null) {
+            index.markStale();
+            requestedCrawls.add(bucketName);
+        }
+    }
+
+    public void remove(String bucketName) {
+        if (!enabled) {
+            return;
+        }
+        withBucketLock(bucketName, () -> {
+            indexes.remove(bucketName);
+            crawls.remove(bucketName);
+            requestedCrawls.remove(bucketName);
+            tooLarge.remove(bucketName);
+            store(bucketName, indexStore -> indexStore.delete(bucketName));
+        });
+    }
+
+    private void change(String bucketName, Consumer<BucketIndex> change, StoreAction storeAction) {
+        withBucketLock(bucketName, () -> {
+            var crawl = crawls.get(bucketName);
+            if (crawl != null) {
+                crawl.changes.add(change);
+            }
+            var index = indexes.get(bucketName);
+            if (index != null) {
+                change.accept(index);
+                store(bucketName, storeAction);
+            }
+        });
+    }
+
+    /**
+     * @return the buckets which were requested since their index went stale or expired, and those of which
+     * the index is being read and has passed half its max age
+     */
+    public List<String> getBucketsToCrawl() {
+        if (!enabled) {
+            return List.of();
+        }
+        var now = System.currentTimeMillis();
+        tooLarge.values().removeIf(foundAt -> foundAt < now - maxAgeMillis);
+        for (var entry : indexes.entrySet()) {
+            var index = entry.getValue();
+            if (index.getCrawledAt() < now - maxAgeMillis / 2 && index.isRead()) {
+                requestedCrawls.add(entry.getKey());
+            } else if (index.getCrawledAt() < now - maxAgeMillis) {
+                // Not read for a while, keep neither the memory nor the file
+                remove(entry.getKey());
+            }
+        }
+        var bucketNames = new ArrayList<String>();
+        for (String bucketName : requestedCrawls) {
+            requestedCrawls.remove(bucketName);
+            if (!tooLarge.containsKey(bucketName)) {
+                bucketNames.add(bucketName);
+            }
+        }
+        return bucketNames;
+    }
+
+    /**
+     * @return the crawl of the bucket, or null if the bucket is being crawled already. The crawl ends once the
+     * bucket has more objects than the max objects or than the room left by the indexes of the other buckets
+     */
+    public Crawl startCrawl(String bucketName) {
+        long room = maxTotalObjects - getIndexedObjects(bucketName);
+        var crawl = new Crawl(bucketName, Math.max(0, Math.min(maxObjects, room)));
+        return crawls.putIfAbsent(bucketName, crawl) == null ? crawl : null;
+    }
+
+    /**
+     * @return the amount of objects in the indexes of all buckets except the given one
+     */
+    private long getIndexedObjects(String excludedBucketName) {
+        return indexes.entrySet().stream()
+                .filter(entry -> !entry.getKey().equals(excludedBucketName))
+                .mapToLong(entry -> entry.getValue().getUsage("").amountOfObjects())
+                .sum();
+    }
+
+    /**
+     * Replaces the index of the bucket with the crawled one, unless the bucket was removed while crawling
+     *
+     * @return the usage of the bucket according to the new index, or null if it was discarded
+     */
+    public BucketUsageService.Usage completeCrawl(Crawl crawl) {
+        var bucketName = crawl.getBucketName();
+        var lock = bucketLocks.get(bucketName);
+        lock.lock();
+        try {
+            if (!crawls.remove(bucketName, crawl)) {
+                return null;
+            }
+            crawl.changes.forEach(change -> change.accept(crawl.index));
+            // Checked again, as the other buckets may have been indexed while crawling
+            synchronized (indexes) {
+                if (getIndexedObjects(bucketName) + crawl.index.getUsage("").amountOfObjects() > maxTotalObjects) {
+                    log.log(Level.INFO, () -> "Not indexing bucket " + bucketName + ", the metadata index holds " + maxTotalObjects + " objects already");
+                    tooLarge.put(bucketName, System.currentTimeMillis());
+                    return null;
+                }
+                indexes.put(bucketName, crawl.index);
+            }
+            // Written while holding the lock, so no change is appended to the file that is being replaced
+            store(bucketName, indexStore -> indexStore.write(bucketName, crawl.index));
+            log.log(Level.INFO, () -> "Indexed " + crawl.amountOfObjects + " objects of bucket " + bucketName);
+            return crawl.index.getUsage("");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void abortCrawl(Crawl crawl) {
+        crawls.remove(crawl.getBucketName(), crawl);
+        if (crawl.amountOfObjects > maxObjects) {
+            log.log(Level.INFO, () -> "Not indexing bucket " + crawl.getBucketName() + ", it has more than " + maxObjects + " objects");
+            tooLarge.put(crawl.getBucketName(), System.currentTimeMillis());
+        } else if (crawl.amountOfObjects > crawl.maxObjects) {
+            log.log(Level.INFO, () -> "Not indexing bucket " + crawl.getBucketName() + ", the metadata index holds " + maxTotalObjects + " objects already");
+            tooLarge.put(crawl.getBucketName(), System.currentTimeMillis());
+        }
+    }
+
+    private interface StoreAction {
+        void apply(IndexStore indexStore) throws IOException;
+    }
+
+    private void store(String bucketName, StoreAction action) {
+        if (store == null) {
+            return;
+        }
+        try {
+            action.apply(store);
+        } catch (NoSuchFileException ignored) {
+            // Dropped after an earlier failure, the file is written again after the next crawl
+        } catch (IOException e) {
+            // The file no longer matches the index, it's better to crawl the bucket again after a restart
+            log.log(Level.WARNING, () -> "Could not store the metadata index of bucket " + bucketName + ": " + e.getMessage());
+            try {
+                store.delete(bucketName);
+            } catch (IOException ignored) {
+                // Loading the file fails as well then
+            }
+        }
+    }
+
+    private void withBucketLock(String bucketName, Runnable action) {
+        var lock = bucketLocks.get(bucketName);
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
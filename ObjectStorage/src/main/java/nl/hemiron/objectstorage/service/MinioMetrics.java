@@ -0,0 +1,116 @@
+package nl.hemiron.objectstorage.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.minio.errors.*;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+
+/**
+ * Latency and error metrics of the calls to MinIO, and the amount of bytes transferred to and from clients.
+ * Each call is recorded in the minio.requests timer, tagged with the operation, the outcome and the exception
+ */
+@Component
+public class MinioMetrics {
+
+    /**
+     * A call to MinIO, throwing the exceptions the MinIO client declares
+     */
+    @FunctionalInterface
+    public interface MinioCall<T> {
+        T call() throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException;
+    }
+
+    private final MeterRegistry meterRegistry;
+
+    private final Counter bytesIn;
+
+    private final Counter bytesOut;
+
+    public MinioMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.bytesIn = Counter.builder("objectstorage.transfer.bytes")
+                .description("Bytes of objects uploaded by or downloaded to clients")
+                .baseUnit("bytes")
+                .tag("direction", "in")
+                .register(meterRegistry);
+        this.bytesOut = Counter.builder("objectstorage.transfer.bytes")
+                .description("Bytes of objects uploaded by or downloaded to clients")
+                .baseUnit("bytes")
+                .tag("direction", "out")
+                .register(meterRegistry);
+    }
+
+    public <T> T record(String operation, MinioCall<T> call) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        var sample = Timer.start(meterRegistry);
+        try {
+            T result = call.call();
+            sample.stop(timer(operation, null));
+            return result;
+        } catch (Exception e) {
+            sample.stop(timer(operation, e));
+            throw e;
+        }
+    }
+
+    /**
+     * Records the pages of a listObjects call. The listing is lazy and fetches the next page of maxKeys items
+     * when the previous one is exhausted, so every hasNext at a page boundary is timed as a page request
+     */
+    public <T> Iterable<T> recordPages(String operation, Iterable<T> listing, int maxKeys) {
+        return () -> {
+            var iterator = listing.iterator();
+            return new Iterator<>() {
+                private long consumed;
+
+                private long timedAt = -1;
+
+                @Override
+                public boolean hasNext() {
+                    if (consumed % maxKeys != 0 || consumed == timedAt) {
+                        return iterator.hasNext();
+                    }
+                    timedAt = consumed;
+                    var sample = Timer.start(meterRegistry);
+                    try {
+                        boolean hasNext = iterator.hasNext();
+                        sample.stop(timer(operation, null));
+                        return hasNext;
+                    } catch (RuntimeException e) {
+                        sample.stop(timer(operation, e));
+                        throw e;
+                    }
+                }
+
+                @Override
+                public T next() {
+                    consumed++;
+                    return iterator.next();
+                }
+            };
+        };
+    }
+
+    public void recordBytesIn(long bytes) {
+        bytesIn.increment(bytes);
+    }
+
+    public void recordBytesOut(long bytes) {
+        bytesOut.increment(bytes);
+    }
+
+    private Timer timer(String operation, Exception exception) {
+        return Timer.builder("minio.requests")
+                .description("Calls to MinIO")
+                .tag("operation", operation)
+                .tag("outcome", exception == null ? "success" : "error")
+                .tag("exception", exception == null ? "none" : exception.getClass().getSimpleName())
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
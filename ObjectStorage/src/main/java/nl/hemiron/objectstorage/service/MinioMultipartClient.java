@@ -0,0 +1,65 @@
+package nl.hemiron.objectstorage.service;
+
+import com.google.common.collect.Multimap;
+import io.minio.CreateMultipartUploadResponse;
+import io.minio.ListPartsResponse;
+import io.minio.MinioAsyncClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.UploadPartResponse;
+import io.minio.errors.*;
+import io.minio.messages.Part;
+
+import java.io.IOException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * MinioClient doesn't expose the individual S3 multipart upload calls, it only uploads the parts of an object
+ * one after the other inside putObject. This class makes those calls available so parts can be uploaded concurrently.
+ */
+public class MinioMultipartClient extends MinioAsyncClient {
+
+    public MinioMultipartClient(MinioAsyncClient client) {
+        super(client);
+    }
+
+    public String createMultipartUpload(String bucketName, String objectName, Multimap<String, String> headers) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        CreateMultipartUploadResponse response = join(createMultipartUploadAsync(bucketName, null, objectName, headers, null));
+        return response.result().uploadId();
+    }
+
+    public CompletableFuture<UploadPartResponse> uploadPartAsync(String bucketName, String objectName, String uploadId, byte[] data, int length, int partNumber) throws InsufficientDataException, InternalException, InvalidKeyException, IOException, NoSuchAlgorithmException, XmlParserException {
+        return uploadPartAsync(bucketName, null, objectName, data, length, uploadId, partNumber, null, null);
+    }
+
+    /**
+     * Lists a page of at most maxParts parts that were uploaded so far, starting after the part number marker
+     */
+    public ListPartsResponse listParts(String bucketName, String objectName, String uploadId, int maxParts, int partNumberMarker) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        return join(listPartsAsync(bucketName, null, objectName, maxParts, partNumberMarker, uploadId, null, null));
+    }
+
+    public ObjectWriteResponse completeMultipartUpload(String bucketName, String objectName, String uploadId, Part[] parts) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        return join(completeMultipartUploadAsync(bucketName, null, objectName, uploadId, parts, null, null));
+    }
+
+    public void abortMultipartUpload(String bucketName, String objectName, String uploadId) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        join(abortMultipartUploadAsync(bucketName, null, objectName, uploadId, null, null));
+    }
+
+    /**
+     * Waits for the call like the synchronous methods of S3Base did, throwing the exception of a failed call.
+     * Not interruptible, so an upload can still be aborted by a thread that was interrupted
+     */
+    private <T> T join(CompletableFuture<T> call) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            throwEncapsulatedException(new ExecutionException(e.getCause()));
+            throw e;
+        }
+    }
+}
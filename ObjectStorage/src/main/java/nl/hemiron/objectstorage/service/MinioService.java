@@ -1,6 +1,10 @@
 package nl.hemiron.objectstorage.service;
 
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Multimap;
 import io.minio.*;
 import io.minio.errors.*;
 import io.minio.http.Method;
@@ -8,30 +12,78 @@ import io.minio.messages.Bucket;
 import io.minio.messages.DeleteError;
 import io.minio.messages.DeleteObject;
 import io.minio.messages.Item;
+import io.minio.messages.Part;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.java.Log;
 import nl.hemiron.objectstorage.exceptions.BucketNotEmptyException;
 import nl.hemiron.objectstorage.exceptions.BucketNotFoundException;
+import nl.hemiron.objectstorage.exceptions.ConflictException;
+import nl.hemiron.objectstorage.exceptions.InternalServerErrorException;
 import nl.hemiron.objectstorage.exceptions.InvalidProjectIdException;
+import nl.hemiron.objectstorage.exceptions.TooManyRequestsException;
 import nl.hemiron.objectstorage.model.response.CreateBucketResponse;
 import nl.hemiron.objectstorage.model.response.DeleteBucketResponse;
+import nl.hemiron.objectstorage.model.response.DirectoryContentsPage;
 import nl.hemiron.objectstorage.model.response.GetBucketResponse;
 import nl.hemiron.objectstorage.model.response.ItemResponse;
+import okhttp3.OkHttpClient;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
 
 @Log
 @Service
 public class MinioService {
 
+    private static final RateLimitedLog itemLog = new RateLimitedLog(log, 10, Duration.ofSeconds(10));
+
+    private static final int DELETE_BATCH_SIZE = 1000;
+
+    private static final int MAX_REPORTED_DELETE_FAILURES = 1000;
+
+    /**
+     * S3 limits on multipart uploads
+     */
+    private static final int MAX_UPLOAD_PARTS = 10_000;
+
+    private static final int MIN_UPLOAD_PART_SIZE = 5 * 1024 * 1024;
+
+    private static final long MAX_OBJECT_SIZE = 5L * 1024 * 1024 * 1024 * 1024;
+
+    private static final String LAST_CODE_POINT = new String(Character.toChars(Character.MAX_CODE_POINT));
+
+    /**
+     * Reads shared by concurrent identical requests, see ReadCoalescer
+     */
+    private record BucketRead(String bucketName, UUID projectId) {
+    }
+
+    private record DirectoryRead(String bucketName, String prefix, String startAfter, int pageSize, UUID projectId) {
+    }
+
     @Value("${minio.builder.endpoint}")
     private String minioEndpoint;
 
@@ -43,7 +95,102 @@ public class MinioService {
 
     MinioClient minioClient;
 
-    public MinioService() {
+    MinioMultipartClient minioMultipartClient;
+
+    private final MinioServiceProperties properties;
+
+    private final BucketOwnershipCache bucketOwnershipCache;
+
+    private final BucketUsageService bucketUsageService;
+
+    private final AsyncTaskExecutor bucketListingExecutor;
+
+    private final JobService jobService;
+
+    private final AsyncTaskExecutor deleteBatchExecutor;
+
+    private final ProjectBulkhead minioBulkhead;
+
+    private final MinioMetrics minioMetrics;
+
+    private final OkHttpClient minioHttpClient;
+
+    private final AsyncTaskExecutor archivePrefetchExecutor;
+
+    private final AsyncTaskExecutor bulkUploadExecutor;
+
+    private final ObjectCache objectCache;
+
+    private final RabbitMQProducer rabbitMQProducer;
+
+    private final PresignedUrlCache presignedUrlCache;
+
+    private final MetadataIndex metadataIndex;
+
+    private final AsyncTaskExecutor searchExecutor;
+
+    private final AsyncTaskExecutor bucketScanExecutor;
+
+    private final ReadCoalescer readCoalescer;
+
+    private final Set<String> pendingUsageScans = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The upload buffer budget shared by all streamed uploads, a permit per KiB of part buffers
+     */
+    private final Semaphore uploadBuffers;
+
+    private final int uploadBufferPermits;
+
+    public MinioService(MinioServiceProperties properties,
+                        BucketOwnershipCache bucketOwnershipCache,
+                        BucketUsageService bucketUsageService,
+                        @Qualifier("bucketListingExecutor") AsyncTaskExecutor bucketListingExecutor,
+                        JobService jobService,
+                        @Qualifier("deleteBatchExecutor") AsyncTaskExecutor deleteBatchExecutor,
+                        @Qualifier("minioBulkhead") ProjectBulkhead minioBulkhead,
+                        MinioMetrics minioMetrics,
+                        OkHttpClient minioHttpClient,
+                        @Qualifier("archivePrefetchExecutor") AsyncTaskExecutor archivePrefetchExecutor,
+                        @Qualifier("bulkUploadExecutor") AsyncTaskExecutor bulkUploadExecutor,
+                        ObjectCache objectCache,
+                        RabbitMQProducer rabbitMQProducer,
+                        PresignedUrlCache presignedUrlCache,
+                        MetadataIndex metadataIndex,
+                        @Qualifier("searchExecutor") AsyncTaskExecutor searchExecutor,
+                        ReadCoalescer readCoalescer,
+                        @Qualifier("bucketScanExecutor") AsyncTaskExecutor bucketScanExecutor) {
+        if (properties.uploadPartSize() < MIN_UPLOAD_PART_SIZE) {
+            // MinIO would only reject the parts when completing the upload, after all of them were uploaded
+            throw new IllegalArgumentException("minio.upload.part.size must be at least " + MIN_UPLOAD_PART_SIZE + " bytes");
+        }
+        if (properties.uploadBufferMaxBytes() < properties.uploadPartSize()) {
+            throw new IllegalArgumentException("minio.upload.buffer.max.bytes must be at least minio.upload.part.size");
+        }
+        this.properties = properties;
+        this.bucketOwnershipCache = bucketOwnershipCache;
+        this.bucketUsageService = bucketUsageService;
+        this.bucketListingExecutor = bucketListingExecutor;
+        this.jobService = jobService;
+        this.deleteBatchExecutor = deleteBatchExecutor;
+        this.minioBulkhead = minioBulkhead;
+        this.minioMetrics = minioMetrics;
+        this.minioHttpClient = minioHttpClient;
+        this.archivePrefetchExecutor = archivePrefetchExecutor;
+        this.bulkUploadExecutor = bulkUploadExecutor;
+        this.objectCache = objectCache;
+        this.rabbitMQProducer = rabbitMQProducer;
+        this.presignedUrlCache = presignedUrlCache;
+        this.metadataIndex = metadataIndex;
+        this.searchExecutor = searchExecutor;
+        this.readCoalescer = readCoalescer;
+        this.bucketScanExecutor = bucketScanExecutor;
+        this.uploadBufferPermits = (int) Math.min(properties.uploadBufferMaxBytes() / 1024, Integer.MAX_VALUE);
+        this.uploadBuffers = new Semaphore(uploadBufferPermits, true);
+
+        jobService.registerHandler("delete-bucket", job -> emptyAndRemoveBucket(job.getBucketName(), job));
+        jobService.registerHandler("delete-directory", job -> emptyDirectory(job.getBucketName(), job.getTarget(), job));
+        jobService.registerHandler("usage-scan", job -> computeBucketUsage(job.getBucketName(), job));
     }
 
     @PostConstruct
@@ -51,27 +198,43 @@ public class MinioService {
         this.minioClient = MinioClient.builder()
                 .endpoint(minioEndpoint)
                 .credentials(minioAccessKey, minioSecretKey)
+                .httpClient(minioHttpClient)
                 .build();
+        this.minioMultipartClient = new MinioMultipartClient(MinioAsyncClient.builder()
+                .endpoint(minioEndpoint)
+                .credentials(minioAccessKey, minioSecretKey)
+                .httpClient(minioHttpClient)
+                .build());
     }
 
     public CompletableFuture<CreateBucketResponse> createBucketAsync(String bucketName, UUID projectId) {
-        return CompletableFuture.supplyAsync(() -> {
+        return minioBulkhead.supplyAsync(projectId, () -> {
             try {
-                minioClient.makeBucket(
-                        MakeBucketArgs.builder()
-                                .bucket(bucketName).build()
-                );
+                minioMetrics.record("makeBucket", () -> {
+                    minioClient.makeBucket(
+                            MakeBucketArgs.builder()
+                                    .bucket(bucketName).build()
+                    );
+                    return null;
+                });
 
                 var tags = new HashMap<String, String>();
                 tags.put("projectId", projectId.toString());
 
-                minioClient.setBucketTags(
-                        SetBucketTagsArgs.builder()
-                                .bucket(bucketName)
-                                .tags(tags)
-                                .build());
+                minioMetrics.record("setBucketTags", () -> {
+                    minioClient.setBucketTags(
+                            SetBucketTagsArgs.builder()
+                                    .bucket(bucketName)
+                                    .tags(tags)
+                                    .build());
+                    return null;
+                });
+                bucketOwnershipCache.putOwnership(bucketName, projectId.toString());
+                bucketUsageService.reconcile(bucketName, 0L, 0L);
+                metadataIndex.recordBucketCreated(bucketName);
+                rabbitMQProducer.publish(MutationEvent.bucket(MutationEvent.Type.BUCKET_CREATED, bucketName, projectId));
 
-                log.log(Level.INFO, "Created bucket " + bucketName);
+                log.log(Level.INFO, () -> "Created bucket " + bucketName);
                 return new CreateBucketResponse(bucketName);
             } catch (Exception e) {
                 throw new RuntimeException(e.getMessage());
@@ -80,181 +243,1260 @@ public class MinioService {
     }
 
     public List<GetBucketResponse> getBuckets(UUID projectId) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
-        log.log(Level.INFO, "Getting all buckets for project with projectId: " + projectId);
-        var buckets = minioClient.listBuckets();
+        log.log(Level.FINE, () -> "Getting all buckets for project with projectId: " + projectId);
+        var buckets = minioMetrics.record("listBuckets", () -> minioClient.listBuckets());
 
-        List<GetBucketResponse> responses = new ArrayList<>();
+        // The buckets are got in parallel, so they share the timeout instead of each waiting for it after the other
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.bucketTimeoutMillis());
+        Map<String, Future<GetBucketResponse>> futures = new LinkedHashMap<>();
         for (Bucket bucket : buckets) {
+            futures.put(bucket.name(), bucketListingExecutor.submit(() -> getBucketOfProject(bucket.name(), projectId, deadline)));
+        }
+
+        List<GetBucketResponse> responses = new ArrayList<>();
+        for (var entry : futures.entrySet()) {
+            var bucketName = entry.getKey();
+            var future = entry.getValue();
             try {
-                verifyBucketBelongsToProject(bucket.name(), projectId);
-                responses.add(getBucketByName(bucket.name(), projectId));
-            } catch (InvalidProjectIdException ignored) {
-                // Don't add the bucket to the responses if the given ProjectId doesn't match
+                var response = future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (response != null) {
+                    responses.add(response);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.values().forEach(remaining -> remaining.cancel(true));
+                throw new InternalServerErrorException("Interrupted while getting buckets");
+            } catch (ExecutionException | TimeoutException e) {
+                future.cancel(true);
+                log.log(Level.WARNING, () -> "Could not get bucket information of bucket " + bucketName + ": " + e);
+                // Still list the bucket, without statistics, if it's known to belong to the project
+                if (isKnownToBelongToProject(bucketName, projectId)) {
+                    responses.add(new GetBucketResponse(bucketName, 0L, 0, false));
+                }
             }
         }
 
         return responses;
     }
 
+    /**
+     * @return the bucket information, or null if the bucket doesn't belong to the project
+     */
+    private GetBucketResponse getBucketOfProject(String bucketName, UUID projectId, long deadline) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        try {
+            return getBucketByName(bucketName, projectId, deadline);
+        } catch (InvalidProjectIdException ignored) {
+            // Don't add the bucket to the responses if the given ProjectId doesn't match
+            return null;
+        }
+    }
+
     public GetBucketResponse getBucketByName(final String bucketName, final UUID projectId) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException, BucketNotFoundException {
+        return getBucketByName(bucketName, projectId, readCoalescer.deadline());
+    }
+
+    /**
+     * @param deadline the System.nanoTime until which to wait for a listing of the bucket by another request
+     */
+    private GetBucketResponse getBucketByName(final String bucketName, final UUID projectId, long deadline) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException, BucketNotFoundException {
         verifyBucketExists(bucketName);
         verifyBucketBelongsToProject(bucketName, projectId);
 
-        Iterable<Result<Item>> bucketObjects = getObjectsInBucket(bucketName);
+        var index = metadataIndex.get(bucketName);
+        var usage = index != null ? index.getUsage("") : bucketUsageService.getUsage(bucketName);
+        if (usage == null) {
+            if (jobService.isQueued()) {
+                // Leave the scan to a worker, the statistics are complete once it has reported back
+                requestUsageScan(bucketName, projectId);
+                return new GetBucketResponse(bucketName, 0L, 0, false);
+            }
+            // Requests for the same bucket while it's being listed wait for that listing
+            usage = readCoalescer.execute("bucketUsage", new BucketRead(bucketName, projectId), deadline,
+                    () -> computeBucketUsage(bucketName, null));
+        }
 
-        long totalSize = 0L;
-        int amountOfObjects = 0;
-        for (Result<Item> obj : bucketObjects) {
-            totalSize += obj.get().size();
-            amountOfObjects++;
+        return new GetBucketResponse(bucketName, usage.size(), (int) usage.amountOfObjects());
+    }
+
+    /**
+     * Records an upload that went around this service, e.g. to a presigned URL, of the given (decoded) object.
+     * The ETag of such an upload isn't known, the metadata index leaves it out until the bucket is recrawled
+     */
+    public void recordUpload(String bucketName, String objectName, long size) {
+        recordUpload(bucketName, objectName, size, null);
+    }
+
+    private void recordUpload(String bucketName, String objectName, long size, String etag) {
+        objectCache.invalidate(bucketName, objectName);
+        metadataIndex.recordUpload(bucketName, objectName, size, etag);
+        rabbitMQProducer.publish(MutationEvent.object(MutationEvent.Type.OBJECT_UPLOADED, bucketName, objectName, size));
+        bucketUsageService.recordUpload(bucketName, objectName, size);
+        minioMetrics.recordBytesIn(size);
+    }
+
+    /**
+     * Reconciles the usage of the buckets that are due. The listings run on the bucketScanExecutor, so a large
+     * bucket doesn't hold up the other scheduled tasks; a bucket still being listed since an earlier run is skipped
+     */
+    @Scheduled(fixedDelayString = "${minio.usage.reconcile.interval.seconds:60}", timeUnit = TimeUnit.SECONDS)
+    public void reconcileBucketUsage() {
+        for (String bucketName : bucketUsageService.getBucketsToReconcile()) {
+            if (jobService.isQueued()) {
+                requestUsageScan(bucketName, null);
+                continue;
+            }
+            if (!pendingUsageScans.add(bucketName)) {
+                continue;
+            }
+            try {
+                bucketScanExecutor.execute(() -> reconcileBucketUsage(bucketName));
+            } catch (RejectedExecutionException e) {
+                pendingUsageScans.remove(bucketName);
+            }
+        }
+    }
+
+    private void reconcileBucketUsage(String bucketName) {
+        try {
+            computeBucketUsage(bucketName, null);
+        } catch (Exception e) {
+            log.log(Level.WARNING, () -> "Could not reconcile usage of bucket " + bucketName + ": " + e.getMessage());
+            bucketUsageService.remove(bucketName);
+        } finally {
+            pendingUsageScans.remove(bucketName);
+        }
+    }
+
+    /**
+     * Crawls the buckets that were requested from the metadata index while it had no fresh index of them.
+     * The crawls run on the bucketScanExecutor, so a large bucket doesn't hold up the other scheduled tasks.
+     * The crawl is a full listing, so it reconciles the usage of the bucket as well
+     */
+    @Scheduled(fixedDelayString = "${minio.index.crawl.interval.seconds:30}", timeUnit = TimeUnit.SECONDS)
+    public void crawlMetadataIndex() {
+        for (String bucketName : metadataIndex.getBucketsToCrawl()) {
+            var crawl = metadataIndex.startCrawl(bucketName);
+            if (crawl == null) {
+                // Still being crawled since an earlier run
+                continue;
+            }
+            try {
+                bucketScanExecutor.execute(() -> crawlMetadataIndex(crawl));
+            } catch (RejectedExecutionException e) {
+                metadataIndex.abortCrawl(crawl);
+            }
         }
+    }
+
+    private void crawlMetadataIndex(MetadataIndex.Crawl crawl) {
+        var bucketName = crawl.getBucketName();
+        try {
+            if (crawlBucket(crawl)) {
+                var usage = metadataIndex.completeCrawl(crawl);
+                if (usage != null) {
+                    bucketUsageService.reconcile(bucketName, usage.size(), usage.amountOfObjects());
+                }
+            } else {
+                metadataIndex.abortCrawl(crawl);
+            }
+        } catch (Exception e) {
+            log.log(Level.WARNING, () -> "Could not crawl bucket " + bucketName + " for the metadata index: " + e.getMessage());
+            metadataIndex.abortCrawl(crawl);
+            if (e instanceof ErrorResponseException errorResponse && errorResponse.errorResponse().code().equals("NoSuchBucket")) {
+                metadataIndex.remove(bucketName);
+            }
+        }
+    }
+
+    /**
+     * @return false if the bucket has too many objects to index
+     */
+    private boolean crawlBucket(MetadataIndex.Crawl crawl) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        for (Result<Item> itemResult : getObjectsInBucket(crawl.getBucketName())) {
+            var item = itemResult.get();
+            if (!crawl.add(item.objectName(), item.size(), item.etag(), item.lastModified())) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        return new GetBucketResponse(bucketName, totalSize, amountOfObjects);
+    /**
+     * Sends a usage scan of the bucket to the job queue, unless one is pending already.
+     * The usage is taken over once the worker reports the scan as completed
+     */
+    private void requestUsageScan(String bucketName, UUID projectId) {
+        if (!pendingUsageScans.add(bucketName)) {
+            return;
+        }
+        // The worker lists the bucket, the changes made through this instance meanwhile are recorded here
+        var listing = bucketUsageService.startListing(bucketName, true);
+        try {
+            var job = jobService.submit("usage-scan", bucketName, null, projectId);
+            job.getCompletion().whenComplete((result, e) -> {
+                pendingUsageScans.remove(bucketName);
+                if (e == null) {
+                    bucketUsageService.reconcile(listing, job.getProcessedBytes().get(), job.getProcessedObjects().get());
+                } else {
+                    bucketUsageService.abortListing(listing);
+                }
+            });
+        } catch (Exception e) {
+            bucketUsageService.abortListing(listing);
+            pendingUsageScans.remove(bucketName);
+            log.log(Level.WARNING, () -> "Could not request usage scan of bucket " + bucketName + ": " + e.getMessage());
+        }
     }
 
     public CompletableFuture<String> getUploadObjectURLAsync(String bucketName, String objectName, UUID projectId) {
-        return CompletableFuture.supplyAsync(() -> {
+        return minioBulkhead.supplyAsync(projectId, () -> {
             try {
                 verifyBucketExists(bucketName);
                 verifyBucketBelongsToProject(bucketName, projectId);
 
-                log.log(Level.INFO, "Getting presigned object URL for object: " + objectName);
+                log.log(Level.FINE, () -> "Getting presigned object URL for object: " + objectName);
 
-                return minioClient.getPresignedObjectUrl(
-                        GetPresignedObjectUrlArgs.builder()
-                                .method(Method.PUT)
-                                .bucket(bucketName)
-                                .object(objectName)
-                                .expiry(60 * 60) // TODO: Discuss what would be a reasonable expiry time
-                                .build()
-                );
+                return getPresignedObjectUrl(Method.PUT, bucketName, objectName, Map.of());
             } catch (Exception e) {
                 throw new RuntimeException(e.getMessage());
             }
         });
     }
 
+    private String getPresignedObjectUrl(Method method, String bucketName, String objectName, Map<String, String> queryParams) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        return minioMetrics.record("getPresignedObjectUrl", () -> minioClient.getPresignedObjectUrl(
+                GetPresignedObjectUrlArgs.builder()
+                        .method(method)
+                        .bucket(bucketName)
+                        .object(objectName)
+                        .expiry(properties.presignedUrlExpirySeconds())
+                        .extraQueryParams(queryParams)
+                        .build()
+        ));
+    }
+
+    /**
+     * Gets a presigned URL to download the object directly from MinIO. The object isn't checked, a URL of an object
+     * that doesn't exist leads to a 404 from MinIO
+     */
+    public PresignedUrl getDownloadUrl(String bucketName, String objectName, UUID projectId) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        verifyBucketExists(bucketName);
+        verifyBucketBelongsToProject(bucketName, projectId);
+
+        var decodedName = StringUtils.decodeBase64(objectName);
+        if (decodedName.isEmpty() || decodedName.endsWith("/")) {
+            throw new IllegalArgumentException("Invalid object name " + decodedName);
+        }
+        return getDownloadUrl(bucketName, decodedName);
+    }
+
+    /**
+     * Gets presigned download URLs of the objects in a page of the directory contents, subdirectories are skipped.
+     * Pages are the same as those of getDirectoryContents
+     */
+    public PresignedUrl.Page getDirectoryDownloadUrls(String bucketName, String directoryName, UUID projectId, String continuationToken, int limit) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        var directoryContents = getDirectoryContents(bucketName, directoryName, projectId, continuationToken, limit);
+
+        var urls = new ArrayList<PresignedUrl>(directoryContents.getItems().size());
+        for (ItemResponse item : directoryContents.getItems()) {
+            if (!item.isDir()) {
+                urls.add(getDownloadUrl(bucketName, item.getObjectName()));
+            }
+        }
+        return new PresignedUrl.Page(urls, directoryContents.getNextContinuationToken());
+    }
+
+    private PresignedUrl getDownloadUrl(String bucketName, String objectName) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        var cached = presignedUrlCache.get(bucketName, objectName);
+        if (cached != null) {
+            return cached;
+        }
+        // Taken before signing, so the URL is valid at least until then
+        var expiresAt = ZonedDateTime.now().plusSeconds(properties.presignedUrlExpirySeconds());
+        var url = new PresignedUrl(objectName, getPresignedObjectUrl(Method.GET, bucketName, objectName, Map.of()), expiresAt);
+        presignedUrlCache.put(bucketName, url);
+        return url;
+    }
+
+    /**
+     * Starts a multipart upload of an object of the given size which the client uploads directly to MinIO,
+     * returning presigned URLs for all of its parts
+     */
+    public UploadSession startUploadSession(String bucketName, String objectName, long size, String contentType, UUID projectId) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        verifyBucketExists(bucketName);
+        verifyBucketBelongsToProject(bucketName, projectId);
+
+        var decodedName = StringUtils.decodeBase64(objectName);
+        if (decodedName.isEmpty() || decodedName.endsWith("/") || decodedName.contains("../")) {
+            throw new IllegalArgumentException("Invalid object name " + decodedName);
+        }
+        if (size < 0 || size > MAX_OBJECT_SIZE) {
+            throw new IllegalArgumentException("Size must be between 0 and " + MAX_OBJECT_SIZE + " bytes");
+        }
+
+        Multimap<String, String> headers = HashMultimap.create();
+        if (contentType != null) {
+            headers.put("Content-Type", contentType);
+        }
+        var uploadId = minioMetrics.record("createMultipartUpload", () -> minioMultipartClient.createMultipartUpload(bucketName, decodedName, headers));
+        log.log(Level.INFO, () -> "Started upload session " + uploadId + " for object " + decodedName + " of " + size + " bytes");
+        return getUploadSession(bucketName, decodedName, uploadId, size, List.of());
+    }
+
+    /**
+     * Gets the parts of the upload that were uploaded so far and fresh presigned URLs for the others,
+     * so a client can resume an interrupted upload. The size must be the one the session was started with
+     */
+    public UploadSession getUploadSession(String bucketName, String objectName, String uploadId, long size, UUID projectId) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        verifyBucketExists(bucketName);
+        verifyBucketBelongsToProject(bucketName, projectId);
+
+        var decodedName = StringUtils.decodeBase64(objectName);
+        if (size < 0 || size > MAX_OBJECT_SIZE) {
+            throw new IllegalArgumentException("Size must be between 0 and " + MAX_OBJECT_SIZE + " bytes");
+        }
+        return getUploadSession(bucketName, decodedName, uploadId, size, listUploadedParts(bucketName, decodedName, uploadId));
+    }
+
+    private UploadSession getUploadSession(String bucketName, String objectName, String uploadId, long size, List<UploadSession.UploadedPart> uploadedParts) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        long partSize = getPartSize(size);
+        int partCount = getPartCount(size);
+
+        var uploaded = new HashSet<Integer>();
+        uploadedParts.forEach(part -> uploaded.add(part.partNumber()));
+        // Taken before signing, so the URLs are valid at least until then
+        var urlsExpireAt = ZonedDateTime.now().plusSeconds(properties.presignedUrlExpirySeconds());
+        var partUrls = new ArrayList<UploadSession.PartUrl>(partCount - uploaded.size());
+        for (int partNumber = 1; partNumber <= partCount; partNumber++) {
+            if (!uploaded.contains(partNumber)) {
+                var url = getPresignedObjectUrl(Method.PUT, bucketName, objectName,
+                        Map.of("uploadId", uploadId, "partNumber", String.valueOf(partNumber)));
+                partUrls.add(new UploadSession.PartUrl(partNumber, url));
+            }
+        }
+        return new UploadSession(uploadId, objectName, size, partSize, partCount, uploadedParts, partUrls, urlsExpireAt);
+    }
+
+    /**
+     * Large objects get larger parts to stay within the maximum amount of parts, both in upload sessions and
+     * streamed uploads
+     */
+    private long getPartSize(long size) {
+        return Math.max(properties.uploadPartSize(), (size + MAX_UPLOAD_PARTS - 1) / MAX_UPLOAD_PARTS);
+    }
+
+    private int getPartCount(long size) {
+        long partSize = getPartSize(size);
+        return size == 0 ? 1 : (int) ((size + partSize - 1) / partSize);
+    }
+
+    private List<UploadSession.UploadedPart> listUploadedParts(String bucketName, String objectName, String uploadId) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        var uploadedParts = new ArrayList<UploadSession.UploadedPart>();
+        ListPartsResponse response;
+        int partNumberMarker = 0;
+        do {
+            int marker = partNumberMarker;
+            response = minioMetrics.record("listParts", () -> minioMultipartClient.listParts(bucketName, objectName, uploadId, 1000, marker));
+            for (Part part : response.result().partList()) {
+                uploadedParts.add(new UploadSession.UploadedPart(part.partNumber(), part.etag(), part.partSize()));
+            }
+            partNumberMarker = response.result().nextPartNumberMarker();
+        } while (response.result().isTruncated());
+        return uploadedParts;
+    }
+
+    /**
+     * Completes the upload with the parts MinIO has received. The size must be the one the session was started with,
+     * all parts of the session must have been uploaded and together be exactly that size
+     *
+     * @throws ConflictException if parts are missing or their sizes don't add up to the size
+     */
+    public BulkUploadResult.ObjectResult completeUploadSession(String bucketName, String objectName, String uploadId, long size, UUID projectId) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        verifyBucketExists(bucketName);
+        verifyBucketBelongsToProject(bucketName, projectId);
+
+        var decodedName = StringUtils.decodeBase64(objectName);
+        if (size < 0 || size > MAX_OBJECT_SIZE) {
+            throw new IllegalArgumentException("Size must be between 0 and " + MAX_OBJECT_SIZE + " bytes");
+        }
+        int partCount = getPartCount(size);
+        var uploadedParts = listUploadedParts(bucketName, decodedName, uploadId);
+        // Parts are listed in order, so every part up to the part count is there if they are numbered without gaps
+        for (int i = 0; i < partCount; i++) {
+            if (i >= uploadedParts.size() || uploadedParts.get(i).partNumber() != i + 1) {
+                throw new ConflictException("Part " + (i + 1) + " of " + partCount + " of upload " + uploadId + " has not been uploaded");
+            }
+        }
+        if (uploadedParts.size() > partCount) {
+            throw new ConflictException("Upload " + uploadId + " has " + uploadedParts.size() + " parts instead of " + partCount);
+        }
+        long uploadedSize = uploadedParts.stream().mapToLong(UploadSession.UploadedPart::size).sum();
+        if (uploadedSize != size) {
+            throw new ConflictException("The parts of upload " + uploadId + " are " + uploadedSize + " bytes instead of " + size);
+        }
+
+        var parts = uploadedParts.stream()
+                .map(part -> new Part(part.partNumber(), part.etag()))
+                .toArray(Part[]::new);
+        ObjectWriteResponse response;
+        try {
+            response = minioMetrics.record("completeMultipartUpload", () -> minioMultipartClient.completeMultipartUpload(bucketName, decodedName, uploadId, parts));
+        } catch (ErrorResponseException e) {
+            if (e.errorResponse().code().equals("NoSuchUpload")) {
+                throw e;
+            }
+            // E.g. a part other than the last one is smaller than the minimum part size
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        recordUpload(bucketName, decodedName, size, response.etag());
+        log.log(Level.INFO, () -> "Completed upload session " + uploadId + " of object " + decodedName + " with " + parts.length + " parts");
+        return new BulkUploadResult.ObjectResult(decodedName, size, response.etag(), null);
+    }
+
+    public void abortUploadSession(String bucketName, String objectName, String uploadId, UUID projectId) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        verifyBucketExists(bucketName);
+        verifyBucketBelongsToProject(bucketName, projectId);
+
+        var decodedName = StringUtils.decodeBase64(objectName);
+        minioMetrics.record("abortMultipartUpload", () -> {
+            minioMultipartClient.abortMultipartUpload(bucketName, decodedName, uploadId);
+            return null;
+        });
+        log.log(Level.INFO, () -> "Aborted upload session " + uploadId + " of object " + decodedName);
+    }
+
+    /**
+     * Streams an object directly into the bucket without buffering it on disk.
+     * Objects larger than the part size are uploaded as a multipart upload with several parts in flight,
+     * so at most (parallelism + 1) parts are held in memory at once. The parts of all streamed uploads together
+     * stay within the upload buffer budget. The size (-1 if unknown) grows the parts when needed to stay within
+     * 10000 parts, an object of unknown size that needs more parts is rejected
+     */
+    public ObjectWriteResponse uploadObjectStream(String bucketName, String objectName, InputStream stream, long size, String contentType, UUID projectId) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        verifyBucketExists(bucketName);
+        verifyBucketBelongsToProject(bucketName, projectId);
+
+        var decodedName = StringUtils.decodeBase64(objectName);
+        if (size > MAX_OBJECT_SIZE) {
+            throw new IllegalArgumentException("Size must be at most " + MAX_OBJECT_SIZE + " bytes");
+        }
+        int partSize = (int) getPartSize(Math.max(size, 0L));
+
+        byte[] part = readUploadPart(stream, partSize);
+        if (part.length < partSize) {
+            // The whole object fits in a single part, so a multipart upload isn't needed
+            try {
+                var args = PutObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(decodedName)
+                        .stream(new ByteArrayInputStream(part), part.length, -1);
+                if (contentType != null) {
+                    args.contentType(contentType);
+                }
+                var response = minioMetrics.record("putObject", () -> minioClient.putObject(args.build()));
+                recordUpload(bucketName, decodedName, part.length, response.etag());
+                log.log(Level.FINE, () -> "Uploaded object " + decodedName);
+                return response;
+            } finally {
+                releaseUploadBuffer(partSize);
+            }
+        }
+
+        Multimap<String, String> headers = HashMultimap.create();
+        if (contentType != null) {
+            headers.put("Content-Type", contentType);
+        }
+        String uploadId;
+        try {
+            uploadId = minioMetrics.record("createMultipartUpload", () -> minioMultipartClient.createMultipartUpload(bucketName, decodedName, headers));
+        } catch (Exception e) {
+            releaseUploadBuffer(partSize);
+            throw e;
+        }
+
+        var permits = new Semaphore(properties.uploadParallelism());
+        List<CompletableFuture<Part>> parts = new ArrayList<>();
+        long uploadedSize = 0L;
+        // Whether the buffer of the part read last is still held here, once its upload started that releases it
+        boolean holdingBuffer = true;
+        try {
+            int partNumber = 1;
+            while (part.length > 0) {
+                if (partNumber > MAX_UPLOAD_PARTS) {
+                    throw new IllegalArgumentException("Object " + decodedName + " doesn't fit in " + MAX_UPLOAD_PARTS
+                            + " parts of " + partSize + " bytes, upload it with its Content-Length to get larger parts");
+                }
+                permits.acquire();
+                final int number = partNumber++;
+                parts.add(minioMultipartClient.uploadPartAsync(bucketName, decodedName, uploadId, part, part.length, number)
+                        .whenComplete((response, e) -> {
+                            permits.release();
+                            releaseUploadBuffer(partSize);
+                        })
+                        .thenApply(response -> new Part(number, response.etag())));
+                holdingBuffer = false;
+                uploadedSize += part.length;
+
+                if (parts.stream().anyMatch(CompletableFuture::isCompletedExceptionally)) {
+                    break;
+                }
+                part = readUploadPart(stream, partSize);
+                holdingBuffer = true;
+            }
+            if (holdingBuffer) {
+                // The empty read after the last part
+                releaseUploadBuffer(partSize);
+                holdingBuffer = false;
+            }
+
+            var uploadedParts = parts.stream().map(CompletableFuture::join).toArray(Part[]::new);
+            var response = minioMetrics.record("completeMultipartUpload", () -> minioMultipartClient.completeMultipartUpload(bucketName, decodedName, uploadId, uploadedParts));
+            recordUpload(bucketName, decodedName, uploadedSize, response.etag());
+            log.log(Level.FINE, () -> "Uploaded object " + decodedName + " in " + uploadedParts.length + " parts");
+            return response;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            var failure = new InternalServerErrorException("Interrupted while uploading object " + decodedName);
+            abortMultipartUpload(bucketName, decodedName, uploadId, failure);
+            throw failure;
+        } catch (CompletionException e) {
+            var failure = new InternalServerErrorException("Could not upload part of object " + decodedName + ": " + e.getCause().getMessage());
+            abortMultipartUpload(bucketName, decodedName, uploadId, failure);
+            throw failure;
+        } catch (Exception e) {
+            abortMultipartUpload(bucketName, decodedName, uploadId, e);
+            throw e;
+        } finally {
+            if (holdingBuffer) {
+                releaseUploadBuffer(partSize);
+            }
+        }
+    }
+
+    /**
+     * Reads the next part of a streamed upload into a buffer of the upload buffer budget, waiting up to the buffer
+     * wait time for the budget. The caller releases the buffer once the part is uploaded
+     */
+    private byte[] readUploadPart(InputStream stream, int partSize) throws IOException {
+        try {
+            if (!uploadBuffers.tryAcquire(getUploadBufferPermits(partSize), properties.uploadBufferWaitMillis(), TimeUnit.MILLISECONDS)) {
+                throw new TooManyRequestsException("Too many uploads in progress, try again later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalServerErrorException("Interrupted while waiting for an upload buffer");
+        }
+        try {
+            return stream.readNBytes(partSize);
+        } catch (IOException | RuntimeException e) {
+            releaseUploadBuffer(partSize);
+            throw e;
+        }
+    }
+
+    private void releaseUploadBuffer(int partSize) {
+        uploadBuffers.release(getUploadBufferPermits(partSize));
+    }
+
+    /**
+     * A part larger than the whole budget (grown for a large object) takes the whole budget
+     */
+    private int getUploadBufferPermits(int partSize) {
+        return (int) Math.min((partSize + 1023L) / 1024, uploadBufferPermits);
+    }
+
+    /**
+     * Aborts the upload after it failed, a failure to abort is added to the original failure instead of replacing it
+     */
+    private void abortMultipartUpload(String bucketName, String objectName, String uploadId, Exception failure) {
+        try {
+            minioMultipartClient.abortMultipartUpload(bucketName, objectName, uploadId);
+        } catch (Exception e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Uploads several objects into the bucket, verifying the bucket only once for all of them.
+     * The objects are put with up to the bulk parallelism in flight, an object that fails doesn't stop the others.
+     * Returns once every object was handled, with the result of each of them
+     */
+    public BulkUploadResult uploadObjects(String bucketName, List<ObjectUpload> uploads, UUID projectId) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        if (uploads.size() > properties.bulkUploadMaxObjects()) {
+            throw new IllegalArgumentException("At most " + properties.bulkUploadMaxObjects() + " objects can be uploaded at once");
+        }
+        verifyBucketExists(bucketName);
+        verifyBucketBelongsToProject(bucketName, projectId);
+
+        var permits = new Semaphore(properties.bulkUploadParallelism());
+        List<Future<BulkUploadResult.ObjectResult>> futures = new ArrayList<>(uploads.size());
+        List<BulkUploadResult.ObjectResult> results = new ArrayList<>(uploads.size());
+        try {
+            for (ObjectUpload upload : uploads) {
+                permits.acquire();
+                futures.add(bulkUploadExecutor.submit(() -> {
+                    try {
+                        return uploadObject(bucketName, upload);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            for (Future<BulkUploadResult.ObjectResult> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new InternalServerErrorException("Interrupted while uploading objects");
+        } catch (ExecutionException e) {
+            // uploadObject reports its failures in the result
+            throw new InternalServerErrorException("Could not upload objects: " + e.getCause().getMessage());
+        }
+
+        long failed = results.stream().filter(result -> result.reason() != null).count();
+        log.log(Level.INFO, () -> "Uploaded " + (results.size() - failed) + " objects to bucket " + bucketName + ", " + failed + " failed");
+
+        return new BulkUploadResult(results.size() - failed, failed, results);
+    }
+
+    private BulkUploadResult.ObjectResult uploadObject(String bucketName, ObjectUpload upload) {
+        var objectName = upload.objectName();
+        if (objectName.isEmpty() || objectName.endsWith("/") || objectName.contains("../")) {
+            return new BulkUploadResult.ObjectResult(objectName, upload.size(), null, "Invalid object name");
+        }
+        try (var stream = upload.content().getInputStream()) {
+            var args = PutObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(objectName)
+                    .stream(stream, upload.size(), -1);
+            if (upload.contentType() != null) {
+                args.contentType(upload.contentType());
+            }
+            var response = minioMetrics.record("putObject", () -> minioClient.putObject(args.build()));
+            recordUpload(bucketName, objectName, upload.size(), response.etag());
+            return new BulkUploadResult.ObjectResult(objectName, upload.size(), response.etag(), null);
+        } catch (Exception e) {
+            itemLog.log(Level.WARNING, () -> "Could not upload object " + objectName + " to bucket " + bucketName + ": " + e.getMessage());
+            return new BulkUploadResult.ObjectResult(objectName, upload.size(), null, e.getMessage());
+        }
+    }
+
     public GetObjectResponse getObject(String bucketName, String objectName, UUID projectId) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
         verifyBucketExists(bucketName);
         verifyBucketBelongsToProject(bucketName, projectId);
 
         var decodedName = StringUtils.decodeBase64(objectName);
-        return minioClient.getObject(GetObjectArgs.builder()
+        return minioMetrics.record("getObject", () -> minioClient.getObject(GetObjectArgs.builder()
                 .bucket(bucketName)
                 .object(decodedName)
-                .build());
+                .build()));
     }
 
-    public Iterable<Result<DeleteError>> deleteObjects(String bucketName, String[] objectNames, UUID projectId) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+    /**
+     * Gets the given byte range of an object, starting at offset and with the given length
+     */
+    public GetObjectResponse getObject(String bucketName, String objectName, UUID projectId, long offset, long length) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
         verifyBucketExists(bucketName);
         verifyBucketBelongsToProject(bucketName, projectId);
 
-        for (String objectName : objectNames) {
-            if (isDirectory(objectName)) {
-                emptyDirectory(bucketName, objectName);
-            }
+        var decodedName = StringUtils.decodeBase64(objectName);
+        return minioMetrics.record("getObject", () -> minioClient.getObject(GetObjectArgs.builder()
+                .bucket(bucketName)
+                .object(decodedName)
+                .offset(offset)
+                .length(length)
+                .build()));
+    }
+
+    /**
+     * Gets the content of a small object through the object cache. The stat is the current state of the object,
+     * a cached copy is only used when it has the same ETag, and a fresh copy is only read when it still matches it
+     *
+     * @return the content, or null when the object isn't cacheable and should be streamed with getObject
+     */
+    public ByteBuffer getCachedObject(String bucketName, String objectName, UUID projectId, StatObjectResponse stat) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        if (!objectCache.isCacheable(stat.size())) {
+            return null;
         }
+        verifyBucketExists(bucketName);
+        verifyBucketBelongsToProject(bucketName, projectId);
 
-        List<DeleteObject> decodedObjectNames = Arrays.stream(objectNames)
-                .map(Base64.getDecoder()::decode)
-                .map(name -> new DeleteObject(new String(name)))
-                .collect(Collectors.toCollection(ArrayList::new));
+        var decodedName = StringUtils.decodeBase64(objectName);
+        var content = objectCache.get(bucketName, decodedName, stat.etag());
+        if (content != null) {
+            return content;
+        }
 
-        var deleteErrors = minioClient.removeObjects(RemoveObjectsArgs.builder()
+        byte[] bytes;
+        try (var stream = minioMetrics.record("getObject", () -> minioClient.getObject(GetObjectArgs.builder()
                 .bucket(bucketName)
-                .objects(decodedObjectNames)
-                .build());
+                .object(decodedName)
+                .matchETag(stat.etag())
+                .build()))) {
+            bytes = stream.readAllBytes();
+        }
+        objectCache.put(bucketName, decodedName, stat.etag(), bytes);
+        return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
 
-        log.log(Level.INFO, "Deleted objects " + Arrays.toString(objectNames));
+    public StatObjectResponse statObject(String bucketName, String objectName, UUID projectId) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        verifyBucketExists(bucketName);
+        verifyBucketBelongsToProject(bucketName, projectId);
 
-        return deleteErrors;
+        var decodedName = StringUtils.decodeBase64(objectName);
+        return minioMetrics.record("statObject", () -> minioClient.statObject(StatObjectArgs.builder()
+                .bucket(bucketName)
+                .object(decodedName)
+                .build()));
     }
 
+    /**
+     * Deletes objects and directories (names ending with a slash) with everything in them.
+     * The listings of the directories are streamed into batched removeObjects calls, and the deletion has completed
+     * when this method returns
+     */
+    public BatchDeleteResult deleteObjects(String bucketName, String[] objectNames, UUID projectId) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        verifyBucketExists(bucketName);
+        verifyBucketBelongsToProject(bucketName, projectId);
+
+        List<String> decodedObjectNames = Arrays.stream(objectNames)
+                .map(StringUtils::decodeBase64)
+                .toList();
+
+        List<Iterator<ObjectToDelete>> objectsToDelete = new ArrayList<>();
+        objectsToDelete.add(Iterators.transform(decodedObjectNames.iterator(), name -> new ObjectToDelete(name, null)));
+        for (String decodedObjectName : decodedObjectNames) {
+            if (decodedObjectName.endsWith("/")) {
+                objectCache.invalidatePrefix(bucketName, decodedObjectName);
+                var directoryObjects = listObjects(ListObjectsArgs.builder()
+                        .bucket(bucketName)
+                        .prefix(decodedObjectName)
+                        .recursive(true)
+                        .build());
+                objectsToDelete.add(Iterators.transform(directoryObjects.iterator(), MinioService::getObjectToDelete));
+            } else {
+                objectCache.invalidate(bucketName, decodedObjectName);
+            }
+        }
+
+        BatchDeleteResult result;
+        try {
+            result = removeObjectsInBatches(bucketName, Iterators.concat(objectsToDelete.iterator()), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalServerErrorException("Interrupted while deleting objects");
+        }
+
+        log.log(Level.INFO, () -> "Deleted " + result.deleted() + " objects from bucket " + bucketName + ", " + result.failed() + " failed");
+
+        return result;
+    }
+
+    /**
+     * Deletes a bucket. A force-delete empties the bucket in a background job first; when that job doesn't finish
+     * within the inline timeout, the returned response carries the id of the job instead of waiting for it
+     */
     public CompletableFuture<DeleteBucketResponse> deleteBucketAsync(final String bucketName, final boolean force, final UUID projectId) {
-        return CompletableFuture.supplyAsync(() -> {
+        return minioBulkhead.supplyAsync(projectId, () -> {
             try {
 
                 verifyBucketExists(bucketName);
 
                 verifyBucketBelongsToProject(bucketName, projectId);
 
-                Iterable<Result<Item>> bucketObjects = getObjectsInBucket(bucketName);
                 if (force) {
-                    for (Result<Item> bucketObject : bucketObjects) {
-                        minioClient.removeObject(RemoveObjectArgs.builder()
-                                .bucket(bucketName)
-                                .object(bucketObject.get().objectName())
-                                .build());
-                    }
+                    return recordRemoteChanges(jobService.submit("delete-bucket", bucketName, null, projectId));
                 }
-                if (Iterables.size(bucketObjects) > 0)
-                    throw new BucketNotEmptyException("Bucket not empty, consider emptying it or adding 'force-delete' header to your request");
-                minioClient.removeBucket(RemoveBucketArgs.builder()
+
+                var bucketObjects = listObjects(ListObjectsArgs.builder()
                         .bucket(bucketName)
+                        .recursive(true)
+                        .maxKeys(1)
                         .build());
-                log.log(Level.INFO, "Deleted bucket " + bucketName);
-                return new DeleteBucketResponse(bucketName);
+                if (bucketObjects.iterator().hasNext())
+                    throw new BucketNotEmptyException("Bucket not empty, consider emptying it or adding 'force-delete' header to your request");
+                removeBucket(bucketName);
+                return null;
+            } catch (TooManyRequestsException e) {
+                throw e;
             } catch (Exception e) {
                 throw new RuntimeException(e.getMessage());
             }
+        }).thenCompose(job -> {
+            if (job == null) {
+                return CompletableFuture.completedFuture(new DeleteBucketResponse(bucketName, null));
+            }
+            return job.getCompletion()
+                    .thenApply(ignored -> new DeleteBucketResponse(bucketName, null))
+                    .completeOnTimeout(new DeleteBucketResponse(bucketName, job.getId()), properties.deleteInlineTimeoutMillis(), TimeUnit.MILLISECONDS);
         });
     }
 
-    public List<ItemResponse> getDirectoryContents(String bucketName, String directoryName, UUID projectId) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+    private void emptyAndRemoveBucket(String bucketName, Job job) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException, InterruptedException {
+        objectCache.invalidateBucket(bucketName);
+        var objects = Iterators.transform(getObjectsInBucket(bucketName).iterator(), MinioService::getObjectToDelete);
+        var result = removeObjectsInBatches(bucketName, objects, job);
+        if (job.isCancelRequested()) {
+            log.log(Level.INFO, () -> "Cancelled deleting bucket " + bucketName + " after deleting " + result.deleted() + " objects");
+            return;
+        }
+        if (result.failed() > 0) {
+            throw new ConflictException("Could not delete " + result.failed() + " objects of bucket " + bucketName
+                    + ", e.g. " + result.failures().get(0).objectName() + ": " + result.failures().get(0).reason());
+        }
+        removeBucket(bucketName);
+    }
+
+    /**
+     * Deletes everything under the directory (a prefix ending with a slash) in a background job
+     */
+    public Job deleteDirectoryAsync(String bucketName, String directoryName, UUID projectId) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
         verifyBucketExists(bucketName);
         verifyBucketBelongsToProject(bucketName, projectId);
 
         var decodedName = StringUtils.decodeBase64(directoryName);
+        if (!decodedName.endsWith("/")) {
+            throw new IllegalArgumentException("Directory name " + decodedName + " must end with a slash");
+        }
+        var prefix = decodedName.equals("/") ? "" : decodedName;
+        return recordRemoteChanges(jobService.submit("delete-directory", bucketName, prefix, projectId));
+    }
 
-        log.log(Level.INFO, "Getting objects for directory " + decodedName + " (Decoded from " + directoryName + ")");
+    /**
+     * The deletes of a job that runs on a worker aren't recorded in the metadata index and usage of this instance,
+     * so both are marked stale for the bucket once the job finishes
+     */
+    private Job recordRemoteChanges(Job job) {
+        if (job.isRemote()) {
+            job.getCompletion().whenComplete((result, e) -> {
+                metadataIndex.markStale(job.getBucketName());
+                bucketUsageService.markStale(job.getBucketName());
+            });
+        }
+        return job;
+    }
 
-        Iterable<Result<Item>> directoryContents;
+    private void emptyDirectory(String bucketName, String prefix, Job job) throws InterruptedException {
+        var objects = Iterators.transform(listObjects(ListObjectsArgs.builder()
+                .bucket(bucketName)
+                .prefix(prefix)
+                .recursive(true)
+                .build()).iterator(), MinioService::getObjectToDelete);
+        BatchDeleteResult result;
+        try {
+            result = removeObjectsInBatches(bucketName, objects, job);
+        } finally {
+            objectCache.invalidatePrefix(bucketName, prefix);
+        }
+        if (result.failed() > 0) {
+            throw new ConflictException("Could not delete " + result.failed() + " objects of directory " + prefix
+                    + ", e.g. " + result.failures().get(0).objectName() + ": " + result.failures().get(0).reason());
+        }
+        log.log(Level.INFO, () -> "Deleted " + result.deleted() + " objects of directory " + prefix + " in bucket " + bucketName);
+    }
 
-        if (decodedName.equals("/")) {
-            directoryContents = minioClient.listObjects(ListObjectsArgs.builder()
+    private void removeBucket(String bucketName) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        minioMetrics.record("removeBucket", () -> {
+            minioClient.removeBucket(RemoveBucketArgs.builder()
                     .bucket(bucketName)
-                    .recursive(false)
                     .build());
+            return null;
+        });
+        bucketOwnershipCache.putMissing(bucketName);
+        bucketUsageService.remove(bucketName);
+        metadataIndex.remove(bucketName);
+        objectCache.invalidateBucket(bucketName);
+        rabbitMQProducer.publish(MutationEvent.bucket(MutationEvent.Type.BUCKET_DELETED, bucketName, null));
+        log.log(Level.INFO, () -> "Deleted bucket " + bucketName);
+    }
+
+    /**
+     * An object to delete, with its size if it's known (i.e. it was listed), so the deleted size can be subtracted
+     * from the usage of the bucket
+     */
+    private record ObjectToDelete(String name, Long size) {
+    }
+
+    /**
+     * Deletes the given objects with removeObjects calls of up to 1000 objects each, with several batches in flight.
+     * Stops taking new batches once the job (if any) is cancelled
+     */
+    private BatchDeleteResult removeObjectsInBatches(String bucketName, Iterator<ObjectToDelete> objects, Job job) throws InterruptedException {
+        var permits = new Semaphore(properties.deleteParallelism());
+        var deleted = new AtomicLong();
+        var failed = new AtomicLong();
+        List<BatchDeleteResult.Failure> failures = Collections.synchronizedList(new ArrayList<>());
+        List<Future<?>> batches = new ArrayList<>();
+
+        while (objects.hasNext() && (job == null || !job.isCancelRequested())) {
+            List<ObjectToDelete> batch = new ArrayList<>(DELETE_BATCH_SIZE);
+            while (objects.hasNext() && batch.size() < DELETE_BATCH_SIZE) {
+                batch.add(objects.next());
+            }
+
+            permits.acquire();
+            batches.add(deleteBatchExecutor.submit(() -> {
+                try {
+                    Set<String> failedInBatch = new HashSet<>();
+                    minioMetrics.record("removeObjects", () -> {
+                        var deleteErrors = minioClient.removeObjects(RemoveObjectsArgs.builder()
+                                .bucket(bucketName)
+                                .objects(batch.stream().map(object -> new DeleteObject(object.name())).toList())
+                                .build());
+                        // removeObjects is lazy, the objects are only deleted while iterating over the errors
+                        for (Result<DeleteError> deleteError : deleteErrors) {
+                            var error = deleteError.get();
+                            addFailure(failures, error.objectName(), error.message());
+                            failedInBatch.add(error.objectName());
+                        }
+                        return null;
+                    });
+                    deleted.addAndGet(batch.size() - failedInBatch.size());
+                    failed.addAndGet(failedInBatch.size());
+                    for (ObjectToDelete object : batch) {
+                        if (!failedInBatch.contains(object.name())) {
+                            metadataIndex.recordDelete(bucketName, object.name());
+                            if (object.size() != null) {
+                                bucketUsageService.recordDelete(bucketName, object.name(), object.size());
+                            } else {
+                                bucketUsageService.markStale(bucketName);
+                            }
+                            rabbitMQProducer.publish(MutationEvent.object(MutationEvent.Type.OBJECT_DELETED, bucketName, object.name(), null));
+                        }
+                    }
+                } catch (Exception e) {
+                    // Some of the batch may have been deleted before the failure
+                    bucketUsageService.markStale(bucketName);
+                    batch.forEach(object -> addFailure(failures, object.name(), e.getMessage()));
+                    failed.addAndGet(batch.size());
+                } finally {
+                    if (job != null) {
+                        job.getProcessedObjects().set(deleted.get());
+                        job.getFailedObjects().set(failed.get());
+                    }
+                    permits.release();
+                }
+            }));
+        }
+
+        for (Future<?> batch : batches) {
+            try {
+                batch.get();
+            } catch (ExecutionException e) {
+                // Failures are already recorded per object inside the batch
+            }
+        }
+
+        return new BatchDeleteResult(deleted.get(), failed.get(), List.copyOf(failures));
+    }
+
+    private static void addFailure(List<BatchDeleteResult.Failure> failures, String objectName, String reason) {
+        if (failures.size() < MAX_REPORTED_DELETE_FAILURES) {
+            failures.add(new BatchDeleteResult.Failure(objectName, reason));
+        }
+    }
+
+    private static ObjectToDelete getObjectToDelete(Result<Item> result) {
+        var item = getItem(result);
+        return new ObjectToDelete(item.objectName(), item.size());
+    }
+
+    private static Item getItem(Result<Item> result) {
+        try {
+            return result.get();
+        } catch (Exception e) {
+            throw new InternalServerErrorException("Could not list objects: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets a single page of the contents of a directory. The continuation token is the base64 encoded name of the
+     * last item of the previous page, or null to get the first page
+     */
+    public DirectoryContentsPage getDirectoryContents(String bucketName, String directoryName, UUID projectId, String continuationToken, int limit) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        verifyBucketExists(bucketName);
+        verifyBucketBelongsToProject(bucketName, projectId);
+
+        var decodedName = StringUtils.decodeBase64(directoryName);
+        var startAfter = continuationToken != null ? StringUtils.decodeBase64(continuationToken) : null;
+        int pageSize = Math.max(1, Math.min(limit, properties.directoryPageSizeMax()));
+
+        log.log(Level.FINE, () -> "Getting objects for directory " + decodedName + " (Decoded from " + directoryName + ")");
+
+        // Request one extra item to know whether there's a next page
+        List<ItemResponse> items;
+        var index = metadataIndex.get(bucketName);
+        if (index != null) {
+            items = index.list(decodedName.equals("/") ? "" : decodedName, startAfter, pageSize + 1);
         } else {
-            directoryContents = minioClient.listObjects(ListObjectsArgs.builder()
+            // Identical requests share the listing, each gets its own copy of the items
+            items = new ArrayList<>(readCoalescer.execute("listDirectory",
+                    new DirectoryRead(bucketName, decodedName, startAfter, pageSize, projectId),
+                    () -> listDirectoryPage(bucketName, decodedName, startAfter, pageSize)));
+        }
+        boolean hasNextPage = items.size() > pageSize;
+        if (hasNextPage) {
+            items.remove(pageSize);
+        }
+        log.log(Level.FINE, () -> "Got " + items.size() + " objects for directory " + decodedName);
+
+        String nextContinuationToken = null;
+        if (hasNextPage) {
+            nextContinuationToken = StringUtils.encodeBase64(getStartAfter(items.get(items.size() - 1)));
+        }
+        return new DirectoryContentsPage(items, nextContinuationToken);
+    }
+
+    /**
+     * Gets where the listing of the next page starts after the last item of a page. It continues after everything
+     * in a subdirectory, otherwise its objects are rolled up into the same subdirectory again
+     */
+    private static String getStartAfter(ItemResponse lastItem) {
+        return lastItem.isDir() ? lastItem.getObjectName() + LAST_CODE_POINT : lastItem.getObjectName();
+    }
+
+    /**
+     * Searches the objects of the bucket matching the filter, up to the limit (at most the max results).
+     * The bucket is verified before returning, the objects are only listed while writing the matches.
+     * Buckets with a fresh metadata index are searched in the index instead of listing MinIO
+     */
+    public ObjectSearch searchObjects(String bucketName, SearchFilter filter, int limit, UUID projectId) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        verifyBucketExists(bucketName);
+        verifyBucketBelongsToProject(bucketName, projectId);
+
+        int maxResults = Math.max(1, Math.min(limit, properties.searchMaxResults()));
+        log.log(Level.FINE, () -> "Searching objects under prefix " + filter.getPrefix() + " in bucket " + bucketName);
+
+        var index = metadataIndex.get(bucketName);
+        if (index != null) {
+            return new ObjectSearch(index.search(filter, maxResults));
+        }
+        var search = new ObjectSearch((prefix, recursive) -> {
+            var args = ListObjectsArgs.builder()
                     .bucket(bucketName)
-                    .prefix(decodedName)
-                    .recursive(false)
-                    .build());
+                    .recursive(recursive);
+            if (!prefix.isEmpty()) {
+                args.prefix(prefix);
+            }
+            return listObjects(args.build());
+        }, filter, maxResults, searchExecutor, properties.searchShards(), properties.searchTimeoutMillis());
+        search.start();
+        return search;
+    }
+
+    /**
+     * Gets the total size and amount of objects under a directory (or any other prefix), including subdirectories
+     */
+    public BucketUsageService.Usage getDirectoryUsage(String bucketName, String directoryName, UUID projectId) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        verifyBucketExists(bucketName);
+        verifyBucketBelongsToProject(bucketName, projectId);
+
+        var decodedName = StringUtils.decodeBase64(directoryName);
+        var prefix = decodedName.equals("/") ? "" : decodedName;
+
+        var index = metadataIndex.get(bucketName);
+        if (index != null) {
+            return index.getUsage(prefix);
+        }
+
+        var args = ListObjectsArgs.builder()
+                .bucket(bucketName)
+                .recursive(true);
+        if (!prefix.isEmpty()) {
+            args.prefix(prefix);
+        }
+        long size = 0L;
+        long amountOfObjects = 0L;
+        for (Result<Item> itemResult : listObjects(args.build())) {
+            size += itemResult.get().size();
+            amountOfObjects++;
+        }
+        return new BucketUsageService.Usage(size, amountOfObjects);
+    }
+
+    /**
+     * Lists the contents of a directory lazily, the next page of objects is only listed while iterating.
+     * Like getDirectoryContents it lists from the metadata index if the bucket has a fresh one, otherwise from MinIO.
+     * The bucket is verified before returning
+     */
+    public Iterable<ItemResponse> streamDirectoryContents(String bucketName, String directoryName, UUID projectId, String continuationToken) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        verifyBucketExists(bucketName);
+        verifyBucketBelongsToProject(bucketName, projectId);
+
+        var decodedName = StringUtils.decodeBase64(directoryName);
+        var startAfter = continuationToken != null ? StringUtils.decodeBase64(continuationToken) : null;
+
+        log.log(Level.FINE, () -> "Streaming objects for directory " + decodedName + " (Decoded from " + directoryName + ")");
+
+        var index = metadataIndex.get(bucketName);
+        if (index != null) {
+            return listIndexedDirectory(index, decodedName.equals("/") ? "" : decodedName, startAfter);
+        }
+        var directoryContents = listDirectory(bucketName, decodedName, startAfter, properties.directoryPageSizeMax());
+        return Iterables.transform(directoryContents, itemResult -> {
+            try {
+                return toItemResponse(itemResult.get());
+            } catch (Exception e) {
+                throw new InternalServerErrorException(e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Lists the contents of a directory from the index a page at a time, so the index isn't locked while the items
+     * are written
+     */
+    private Iterable<ItemResponse> listIndexedDirectory(BucketIndex index, String prefix, String startAfter) {
+        int pageSize = properties.directoryPageSizeMax();
+        return () -> new AbstractIterator<>() {
+
+            private Iterator<ItemResponse> page = Collections.emptyIterator();
+
+            private String pageStartAfter = startAfter;
+
+            private boolean lastPage;
+
+            @Override
+            protected ItemResponse computeNext() {
+                if (!page.hasNext()) {
+                    if (lastPage) {
+                        return endOfData();
+                    }
+                    var items = index.list(prefix, pageStartAfter, pageSize);
+                    lastPage = items.size() < pageSize;
+                    if (items.isEmpty()) {
+                        return endOfData();
+                    }
+                    pageStartAfter = getStartAfter(items.get(items.size() - 1));
+                    page = items.iterator();
+                }
+                return page.next();
+            }
+        };
+    }
+
+    /**
+     * Gets a ZIP archive of all objects under a directory, entries are named relative to the directory.
+     * The bucket is verified before returning, the objects are only listed and read while writing the archive
+     */
+    public DirectoryArchive getDirectoryArchive(String bucketName, String directoryName, UUID projectId) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        verifyBucketExists(bucketName);
+        verifyBucketBelongsToProject(bucketName, projectId);
+
+        var decodedName = StringUtils.decodeBase64(directoryName);
+        var prefix = decodedName.equals("/") ? "" : decodedName;
+
+        log.log(Level.FINE, () -> "Archiving objects for directory " + decodedName + " (Decoded from " + directoryName + ")");
+
+        var args = ListObjectsArgs.builder()
+                .bucket(bucketName)
+                .recursive(true);
+        if (!prefix.isEmpty()) {
+            args.prefix(prefix);
         }
-        log.log(Level.INFO, "Contents of directory: ");
+        var items = Iterators.transform(listObjects(args.build()).iterator(), MinioService::getItem);
+        return new DirectoryArchive(items, prefix,
+                objectName -> minioMetrics.record("getObject", () -> minioClient.getObject(GetObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(objectName)
+                        .build())),
+                archivePrefetchExecutor, properties.archivePrefetch());
+    }
 
+    private List<ItemResponse> listDirectoryPage(String bucketName, String decodedName, String startAfter, int pageSize) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
         List<ItemResponse> items = new ArrayList<>();
-        for (Result<Item> itemResult : directoryContents) {
-            var item = itemResult.get();
-            log.log(Level.INFO, item.objectName());
-            if (item.isDir()) {
-                items.add(new ItemResponse(item.objectName(), item.isDir()));
-                continue;
+        for (Result<Item> itemResult : listDirectory(bucketName, decodedName, startAfter, pageSize + 1)) {
+            items.add(toItemResponse(itemResult.get()));
+            if (items.size() > pageSize) {
+                break;
             }
-            items.add(new ItemResponse(
-                    item.etag(), item.objectName(), item.lastModified(), item.owner(), item.size(),
-                    item.storageClass(), item.isLatest(), item.versionId(), item.userMetadata(), item.isDir())
-            );
         }
         return items;
     }
 
+    private Iterable<Result<Item>> listDirectory(String bucketName, String decodedName, String startAfter, int maxKeys) {
+        var args = ListObjectsArgs.builder()
+                .bucket(bucketName)
+                .recursive(false)
+                .maxKeys(Math.min(maxKeys, 1000));
+        if (!decodedName.equals("/")) {
+            args.prefix(decodedName);
+        }
+        if (startAfter != null) {
+            args.startAfter(startAfter);
+        }
+        return listObjects(args.build());
+    }
+
+    /**
+     * Lists objects with the pages of the listing recorded in the metrics
+     */
+    private Iterable<Result<Item>> listObjects(ListObjectsArgs args) {
+        return minioMetrics.recordPages("listObjects", minioClient.listObjects(args), args.maxKeys());
+    }
+
+    static ItemResponse toItemResponse(Item item) {
+        if (item.isDir()) {
+            return new ItemResponse(item.objectName(), item.isDir());
+        }
+        return new ItemResponse(
+                item.etag(), item.objectName(), item.lastModified(), item.owner(), item.size(),
+                item.storageClass(), item.isLatest(), item.versionId(), item.userMetadata(), item.isDir());
+    }
+
     private void verifyBucketExists(String bucketName) throws BucketNotFoundException, ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
-        boolean bucketExists = minioClient.bucketExists(
+        if (bucketOwnershipCache.getOwnership(bucketName) != null) {
+            return;
+        }
+
+        boolean bucketExists = !bucketOwnershipCache.isKnownMissing(bucketName) && minioMetrics.record("bucketExists", () -> minioClient.bucketExists(
                 BucketExistsArgs.builder()
                         .bucket(bucketName)
                         .build()
-        );
+        ));
 
         if (!bucketExists) {
-            log.log(Level.WARNING, "Could not find bucket with name " + bucketName);
+            bucketOwnershipCache.putMissing(bucketName);
+            log.log(Level.WARNING, () -> "Could not find bucket with name " + bucketName);
             throw new BucketNotFoundException("Bucket with name " + bucketName + " not found");
         }
     }
 
+    /**
+     * Counts the objects of the bucket and their total size, reporting the progress to the job if there is one
+     */
+    private BucketUsageService.Usage computeBucketUsage(final String bucketName, final Job job) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        var listing = bucketUsageService.startListing(bucketName, false);
+        try {
+            Iterable<Result<Item>> bucketObjects = getObjectsInBucket(bucketName);
+
+            long totalSize = 0L;
+            long amountOfObjects = 0L;
+            for (Result<Item> obj : bucketObjects) {
+                var item = obj.get();
+                totalSize += item.size();
+                amountOfObjects++;
+                listing.listed(item.objectName());
+                if (job != null && amountOfObjects % DELETE_BATCH_SIZE == 0) {
+                    job.getProcessedObjects().set(amountOfObjects);
+                    job.getProcessedBytes().set(totalSize);
+                }
+            }
+            if (job != null) {
+                job.getProcessedObjects().set(amountOfObjects);
+                job.getProcessedBytes().set(totalSize);
+            }
+
+            return bucketUsageService.reconcile(listing, totalSize, amountOfObjects);
+        } catch (Exception e) {
+            bucketUsageService.abortListing(listing);
+            throw e;
+        }
+    }
+
     private Iterable<Result<Item>> getObjectsInBucket(final String bucketName) {
-        return minioClient.listObjects(
+        return listObjects(
                 ListObjectsArgs.builder()
                         .bucket(bucketName)
                         .recursive(true)
@@ -262,10 +1504,15 @@ public class MinioService {
     }
 
     private void verifyBucketBelongsToProject(String bucketName, UUID projectId) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
-        var tags = minioClient.getBucketTags(
-                GetBucketTagsArgs.builder().bucket(bucketName).build()
-        );
-        var bucketTagProjectIdString = tags.get().get("projectId");
+        var ownership = bucketOwnershipCache.getOwnership(bucketName);
+        if (ownership == null) {
+            var tags = minioMetrics.record("getBucketTags", () -> minioClient.getBucketTags(
+                    GetBucketTagsArgs.builder().bucket(bucketName).build()
+            ));
+            ownership = new BucketOwnershipCache.BucketOwnership(tags.get().get("projectId"));
+            bucketOwnershipCache.putOwnership(bucketName, ownership.projectId());
+        }
+        var bucketTagProjectIdString = ownership.projectId();
 
         try {
             UUID bucketTagProjectId = UUID.fromString(bucketTagProjectIdString);
@@ -279,24 +1526,8 @@ public class MinioService {
         }
     }
 
-    private void emptyDirectory(String bucketName, String directoryName) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
-        var decodedDirectoryName = StringUtils.decodeBase64(directoryName);
-
-        Iterable<Result<Item>> directoryObjects = minioClient.listObjects(ListObjectsArgs.builder()
-                .bucket(bucketName)
-                .prefix(decodedDirectoryName)
-                .recursive(true)
-                .build());
-
-        for (Result<Item> directoryObject : directoryObjects) {
-            minioClient.removeObject(RemoveObjectArgs.builder()
-                    .bucket(bucketName)
-                    .object(directoryObject.get().objectName())
-                    .build());
-        }
-    }
-
-    private boolean isDirectory(String objectName) {
-        return StringUtils.decodeBase64(objectName).endsWith("/");
+    private boolean isKnownToBelongToProject(String bucketName, UUID projectId) {
+        var ownership = bucketOwnershipCache.getOwnership(bucketName);
+        return ownership != null && projectId.toString().equals(ownership.projectId());
     }
 }
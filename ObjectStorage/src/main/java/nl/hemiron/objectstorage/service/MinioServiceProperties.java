@@ -0,0 +1,43 @@
+package nl.hemiron.objectstorage.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.boot.context.properties.bind.Name;
+
+/**
+ * Settings of the MinioService, bound from the minio.* properties documented in example.properties
+ *
+ * @param bucketTimeoutMillis        how long getting the information of all buckets of a project may take
+ * @param uploadPartSize             size of the parts of streamed uploads and upload sessions, at least 5MiB
+ * @param uploadParallelism          parts of a streamed upload uploaded at once
+ * @param uploadBufferMaxBytes       total size of the part buffers of all streamed uploads together
+ * @param uploadBufferWaitMillis     how long a streamed upload waits for a part buffer before it's rejected
+ * @param directoryPageSizeMax       maximum amount of items in a page of directory contents
+ * @param deleteParallelism          batches of a delete removed at once
+ * @param deleteInlineTimeoutMillis  how long a force delete runs before it continues as a job
+ * @param archivePrefetch            objects requested ahead while writing a directory archive
+ * @param bulkUploadParallelism      objects of a bulk upload uploaded at once
+ * @param bulkUploadMaxObjects       maximum amount of objects in a bulk upload
+ * @param presignedUrlExpirySeconds  validity of presigned URLs
+ * @param searchShards               shards of a single object search listed at once
+ * @param searchMaxResults           maximum amount of matches of an object search
+ * @param searchTimeoutMillis        how long an object search may take
+ */
+@ConfigurationProperties("minio")
+public record MinioServiceProperties(
+        @Name("buckets.timeout.millis") @DefaultValue("5000") long bucketTimeoutMillis,
+        @Name("upload.part.size") @DefaultValue("16777216") int uploadPartSize,
+        @Name("upload.parallelism") @DefaultValue("4") int uploadParallelism,
+        @Name("upload.buffer.max.bytes") @DefaultValue("268435456") long uploadBufferMaxBytes,
+        @Name("upload.buffer.wait.millis") @DefaultValue("10000") long uploadBufferWaitMillis,
+        @Name("directory.page.size.max") @DefaultValue("1000") int directoryPageSizeMax,
+        @Name("delete.parallelism") @DefaultValue("4") int deleteParallelism,
+        @Name("delete.inline.timeout.millis") @DefaultValue("2000") long deleteInlineTimeoutMillis,
+        @Name("archive.prefetch") @DefaultValue("4") int archivePrefetch,
+        @Name("upload.bulk.parallelism") @DefaultValue("8") int bulkUploadParallelism,
+        @Name("upload.bulk.max.objects") @DefaultValue("1000") int bulkUploadMaxObjects,
+        @Name("presigned.url.expiry.seconds") @DefaultValue("3600") int presignedUrlExpirySeconds,
+        @Name("search.shards") @DefaultValue("4") int searchShards,
+        @Name("search.max.results") @DefaultValue("10000") int searchMaxResults,
+        @Name("search.timeout.millis") @DefaultValue("25000") long searchTimeoutMillis) {
+}
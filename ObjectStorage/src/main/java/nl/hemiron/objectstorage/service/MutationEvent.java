@@ -0,0 +1,30 @@
+package nl.hemiron.objectstorage.service;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Change of a bucket or object, published to RabbitMQ for downstream consumers such as indexers.
+ * Events are delivered at least once, consumers can recognise redeliveries by the id
+ */
+public record MutationEvent(String id, Type type, String bucketName, String objectName, UUID projectId, Long size, Instant timestamp) {
+
+    public enum Type {
+        BUCKET_CREATED, BUCKET_DELETED, OBJECT_UPLOADED, OBJECT_DELETED;
+
+        /**
+         * @return the suffix of the routing key of events of this type, e.g. object.uploaded
+         */
+        public String routingKey() {
+            return name().toLowerCase().replace('_', '.');
+        }
+    }
+
+    public static MutationEvent bucket(Type type, String bucketName, UUID projectId) {
+        return new MutationEvent(UUID.randomUUID().toString(), type, bucketName, null, projectId, null, Instant.now());
+    }
+
+    public static MutationEvent object(Type type, String bucketName, String objectName, Long size) {
+        return new MutationEvent(UUID.randomUUID().toString(), type, bucketName, objectName, null, size, Instant.now());
+    }
+}
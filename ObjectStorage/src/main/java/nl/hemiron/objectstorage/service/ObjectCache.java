@@ -0,0 +1,228 @@
+package nl.hemiron.objectstorage.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+
+/**
+ * Read-through cache of the content of small objects, keyed by bucket and object name.
+ * Entries are kept in memory up to a total amount of bytes. Entries evicted from memory move to files in a local
+ * directory (when configured), which are memory-mapped so reads are served from the page cache.
+ * Both tiers evict the least recently used entries first. Every entry carries the ETag it was read with,
+ * and is only served for a request whose statObject returned that same ETag
+ */
+@Log
+@Component
+public class ObjectCache {
+
+    private static final RateLimitedLog itemLog = new RateLimitedLog(log, 10, Duration.ofSeconds(10));
+
+    private record Key(String bucketName, String objectName) {
+    }
+
+    private record MemoryEntry(String etag, byte[] content) {
+    }
+
+    private record DiskEntry(String etag, Path file, ByteBuffer content) {
+    }
+
+    private final boolean enabled;
+
+    private final long maxObjectBytes;
+
+    private final Cache<Key, MemoryEntry> memory;
+
+    private final Cache<Key, DiskEntry> disk;
+
+    private final Path diskDirectory;
+
+    private final AtomicLong memoryBytes = new AtomicLong();
+
+    private final AtomicLong diskBytes = new AtomicLong();
+
+    private final Counter memoryHits;
+
+    private final Counter diskHits;
+
+    private final Counter misses;
+
+    public ObjectCache(@Value("${minio.object.cache.enabled:false}") boolean enabled,
+                       @Value("${minio.object.cache.max.object.bytes:1048576}") long maxObjectBytes,
+                       @Value("${minio.object.cache.memory.max.bytes:67108864}") long memoryMaxBytes,
+                       @Value("${minio.object.cache.disk.path:}") String diskPath,
+                       @Value("${minio.object.cache.disk.max.bytes:1073741824}") long diskMaxBytes,
+                       @Value("${minio.object.cache.disk.max.entries:10000}") long diskMaxEntries,
+                       MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxObjectBytes = maxObjectBytes;
+        this.memory = CacheBuilder.newBuilder()
+                .maximumWeight(memoryMaxBytes)
+                .<Key, MemoryEntry>weigher((key, entry) -> entry.content().length)
+                .removalListener(notification -> {
+                    memoryBytes.addAndGet(-notification.getValue().content().length);
+                    if (notification.getCause() == RemovalCause.SIZE) {
+                        spill(notification.getKey(), notification.getValue());
+                    }
+                })
+                .build();
+        this.diskDirectory = enabled && !diskPath.isBlank() ? prepareDiskDirectory(Path.of(diskPath)) : null;
+        // Every entry weighs at least an equal share of the capacity, so the disk tier never holds more than
+        // the max amount of entries (and thereby mappings)
+        long minimumDiskWeight = diskMaxBytes / Math.max(diskMaxEntries, 1);
+        this.disk = CacheBuilder.newBuilder()
+                .maximumWeight(diskMaxBytes)
+                .<Key, DiskEntry>weigher((key, entry) -> (int) Math.max(entry.content().capacity(), minimumDiskWeight))
+                .removalListener(notification -> {
+                    diskBytes.addAndGet(-notification.getValue().content().capacity());
+                    deleteQuietly(notification.getValue().file());
+                })
+                .build();
+
+        this.memoryHits = hitCounter(meterRegistry, "memory");
+        this.diskHits = hitCounter(meterRegistry, "disk");
+        this.misses = Counter.builder("objectstorage.object.cache.requests")
+                .description("Lookups of objects in the object cache")
+                .tag("result", "miss")
+                .tag("tier", "none")
+                .register(meterRegistry);
+        Gauge.builder("objectstorage.object.cache.size", memoryBytes, AtomicLong::get)
+                .description("Bytes of objects held by the object cache")
+                .baseUnit("bytes")
+                .tag("tier", "memory")
+                .register(meterRegistry);
+        Gauge.builder("objectstorage.object.cache.size", diskBytes, AtomicLong::get)
+                .description("Bytes of objects held by the object cache")
+                .baseUnit("bytes")
+                .tag("tier", "disk")
+                .register(meterRegistry);
+    }
+
+    private static Counter hitCounter(MeterRegistry meterRegistry, String tier) {
+        return Counter.builder("objectstorage.object.cache.requests")
+                .description("Lookups of objects in the object cache")
+                .tag("result", "hit")
+                .tag("tier", tier)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return whether objects of this size are admitted to the cache
+     */
+    public boolean isCacheable(long size) {
+        return enabled && size <= maxObjectBytes;
+    }
+
+    /**
+     * @return the cached content of the object if it was cached with the given ETag, otherwise null.
+     * The returned buffer is private to the caller
+     */
+    public ByteBuffer get(String bucketName, String objectName, String etag) {
+        var key = new Key(bucketName, objectName);
+        var memoryEntry = memory.getIfPresent(key);
+        if (memoryEntry != null) {
+            if (memoryEntry.etag().equals(etag)) {
+                memoryHits.increment();
+                return ByteBuffer.wrap(memoryEntry.content()).asReadOnlyBuffer();
+            }
+            memory.invalidate(key);
+        }
+        var diskEntry = disk.getIfPresent(key);
+        if (diskEntry != null) {
+            if (diskEntry.etag().equals(etag)) {
+                diskHits.increment();
+                return diskEntry.content().duplicate();
+            }
+            disk.invalidate(key);
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(String bucketName, String objectName, String etag, byte[] content) {
+        if (!isCacheable(content.length)) {
+            return;
+        }
+        var key = new Key(bucketName, objectName);
+        disk.invalidate(key);
+        memoryBytes.addAndGet(content.length);
+        memory.put(key, new MemoryEntry(etag, content));
+    }
+
+    public void invalidate(String bucketName, String objectName) {
+        var key = new Key(bucketName, objectName);
+        memory.invalidate(key);
+        disk.invalidate(key);
+    }
+
+    /**
+     * Invalidates all objects of the bucket whose name starts with the prefix, e.g. the objects of a directory
+     */
+    public void invalidatePrefix(String bucketName, String prefix) {
+        memory.asMap().keySet().removeIf(key -> key.bucketName().equals(bucketName) && key.objectName().startsWith(prefix));
+        disk.asMap().keySet().removeIf(key -> key.bucketName().equals(bucketName) && key.objectName().startsWith(prefix));
+    }
+
+    public void invalidateBucket(String bucketName) {
+        invalidatePrefix(bucketName, "");
+    }
+
+    private void spill(Key key, MemoryEntry entry) {
+        if (diskDirectory == null) {
+            return;
+        }
+        try {
+            var file = Files.createTempFile(diskDirectory, "object-", ".cache");
+            ByteBuffer content;
+            try (var channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(entry.content()));
+                content = channel.map(FileChannel.MapMode.READ_ONLY, 0, entry.content().length);
+            }
+            diskBytes.addAndGet(entry.content().length);
+            disk.put(key, new DiskEntry(entry.etag(), file, content));
+        } catch (IOException e) {
+            itemLog.log(Level.WARNING, () -> "Could not move object " + key.objectName() + " of bucket " + key.bucketName() + " to the disk cache: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the directory of the disk tier, removing the files left behind by a previous run
+     */
+    private static Path prepareDiskDirectory(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(file -> file.getFileName().toString().endsWith(".cache")).forEach(ObjectCache::deleteQuietly);
+            }
+            return directory;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not prepare object cache directory " + directory, e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            // A mapping that is still being read stays valid after its file is deleted
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            itemLog.log(Level.WARNING, () -> "Could not delete object cache file " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package nl.hemiron.objectstorage.service;
+
+import io.minio.Result;
+import io.minio.messages.Item;
+import nl.hemiron.objectstorage.exceptions.TooManyRequestsException;
+import nl.hemiron.objectstorage.model.response.ItemResponse;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Search of the objects under a prefix, of which only the matches are written as a stream.
+ * The keyspace is split in shards by the first level of directories under the prefix: the prefix itself is listed
+ * without recursion and every directory found there is listed recursively as a shard, with up to the amount of
+ * shards listed at once. Listers are only started for the shards found, and the lister of the prefix lists shards
+ * as well once it's done. Matches are written as soon as a shard finds them, so in no particular order, until the
+ * limit is reached or the search times out. A search served from the metadata index has its matches ready
+ */
+public class ObjectSearch {
+
+    @FunctionalInterface
+    public interface MatchWriter {
+        void write(ItemResponse item) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface Lister {
+        Iterable<Result<Item>> list(String prefix, boolean recursive);
+    }
+
+    /**
+     * Matches buffered for the writer, shards wait once it's full
+     */
+    private static final int BUFFERED_MATCHES = 1000;
+
+    private static final Object END = new Object();
+
+    private final List<ItemResponse> matches;
+
+    private final Lister lister;
+
+    private final SearchFilter filter;
+
+    private final int limit;
+
+    private final AsyncTaskExecutor executor;
+
+    private final int shards;
+
+    private final long timeoutMillis;
+
+    private Run run;
+
+    ObjectSearch(Lister lister, SearchFilter filter, int limit, AsyncTaskExecutor executor, int shards, long timeoutMillis) {
+        this.matches = null;
+        this.lister = lister;
+        this.filter = filter;
+        this.limit = limit;
+        this.executor = executor;
+        this.shards = Math.max(shards, 1);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    ObjectSearch(List<ItemResponse> matches) {
+        this.matches = matches;
+        this.lister = null;
+        this.filter = null;
+        this.limit = matches.size();
+        this.executor = null;
+        this.shards = 0;
+        this.timeoutMillis = 0;
+    }
+
+    /**
+     * Starts listing, so a search that can't run is rejected before its response is started.
+     * The timeout of the search starts now
+     *
+     * @throws TooManyRequestsException if the search executor is full
+     */
+    void start() {
+        if (matches != null || run != null) {
+            return;
+        }
+        run = new Run();
+        try {
+            run.start();
+        } catch (RejectedExecutionException e) {
+            throw new TooManyRequestsException("Too many searches running, try again later");
+        }
+    }
+
+    /**
+     * @return the amount of matches written
+     * @throws IOException if the search failed or timed out, the matches written so far stay
+     */
+    public int writeTo(MatchWriter writer) throws IOException {
+        if (matches != null) {
+            for (ItemResponse match : matches) {
+                writer.write(match);
+            }
+            return matches.size();
+        }
+        start();
+        try {
+            return run.writeTo(writer);
+        } finally {
+            // The limit was reached or the client went away, stop listing
+            run.cancel();
+        }
+    }
+
+    private final class Run {
+
+        private final BlockingQueue<String> shardPrefixes = new LinkedBlockingQueue<>();
+
+        private final BlockingQueue<Object> results = new ArrayBlockingQueue<>(BUFFERED_MATCHES);
+
+        // The listing of the prefix itself counts as a shard, so the search doesn't end before it found all shards
+        private final AtomicInteger pendingShards = new AtomicInteger(1);
+
+        private final Queue<Future<?>> tasks = new ConcurrentLinkedQueue<>();
+
+        private final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        // Listers started next to the lister of the prefix, only changed by that lister
+        private int shardListers;
+
+        // Set once the writer is done, nothing is read from the results anymore
+        private volatile boolean stopped;
+
+        private volatile boolean failed;
+
+        void start() {
+            tasks.add(executor.submit(this::listPrefix));
+        }
+
+        int writeTo(MatchWriter writer) throws IOException {
+            int written = 0;
+            while (written < limit) {
+                Object result;
+                try {
+                    result = results.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while searching objects");
+                }
+                if (result == null) {
+                    throw new IOException("Search of objects timed out after " + timeoutMillis + " ms");
+                }
+                if (result == END) {
+                    break;
+                }
+                if (result instanceof Exception e) {
+                    // The matches written so far stay, the stream ends early
+                    throw new IOException("Could not search objects: " + e.getMessage(), e);
+                }
+                writer.write((ItemResponse) result);
+                written++;
+            }
+            return written;
+        }
+
+        void cancel() {
+            stopped = true;
+            tasks.forEach(task -> task.cancel(false));
+        }
+
+        private void listPrefix() {
+            try {
+                for (Result<Item> itemResult : lister.list(filter.getPrefix(), false)) {
+                    if (isDone()) {
+                        return;
+                    }
+                    var item = itemResult.get();
+                    if (item.isDir()) {
+                        pendingShards.incrementAndGet();
+                        shardPrefixes.add(item.objectName());
+                        startShardLister();
+                    } else {
+                        offerIfMatch(item);
+                    }
+                }
+            } catch (Exception e) {
+                fail(e);
+            } finally {
+                shardDone();
+            }
+            listShards();
+        }
+
+        /**
+         * Starts a lister for a shard that was found, up to the amount of shards including the lister of the prefix
+         */
+        private void startShardLister() {
+            if (shardListers >= shards - 1) {
+                return;
+            }
+            try {
+                tasks.add(executor.submit(this::listShards));
+                shardListers++;
+            } catch (RejectedExecutionException e) {
+                // The executor is full, the listers that are running list the shard
+            }
+        }
+
+        private void listShards() {
+            try {
+                while (!isDone() && pendingShards.get() > 0) {
+                    var shardPrefix = shardPrefixes.poll(100, TimeUnit.MILLISECONDS);
+                    if (shardPrefix == null) {
+                        continue;
+                    }
+                    try {
+                        for (Result<Item> itemResult : lister.list(shardPrefix, true)) {
+                            if (isDone()) {
+                                return;
+                            }
+                            offerIfMatch(itemResult.get());
+                        }
+                    } catch (InterruptedException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        fail(e);
+                    } finally {
+                        shardDone();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void offerIfMatch(Item item) throws InterruptedException {
+            if (filter.matches(item.objectName(), item.size(), item.lastModified())) {
+                offer(MinioService.toItemResponse(item));
+            }
+        }
+
+        private void shardDone() {
+            if (pendingShards.decrementAndGet() == 0) {
+                offerQuietly(END);
+            }
+        }
+
+        private boolean isDone() {
+            return stopped || failed || isExpired();
+        }
+
+        private boolean isExpired() {
+            return System.nanoTime() - deadline > 0;
+        }
+
+        private void fail(Exception e) {
+            failed = true;
+            offerQuietly(e);
+        }
+
+        private void offer(Object result) throws InterruptedException {
+            while (!results.offer(result, 100, TimeUnit.MILLISECONDS)) {
+                // Nothing is read anymore, also when the writer never started
+                if (stopped || isExpired()) {
+                    return;
+                }
+            }
+        }
+
+        private void offerQuietly(Object result) {
+            try {
+                offer(result);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
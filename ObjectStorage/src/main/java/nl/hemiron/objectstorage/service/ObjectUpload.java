@@ -0,0 +1,9 @@
+package nl.hemiron.objectstorage.service;
+
+import org.springframework.core.io.InputStreamSource;
+
+/**
+ * An object to upload with its content, the content is only opened once the upload starts
+ */
+public record ObjectUpload(String objectName, long size, String contentType, InputStreamSource content) {
+}
@@ -0,0 +1,16 @@
+package nl.hemiron.objectstorage.service;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * Presigned URL to download an object directly from MinIO, valid until expiresAt
+ */
+public record PresignedUrl(String objectName, String url, ZonedDateTime expiresAt) {
+
+    /**
+     * URLs of a page of directory contents, with the token to request the next page (null if it's the last page)
+     */
+    public record Page(List<PresignedUrl> urls, String nextContinuationToken) {
+    }
+}
@@ -0,0 +1,70 @@
+package nl.hemiron.objectstorage.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps presigned download URLs for part of their validity, so hot objects aren't signed again for every request.
+ * An entry is kept at most half the validity of the URL, every URL handed out is still valid for at least
+ * the other half. Signing doesn't depend on the content of the object, so entries don't need invalidating.
+ * Ownership of the bucket is verified before every lookup
+ */
+@Component
+public class PresignedUrlCache {
+
+    private record Key(String bucketName, String objectName) {
+    }
+
+    private final Cache<Key, PresignedUrl> urls;
+
+    private final boolean enabled;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    public PresignedUrlCache(@Value("${minio.presigned.url.expiry.seconds:3600}") long expirySeconds,
+                             @Value("${minio.presigned.url.cache.seconds:900}") long cacheSeconds,
+                             @Value("${minio.presigned.url.cache.max.entries:100000}") long maxEntries,
+                             MeterRegistry meterRegistry) {
+        long retentionSeconds = Math.min(cacheSeconds, expirySeconds / 2);
+        this.enabled = retentionSeconds > 0;
+        this.urls = CacheBuilder.newBuilder()
+                .expireAfterWrite(Math.max(retentionSeconds, 1), TimeUnit.SECONDS)
+                .maximumSize(maxEntries)
+                .build();
+        this.hits = requestCounter(meterRegistry, "hit");
+        this.misses = requestCounter(meterRegistry, "miss");
+    }
+
+    private static Counter requestCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("objectstorage.presigned.url.cache.requests")
+                .description("Lookups of presigned download URLs in the cache")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return the cached URL of the object, or null if it has to be signed
+     */
+    public PresignedUrl get(String bucketName, String objectName) {
+        if (!enabled) {
+            return null;
+        }
+        var url = urls.getIfPresent(new Key(bucketName, objectName));
+        (url != null ? hits : misses).increment();
+        return url;
+    }
+
+    public void put(String bucketName, PresignedUrl url) {
+        if (enabled) {
+            urls.put(new Key(bucketName, url.objectName()), url);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package nl.hemiron.objectstorage.service;
+
+import nl.hemiron.objectstorage.exceptions.TooManyRequestsException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs tasks on a shared executor while limiting how many tasks of a single project run at once.
+ * Tasks over that limit wait in a per-project queue without holding a thread; when that queue is full as well,
+ * the task is rejected with a TooManyRequestsException. This way one project can't starve the others.
+ */
+public class ProjectBulkhead {
+
+    /**
+     * A task waiting for its turn, with its future to fail if the executor rejects it once its turn comes
+     */
+    private record Waiting(Runnable runnable, CompletableFuture<?> future) {
+    }
+
+    private static class Lane {
+        private int running;
+        private final Deque<Waiting> waiting = new ArrayDeque<>();
+    }
+
+    private final Map<UUID, Lane> lanes = new HashMap<>();
+
+    private final Executor executor;
+
+    private final int maxConcurrent;
+
+    private final int maxQueued;
+
+    public ProjectBulkhead(Executor executor, int maxConcurrent, int maxQueued) {
+        this.executor = executor;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+    }
+
+    public <T> CompletableFuture<T> supplyAsync(UUID projectId, Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        // Waiting tasks are started by the thread finishing another task, so the log context is taken here
+        Runnable runnable = LogContext.propagate(() -> {
+            try {
+                future.complete(task.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                release(projectId);
+            }
+        });
+
+        synchronized (this) {
+            var lane = lanes.computeIfAbsent(projectId, ignored -> new Lane());
+            if (lane.running >= maxConcurrent) {
+                if (lane.waiting.size() >= maxQueued) {
+                    future.completeExceptionally(new TooManyRequestsException(
+                            "Too many concurrent operations for project " + projectId + ", try again later"));
+                } else {
+                    lane.waiting.add(new Waiting(runnable, future));
+                }
+                return future;
+            }
+            lane.running++;
+        }
+
+        execute(projectId, runnable, future);
+        return future;
+    }
+
+    /**
+     * @return amount of tasks of the project that are running or waiting
+     */
+    public synchronized int getLoad(UUID projectId) {
+        var lane = lanes.get(projectId);
+        return lane == null ? 0 : lane.running + lane.waiting.size();
+    }
+
+    private void release(UUID projectId) {
+        Waiting next;
+        synchronized (this) {
+            var lane = lanes.get(projectId);
+            next = lane.waiting.poll();
+            if (next == null) {
+                lane.running--;
+                if (lane.running == 0) {
+                    lanes.remove(projectId);
+                }
+                return;
+            }
+        }
+        execute(projectId, next.runnable(), next.future());
+    }
+
+    private void execute(UUID projectId, Runnable runnable, CompletableFuture<?> future) {
+        try {
+            executor.execute(runnable);
+        } catch (RejectedExecutionException e) {
+            var exception = new TooManyRequestsException("Too many concurrent operations, try again later");
+            future.completeExceptionally(exception);
+            release(projectId);
+        }
+    }
+}
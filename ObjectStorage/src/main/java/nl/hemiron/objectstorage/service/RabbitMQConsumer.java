@@ -1,16 +1,61 @@
-//package nl.hemiron.objectstorage.service;
-//
-//import lombok.extern.java.Log;
-//import org.springframework.amqp.rabbit.annotation.RabbitListener;
-//import org.springframework.stereotype.Service;
-//
-//import java.util.logging.Level;
-//
-//@Service
-//@Log
-//public class RabbitMQConsumer {
-//    @RabbitListener(queues = "${rabbitmq.queue.name}")
-//    public void consume(String message) {
-//        log.log(Level.INFO, "Received message from RabbitMQ: " + message);
-//    }
-//}
+package nl.hemiron.objectstorage.service;
+
+import lombok.extern.java.Log;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.logging.Level;
+
+/**
+ * Worker mode: runs the jobs of the job queue on this instance. Every consumer runs one job at a time, and a job's
+ * message is only acknowledged once the job has finished, so the job is picked up by another worker when this one
+ * stops halfway. While a job runs, its progress is published as job updates at a fixed interval
+ */
+@Log
+@Service
+@ConditionalOnProperty(name = "rabbitmq.worker.enabled", havingValue = "true")
+public class RabbitMQConsumer {
+
+    private final JobService jobService;
+
+    private final JobQueue jobQueue;
+
+    private final TaskScheduler taskScheduler;
+
+    private final Duration progressInterval;
+
+    public RabbitMQConsumer(JobService jobService,
+                            JobQueue jobQueue,
+                            TaskScheduler taskScheduler,
+                            @Value("${rabbitmq.worker.progress.interval.millis:1000}") long progressIntervalMillis) {
+        this.jobService = jobService;
+        this.jobQueue = jobQueue;
+        this.taskScheduler = taskScheduler;
+        this.progressInterval = Duration.ofMillis(progressIntervalMillis);
+    }
+
+    @RabbitListener(queues = "${rabbitmq.queue.name:objectstorage.jobs}", containerFactory = "jobListenerContainerFactory")
+    public void consume(JobMessage message) {
+        log.log(Level.INFO, () -> "Received job " + message.id() + " (" + message.type() + " of bucket " + message.bucketName() + ") from RabbitMQ");
+        var job = jobService.receive(message);
+        var progress = taskScheduler.scheduleAtFixedRate(() -> publishUpdate(job), progressInterval);
+        try {
+            jobService.run(job);
+        } finally {
+            progress.cancel(false);
+        }
+        publishUpdate(job);
+    }
+
+    private void publishUpdate(Job job) {
+        try {
+            jobQueue.publishUpdate(JobUpdate.of(job));
+        } catch (Exception e) {
+            log.log(Level.WARNING, () -> "Could not publish progress of job " + job.getId() + ": " + e.getMessage());
+        }
+    }
+}
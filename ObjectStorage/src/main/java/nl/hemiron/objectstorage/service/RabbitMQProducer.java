@@ -1,31 +1,290 @@
 package nl.hemiron.objectstorage.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.java.Log;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
+/**
+ * Publishes mutation events to the RabbitMQ exchange without holding up the requests that cause them.
+ * Events are put in a bounded buffer which a single publisher thread drains in batches, waiting for the
+ * publisher confirms once per batch. Batches that can't be published, and events that don't fit in the buffer,
+ * are written to a local outbox by the publisher thread, which replays it once the broker accepts events again.
+ * Without an outbox those events are dropped and counted, as are events that don't fit in the overflow either
+ */
 @Log
 @Component
 public class RabbitMQProducer {
-//    @Value("${rabbitmq.exchange.name}")
-//    private String exchange;
-//
-//    @Value("${rabbitmq.routing.key}")
-//    private String routingKey;
-//
-//    private final RabbitTemplate rabbitTemplate;
-
-    @Autowired
-    public RabbitMQProducer(RabbitTemplate rabbitTemplate) {
-//        this.rabbitTemplate = rabbitTemplate;
-    }
-
-    public void sendMessage(String message) {
-        log.log(Level.INFO, "Sending message to RabbitMQ: " + message);
-//        rabbitTemplate.convertAndSend(exchange, routingKey, message);
+
+    private final RabbitTemplate rabbitTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final boolean enabled;
+
+    private final String exchange;
+
+    private final String routingKeyPrefix;
+
+    private final int batchSize;
+
+    private final long confirmTimeoutMillis;
+
+    private final long retryMillis;
+
+    private final String outboxPath;
+
+    private final BlockingQueue<MutationEvent> buffer;
+
+    // Events that didn't fit in the buffer, waiting for the publisher thread to write them to the outbox
+    private final BlockingQueue<MutationEvent> overflow;
+
+    private final Counter published;
+
+    private final Counter outboxed;
+
+    private final Counter dropped;
+
+    private EventOutbox outbox;
+
+    private Thread publisherThread;
+
+    private volatile boolean running;
+
+    private long retryAt;
+
+    public RabbitMQProducer(RabbitTemplate rabbitTemplate,
+                            ObjectMapper objectMapper,
+                            MeterRegistry meterRegistry,
+                            @Value("${rabbitmq.events.enabled:false}") boolean enabled,
+                            @Value("${rabbitmq.exchange.name:objectstorage}") String exchange,
+                            @Value("${rabbitmq.events.routing.key.prefix:objectstorage}") String routingKeyPrefix,
+                            @Value("${rabbitmq.events.buffer.capacity:10000}") int bufferCapacity,
+                            @Value("${rabbitmq.events.batch.size:100}") int batchSize,
+                            @Value("${rabbitmq.events.confirm.timeout.millis:5000}") long confirmTimeoutMillis,
+                            @Value("${rabbitmq.events.retry.millis:5000}") long retryMillis,
+                            @Value("${rabbitmq.events.outbox.path:}") String outboxPath) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.exchange = exchange;
+        this.routingKeyPrefix = routingKeyPrefix;
+        this.batchSize = batchSize;
+        this.confirmTimeoutMillis = confirmTimeoutMillis;
+        this.retryMillis = retryMillis;
+        this.outboxPath = outboxPath;
+        this.buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        this.overflow = new ArrayBlockingQueue<>(bufferCapacity);
+
+        this.published = eventCounter(meterRegistry, "published");
+        this.outboxed = eventCounter(meterRegistry, "outboxed");
+        this.dropped = eventCounter(meterRegistry, "dropped");
+        Gauge.builder("objectstorage.events.buffered", buffer, BlockingQueue::size)
+                .description("Mutation events waiting in memory to be published")
+                .register(meterRegistry);
+    }
+
+    private static Counter eventCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("objectstorage.events")
+                .description("Mutation events by what happened to them")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        if (!rabbitTemplate.getConnectionFactory().isSimplePublisherConfirms()) {
+            throw new IllegalStateException("Publishing events requires spring.rabbitmq.publisher-confirm-type=simple");
+        }
+        if (!outboxPath.isBlank()) {
+            outbox = new EventOutbox(Path.of(outboxPath));
+        }
+        running = true;
+        publisherThread = new Thread(this::publishLoop, "event-publisher");
+        publisherThread.setDaemon(true);
+        publisherThread.start();
+    }
+
+    /**
+     * Publishes the remaining buffered events, or moves them to the outbox when the broker doesn't accept them
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        if (publisherThread == null) {
+            return;
+        }
+        running = false;
+        publisherThread.join(TimeUnit.SECONDS.toMillis(30));
+        if (outbox != null) {
+            outbox.close();
+        }
+    }
+
+    /**
+     * Hands the event to the publisher thread, never blocking the caller on the broker or the outbox.
+     * When the buffer is full the publisher thread writes the event to the outbox instead
+     */
+    public void publish(MutationEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (!buffer.offer(event) && !overflow.offer(event)) {
+            dropped.increment();
+        }
+    }
+
+    private void publishLoop() {
+        List<MutationEvent> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty() || !overflow.isEmpty()) {
+            try {
+                storeOverflow(batch);
+                var event = buffer.poll(1, TimeUnit.SECONDS);
+                if (event == null) {
+                    replayOutbox();
+                    continue;
+                }
+                batch.add(event);
+                buffer.drainTo(batch, batchSize - 1);
+                if (System.currentTimeMillis() < retryAt || !send(batch)) {
+                    store(batch);
+                }
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    /**
+     * Publishes the events and waits for the broker to confirm all of them
+     *
+     * @return whether the broker confirmed the events
+     */
+    private boolean send(List<MutationEvent> events) {
+        var messages = new ArrayList<Message>(events.size());
+        var routingKeys = new ArrayList<String>(events.size());
+        for (MutationEvent event : events) {
+            var properties = new MessageProperties();
+            properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+            properties.setMessageId(event.id());
+            messages.add(new Message(serialize(event).getBytes(StandardCharsets.UTF_8), properties));
+            routingKeys.add(routingKeyPrefix + "." + event.type().routingKey());
+        }
+        try {
+            rabbitTemplate.invoke(operations -> {
+                for (int i = 0; i < messages.size(); i++) {
+                    operations.send(exchange, routingKeys.get(i), messages.get(i));
+                }
+                operations.waitForConfirmsOrDie(confirmTimeoutMillis);
+                return null;
+            });
+            published.increment(events.size());
+            return true;
+        } catch (Exception e) {
+            log.log(Level.WARNING, () -> "Could not publish " + events.size() + " events, retrying in " + retryMillis + " ms: " + e.getMessage());
+            retryAt = System.currentTimeMillis() + retryMillis;
+            return false;
+        }
+    }
+
+    private void storeOverflow(List<MutationEvent> batch) {
+        while (overflow.drainTo(batch, batchSize) > 0) {
+            store(batch);
+            batch.clear();
+        }
+    }
+
+    private void store(List<MutationEvent> events) {
+        if (outbox == null) {
+            dropped.increment(events.size());
+            return;
+        }
+        try {
+            outbox.append(events.stream().map(this::serialize).toList());
+            outboxed.increment(events.size());
+        } catch (IOException e) {
+            log.log(Level.SEVERE, () -> "Could not write " + events.size() + " events to the outbox: " + e.getMessage());
+            dropped.increment(events.size());
+        }
+    }
+
+    /**
+     * Publishes the events of the outbox while the buffer is idle. A replay that fails is continued from the
+     * start later, so events can be published more than once
+     */
+    private void replayOutbox() {
+        if (outbox == null || !running || System.currentTimeMillis() < retryAt) {
+            return;
+        }
+        try {
+            var file = outbox.takeForReplay();
+            if (file == null) {
+                return;
+            }
+            long replayed = 0;
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                List<MutationEvent> batch = new ArrayList<>(batchSize);
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    try {
+                        batch.add(objectMapper.readValue(line, MutationEvent.class));
+                    } catch (JsonProcessingException e) {
+                        log.log(Level.WARNING, () -> "Skipping unreadable event in the outbox: " + e.getOriginalMessage());
+                        dropped.increment();
+                        continue;
+                    }
+                    if (batch.size() == batchSize) {
+                        if (!send(batch)) {
+                            return;
+                        }
+                        replayed += batch.size();
+                        batch.clear();
+                    }
+                }
+                if (!batch.isEmpty() && !send(batch)) {
+                    return;
+                }
+                replayed += batch.size();
+            }
+            outbox.replayed(file);
+            long published = replayed;
+            log.log(Level.INFO, () -> "Published " + published + " events from the outbox");
+        } catch (IOException e) {
+            log.log(Level.SEVERE, () -> "Could not replay the event outbox: " + e.getMessage());
+            retryAt = System.currentTimeMillis() + retryMillis;
+        }
+    }
+
+    private String serialize(MutationEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize event " + event.id(), e);
+        }
     }
 }
@@ -0,0 +1,55 @@
+package nl.hemiron.objectstorage.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logs at most the given amount of messages per interval, for messages about single items (e.g. one object of a
+ * bulk upload or one cache file). A failing bucket or disk fails every item, which would otherwise flood the log.
+ * Messages beyond the limit are only counted, the count is added to the first message logged in a later interval.
+ * Messages are only formatted when they are logged
+ */
+public class RateLimitedLog {
+
+    private final Logger logger;
+
+    private final int maxPerInterval;
+
+    private final long intervalNanos;
+
+    private final AtomicLong intervalStart = new AtomicLong(System.nanoTime());
+
+    private final AtomicLong loggedInInterval = new AtomicLong();
+
+    private final AtomicLong suppressed = new AtomicLong();
+
+    public RateLimitedLog(Logger logger, int maxPerInterval, Duration interval) {
+        this.logger = logger;
+        this.maxPerInterval = maxPerInterval;
+        this.intervalNanos = interval.toNanos();
+    }
+
+    public void log(Level level, Supplier<String> message) {
+        if (!logger.isLoggable(level)) {
+            return;
+        }
+        var now = System.nanoTime();
+        var start = intervalStart.get();
+        if (now - start > intervalNanos && intervalStart.compareAndSet(start, now)) {
+            loggedInInterval.set(0);
+        }
+        if (loggedInInterval.incrementAndGet() > maxPerInterval) {
+            suppressed.incrementAndGet();
+            return;
+        }
+        var suppressedBefore = suppressed.getAndSet(0);
+        if (suppressedBefore == 0) {
+            logger.log(level, message);
+        } else {
+            logger.log(level, () -> message.get() + " (" + suppressedBefore + " similar messages suppressed)");
+        }
+    }
+}
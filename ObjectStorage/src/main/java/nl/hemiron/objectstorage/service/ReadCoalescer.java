@@ -0,0 +1,120 @@
+package nl.hemiron.objectstorage.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.minio.errors.*;
+import nl.hemiron.objectstorage.exceptions.InternalServerErrorException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Lets concurrent identical reads share a single call to MinIO. The first caller of a read makes the call, callers
+ * of the same read arriving while it's in flight wait for it and get the same result or exception. Nothing is kept
+ * once the call is done, so a read never returns a result of a call that finished before it started.
+ * Callers wait for the call of another caller up to their deadline, minio.read.coalescing.wait.millis by default.
+ * Shared results must not be changed by the callers. Each read is counted in objectstorage.reads, tagged with the
+ * operation and whether it was executed or collapsed into another caller's call
+ */
+@Component
+public class ReadCoalescer {
+
+    private record Key(String operation, Object read) {
+    }
+
+    private final ConcurrentMap<Key, CompletableFuture<MinioMetrics.MinioCall<?>>> inFlight = new ConcurrentHashMap<>();
+
+    private final boolean enabled;
+
+    private final long waitMillis;
+
+    private final MeterRegistry meterRegistry;
+
+    public ReadCoalescer(@Value("${minio.read.coalescing.enabled:true}") boolean enabled,
+                         @Value("${minio.read.coalescing.wait.millis:300000}") long waitMillis,
+                         MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.waitMillis = waitMillis;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @return the default deadline, as System.nanoTime, of a read starting now
+     */
+    public long deadline() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+    }
+
+    /**
+     * Executes the read with the default deadline
+     */
+    public <T> T execute(String operation, Object read, MinioMetrics.MinioCall<T> call) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        return execute(operation, read, deadline(), call);
+    }
+
+    /**
+     * @param read     identifies the read within the operation, e.g. a record of the bucket, prefix and project
+     * @param deadline the System.nanoTime until which the caller waits for the call of another caller
+     * @throws InternalServerErrorException if the call of another caller didn't finish before the deadline
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String operation, Object read, long deadline, MinioMetrics.MinioCall<T> call) throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
+        if (!enabled) {
+            return call.call();
+        }
+
+        var key = new Key(operation, read);
+        var flight = new CompletableFuture<MinioMetrics.MinioCall<?>>();
+        var leader = inFlight.putIfAbsent(key, flight);
+        if (leader != null) {
+            counter(operation, "collapsed").increment();
+            MinioMetrics.MinioCall<?> outcome;
+            try {
+                outcome = leader.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InternalServerErrorException("Interrupted while waiting for " + operation);
+            } catch (TimeoutException e) {
+                throw new InternalServerErrorException("Timed out waiting for " + operation + " of a concurrent request");
+            } catch (ExecutionException e) {
+                throw (IllegalStateException) e.getCause();
+            }
+            // The outcome replays the result or exception of the leader's call
+            return ((MinioMetrics.MinioCall<T>) outcome).call();
+        }
+
+        counter(operation, "executed").increment();
+        try {
+            T result = call.call();
+            flight.complete(() -> result);
+            return result;
+        } catch (Exception e) {
+            flight.complete(() -> {
+                throw e;
+            });
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+            // Only completes the flight when the call ended with a Throwable that isn't an Exception (e.g. an
+            // Error), which isn't shared: the waiting callers fail with an IllegalStateException instead
+            flight.completeExceptionally(new IllegalStateException("Could not complete " + operation));
+        }
+    }
+
+    private Counter counter(String operation, String result) {
+        return Counter.builder("objectstorage.reads")
+                .description("Reads from MinIO that could be shared with concurrent identical reads")
+                .tag("operation", operation)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,98 @@
+package nl.hemiron.objectstorage.service;
+
+import java.time.ZonedDateTime;
+import java.util.regex.Pattern;
+
+/**
+ * Filters of an object search, all of them optional. A glob without a slash is matched against the last part of
+ * the object name (e.g. *.pdf), a glob with a slash against the whole object name. In a glob * matches within a
+ * directory, ** across directories and ? a single character. Sizes are in bytes and inclusive
+ */
+public final class SearchFilter {
+
+    private final String prefix;
+
+    private final Pattern glob;
+
+    private final boolean matchesWholeName;
+
+    private final Long minSize;
+
+    private final Long maxSize;
+
+    private final ZonedDateTime modifiedSince;
+
+    public SearchFilter(String prefix, String glob, Long minSize, Long maxSize, ZonedDateTime modifiedSince) {
+        if ((minSize != null && minSize < 0) || (maxSize != null && maxSize < 0)) {
+            throw new IllegalArgumentException("Sizes can't be negative");
+        }
+        if (minSize != null && maxSize != null && minSize > maxSize) {
+            throw new IllegalArgumentException("Minimum size " + minSize + " is larger than maximum size " + maxSize);
+        }
+        this.prefix = prefix != null ? prefix : "";
+        this.glob = glob != null && !glob.isEmpty() ? toPattern(glob) : null;
+        this.matchesWholeName = glob != null && glob.contains("/");
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.modifiedSince = modifiedSince;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return false if none of the objects in a directory of the given total size can match
+     */
+    public boolean mayMatchIn(long totalSize) {
+        return minSize == null || totalSize >= minSize;
+    }
+
+    /**
+     * @return whether the object matches the filters, directory markers never match
+     */
+    public boolean matches(String objectName, long size, ZonedDateTime lastModified) {
+        if (!objectName.startsWith(prefix) || objectName.endsWith("/")) {
+            return false;
+        }
+        if ((minSize != null && size < minSize) || (maxSize != null && size > maxSize)) {
+            return false;
+        }
+        if (modifiedSince != null && (lastModified == null || lastModified.isBefore(modifiedSince))) {
+            return false;
+        }
+        if (glob == null) {
+            return true;
+        }
+        var name = matchesWholeName ? objectName : objectName.substring(objectName.lastIndexOf('/') + 1);
+        return glob.matcher(name).matches();
+    }
+
+    private static Pattern toPattern(String glob) {
+        var regex = new StringBuilder();
+        var literal = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c != '*' && c != '?') {
+                literal.append(c);
+                continue;
+            }
+            if (!literal.isEmpty()) {
+                regex.append(Pattern.quote(literal.toString()));
+                literal.setLength(0);
+            }
+            if (c == '?') {
+                regex.append("[^/]");
+            } else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                regex.append(".*");
+                i++;
+            } else {
+                regex.append("[^/]*");
+            }
+        }
+        if (!literal.isEmpty()) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+}
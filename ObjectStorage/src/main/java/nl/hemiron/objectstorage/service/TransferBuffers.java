@@ -0,0 +1,92 @@
+package nl.hemiron.objectstorage.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.LongConsumer;
+
+/**
+ * Copies object content to clients through a pool of reusable buffers of the configured size.
+ * Every write to the client is a full buffer, so the servlet container writes large chunks to the socket
+ * instead of the 8 KiB chunks of InputStream.transferTo
+ */
+@Component
+public class TransferBuffers {
+
+    private final int bufferBytes;
+
+    private final BlockingQueue<byte[]> pool;
+
+    public TransferBuffers(@Value("${minio.download.buffer.bytes:65536}") int bufferBytes,
+                           @Value("${minio.download.buffer.pool.size:64}") int poolSize) {
+        this.bufferBytes = bufferBytes;
+        this.pool = new ArrayBlockingQueue<>(Math.max(poolSize, 1));
+    }
+
+    /**
+     * Copies the input to the output, reporting every write. The input is always closed, also when the client
+     * aborts the download and the write fails, so the connection to MinIO is released right away
+     *
+     * @return the amount of bytes written
+     */
+    public long copy(InputStream input, OutputStream output, LongConsumer written) throws IOException {
+        var buffer = acquire();
+        long total = 0;
+        try (input) {
+            int filled;
+            do {
+                filled = input.readNBytes(buffer, 0, buffer.length);
+                if (filled > 0) {
+                    output.write(buffer, 0, filled);
+                    written.accept(filled);
+                    total += filled;
+                }
+            } while (filled == buffer.length);
+            return total;
+        } finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * Writes the remaining content of the buffer to the output, e.g. an object from the object cache.
+     * Buffers without a backing array (memory-mapped files) are copied through a pooled buffer
+     */
+    public long write(ByteBuffer content, OutputStream output, LongConsumer written) throws IOException {
+        long total = content.remaining();
+        if (content.hasArray()) {
+            output.write(content.array(), content.arrayOffset() + content.position(), content.remaining());
+            content.position(content.limit());
+            written.accept(total);
+            return total;
+        }
+        var buffer = acquire();
+        try {
+            while (content.hasRemaining()) {
+                int length = Math.min(buffer.length, content.remaining());
+                content.get(buffer, 0, length);
+                output.write(buffer, 0, length);
+                written.accept(length);
+            }
+            return total;
+        } finally {
+            release(buffer);
+        }
+    }
+
+    private byte[] acquire() {
+        var buffer = pool.poll();
+        return buffer != null ? buffer : new byte[bufferBytes];
+    }
+
+    private void release(byte[] buffer) {
+        // Beyond the size of the pool buffers are left to the garbage collector
+        pool.offer(buffer);
+    }
+}
@@ -0,0 +1,25 @@
+package nl.hemiron.objectstorage.service;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * State of a multipart upload the client uploads directly to MinIO. The object is split in parts of partSize bytes,
+ * uploadedParts are the parts MinIO has received so far and partUrls are presigned PUT URLs for the other parts,
+ * valid until urlsExpireAt
+ */
+public record UploadSession(String uploadId,
+                            String objectName,
+                            long size,
+                            long partSize,
+                            int partCount,
+                            List<UploadedPart> uploadedParts,
+                            List<PartUrl> partUrls,
+                            ZonedDateTime urlsExpireAt) {
+
+    public record UploadedPart(int partNumber, String etag, long size) {
+    }
+
+    public record PartUrl(int partNumber, String url) {
+    }
+}
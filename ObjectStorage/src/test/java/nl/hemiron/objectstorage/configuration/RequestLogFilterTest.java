@@ -0,0 +1,29 @@
+package nl.hemiron.objectstorage.configuration;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class RequestLogFilterTest {
+
+    @Test
+    void doFilter_WithContextPath_PutsBucketOfRequestInMdc() throws Exception {
+        // Arrange
+        var request = new MockHttpServletRequest("GET", "/api/buckets/mybucket/objects/cmVhZG1lLnR4dA==");
+        request.setContextPath("/api");
+        var bucketName = new AtomicReference<String>();
+        var sut = new RequestLogFilter();
+
+        // Act
+        sut.doFilter(request, new MockHttpServletResponse(), (filteredRequest, response) -> bucketName.set(MDC.get(RequestLogFilter.BUCKET)));
+
+        // Assert
+        assertThat(bucketName.get(), is("mybucket"));
+    }
+}
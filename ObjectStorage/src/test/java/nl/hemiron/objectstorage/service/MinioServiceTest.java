@@ -1,33 +1,73 @@
 package nl.hemiron.objectstorage.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.minio.GetObjectArgs;
 import io.minio.GetObjectResponse;
+import io.minio.ListObjectsArgs;
+import io.minio.ListPartsResponse;
 import io.minio.MinioClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.PutObjectArgs;
 import io.minio.Result;
+import io.minio.StatObjectResponse;
+import io.minio.UploadPartResponse;
 import io.minio.errors.*;
+import io.minio.messages.Bucket;
 import io.minio.messages.Item;
+import io.minio.messages.ListPartsResult;
+import io.minio.messages.Part;
 import io.minio.messages.Tags;
 import nl.hemiron.objectstorage.exceptions.BucketNotEmptyException;
 import nl.hemiron.objectstorage.exceptions.BucketNotFoundException;
+import nl.hemiron.objectstorage.exceptions.ConflictException;
 import nl.hemiron.objectstorage.exceptions.NotFoundException;
+import nl.hemiron.objectstorage.exceptions.TooManyRequestsException;
+import nl.hemiron.objectstorage.model.response.DirectoryContentsPage;
+import nl.hemiron.objectstorage.model.response.ItemResponse;
 import okhttp3.Headers;
+import okhttp3.OkHttpClient;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.ZipInputStream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -35,13 +75,55 @@ class MinioServiceTest {
 
     private MinioService sut;
 
+    private ProjectBulkhead minioBulkhead;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private MetadataIndex metadataIndex;
+
     @Mock
     private MinioClient minioClient;
 
+    @Mock
+    private MinioMultipartClient minioMultipartClient;
+
     @BeforeEach
     void beforeEach() {
-        sut = new MinioService();
+        minioBulkhead = new ProjectBulkhead(Executors.newFixedThreadPool(4), 2, 1);
+        meterRegistry = new SimpleMeterRegistry();
+        metadataIndex = new MetadataIndex(true, "", 60, 1000, 10_000, "local", meterRegistry);
+        var properties = new Binder(new MapConfigurationPropertySource(Map.of(
+                "minio.upload.part.size", String.valueOf(5 * 1024 * 1024),
+                "minio.upload.parallelism", "2",
+                "minio.upload.buffer.max.bytes", String.valueOf(15 * 1024 * 1024),
+                "minio.delete.parallelism", "2",
+                "minio.delete.inline.timeout.millis", "5000",
+                "minio.archive.prefetch", "2",
+                "minio.upload.bulk.parallelism", "2",
+                "minio.search.shards", "2",
+                "minio.search.max.results", "1000",
+                "minio.search.timeout.millis", "1000"))).bindOrCreate("minio", MinioServiceProperties.class);
+        sut = new MinioService(
+                properties,
+                new BucketOwnershipCache(100, 60, 5),
+                new BucketUsageService(900),
+                new ConcurrentTaskExecutor(Executors.newFixedThreadPool(2)),
+                new JobService(new ProjectBulkhead(Executors.newFixedThreadPool(2), 1, 10), 60, "local", new JobQueue(null, "objectstorage.jobs", "objectstorage.jobs.updates")),
+                new ConcurrentTaskExecutor(Executors.newFixedThreadPool(2)),
+                minioBulkhead,
+                new MinioMetrics(meterRegistry),
+                new OkHttpClient(),
+                new ConcurrentTaskExecutor(Executors.newFixedThreadPool(2)),
+                new ConcurrentTaskExecutor(Executors.newFixedThreadPool(2)),
+                new ObjectCache(true, 1024, 1024 * 1024, "", 0, 1, meterRegistry),
+                new RabbitMQProducer(null, new ObjectMapper(), meterRegistry, false, "objectstorage", "objectstorage", 10, 10, 1000, 1000, ""),
+                new PresignedUrlCache(3600, 900, 1000, meterRegistry),
+                metadataIndex,
+                new ConcurrentTaskExecutor(Executors.newFixedThreadPool(4)),
+                new ReadCoalescer(true, 300_000, meterRegistry),
+                new ConcurrentTaskExecutor(Executors.newFixedThreadPool(2)));
         sut.minioClient = this.minioClient;
+        sut.minioMultipartClient = this.minioMultipartClient;
     }
 
     @Test
@@ -123,6 +205,403 @@ class MinioServiceTest {
         assertThat(actual.amountOfObjects, is(2));
     }
 
+    @Test
+    void getBucketByName_CalledTwice_VerifiesBucketWithMinioOnlyOnce()
+            throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        // Arrange
+        var projectId = UUID.fromString("7e403ff3-6ddf-4591-a8e6-2b97dbc10636");
+        var tags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "7e403ff3-6ddf-4591-a8e6-2b97dbc10636");}});
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(any())).thenReturn(tags);
+        when(this.minioClient.listObjects(any())).thenReturn(new ArrayList<>());
+
+        // Act
+        sut.getBucketByName("lcab-bucket", projectId);
+        sut.getBucketByName("lcab-bucket", projectId);
+
+        // Assert
+        verify(this.minioClient, times(1)).bucketExists(any());
+        verify(this.minioClient, times(1)).getBucketTags(any());
+    }
+
+    @Test
+    void getBucketByName_WhenBucketDoesNotExist_CachesMissingBucket()
+            throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        // Arrange
+        when(this.minioClient.bucketExists(any())).thenReturn(false);
+
+        // Act
+        assertThrows(BucketNotFoundException.class, () -> sut.getBucketByName("mybucket", null));
+        assertThrows(BucketNotFoundException.class, () -> sut.getBucketByName("mybucket", null));
+
+        // Assert
+        verify(this.minioClient, times(1)).bucketExists(any());
+    }
+
+    @Test
+    void getBucketByName_AfterRecordedUpload_ServesUpdatedUsageWithoutListingAgain()
+            throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        // Arrange
+        var projectId = UUID.fromString("7e403ff3-6ddf-4591-a8e6-2b97dbc10636");
+        var tags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "7e403ff3-6ddf-4591-a8e6-2b97dbc10636");}});
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(any())).thenReturn(tags);
+        when(this.minioClient.listObjects(any())).thenReturn(new ArrayList<>());
+        sut.getBucketByName("lcab-bucket", projectId);
+
+        // Act
+        sut.recordUpload("lcab-bucket", "report.pdf", 1_024L);
+        var actual = sut.getBucketByName("lcab-bucket", projectId);
+
+        // Assert
+        assertThat(actual.size, is(1_024L));
+        assertThat(actual.amountOfObjects, is(1));
+        verify(this.minioClient, times(1)).listObjects(any());
+    }
+
+    @Test
+    void getBucketByName_WithUploadRecordedWhileListing_AddsUploadToListedUsage()
+            throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        // Arrange
+        var projectId = UUID.fromString("7e403ff3-6ddf-4591-a8e6-2b97dbc10636");
+        var tags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "7e403ff3-6ddf-4591-a8e6-2b97dbc10636");}});
+        Iterable<Result<Item>> bucketObjects = () -> Stream.of("b.png", "d.png")
+                .map(name -> {
+                    if (name.equals("d.png")) {
+                        // The listing has passed b.png already, so it won't see a.png
+                        sut.recordUpload("lcab-bucket", "a.png", 1_024L);
+                    }
+                    return new Result<>(itemNamed(name, 100L));
+                })
+                .iterator();
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(any())).thenReturn(tags);
+        when(this.minioClient.listObjects(any())).thenReturn(bucketObjects);
+
+        // Act
+        var actual = sut.getBucketByName("lcab-bucket", projectId);
+
+        // Assert
+        assertThat(actual.size, is(1_224L));
+        assertThat(actual.amountOfObjects, is(3));
+    }
+
+    @Test
+    void getBucketByName_WithUploadRecordedAheadOfListing_CountsUploadOnce()
+            throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        // Arrange
+        var projectId = UUID.fromString("7e403ff3-6ddf-4591-a8e6-2b97dbc10636");
+        var tags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "7e403ff3-6ddf-4591-a8e6-2b97dbc10636");}});
+        Iterable<Result<Item>> bucketObjects = () -> Stream.of("b.png", "d.png")
+                .map(name -> {
+                    if (name.equals("b.png")) {
+                        // The listing has yet to reach d.png, so it counts the upload itself
+                        sut.recordUpload("lcab-bucket", "d.png", 100L);
+                    }
+                    return new Result<>(itemNamed(name, 100L));
+                })
+                .iterator();
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(any())).thenReturn(tags);
+        when(this.minioClient.listObjects(any())).thenReturn(bucketObjects);
+
+        // Act
+        var actual = sut.getBucketByName("lcab-bucket", projectId);
+
+        // Assert
+        assertThat(actual.size, is(200L));
+        assertThat(actual.amountOfObjects, is(2));
+    }
+
+    @Test
+    void getBucketByName_AfterDeletingDirectory_SubtractsDeletedObjectsWithoutListingAgain() throws Exception {
+        // Arrange
+        var projectId = UUID.fromString("7e403ff3-6ddf-4591-a8e6-2b97dbc10636");
+        var tags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "7e403ff3-6ddf-4591-a8e6-2b97dbc10636");}});
+        var bucketObjects = new ArrayList<Result<Item>>();
+        bucketObjects.add(new Result<>(itemNamed("readme.txt", 50L)));
+        bucketObjects.add(new Result<>(itemNamed("videos/intro.mp4", 100L)));
+        bucketObjects.add(new Result<>(itemNamed("videos/outro.mp4", 200L)));
+        var directoryObjects = new ArrayList<Result<Item>>(bucketObjects.subList(1, 3));
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(any())).thenReturn(tags);
+        when(this.minioClient.listObjects(any())).thenReturn(bucketObjects, directoryObjects);
+        when(this.minioClient.removeObjects(any())).thenReturn(new ArrayList<>());
+        sut.getBucketByName("lcab-bucket", projectId);
+
+        // Act
+        sut.deleteDirectoryAsync("lcab-bucket", "dmlkZW9zLw==", projectId).getCompletion().get(5, TimeUnit.SECONDS);
+        var actual = sut.getBucketByName("lcab-bucket", projectId);
+
+        // Assert
+        assertThat(actual.size, is(50L));
+        assertThat(actual.amountOfObjects, is(1));
+        verify(this.minioClient, times(2)).listObjects(any());
+    }
+
+    @Test
+    void getBuckets_WithBucketsOfOtherProjects_ReturnsOnlyBucketsOfProject()
+            throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        // Arrange
+        var projectId = UUID.fromString("7e403ff3-6ddf-4591-a8e6-2b97dbc10636");
+        var ownTags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "7e403ff3-6ddf-4591-a8e6-2b97dbc10636");}});
+        var otherTags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "d51a6212-61fc-4bd6-9abe-4165d4db0ed6");}});
+        var buckets = new ArrayList<Bucket>();
+        buckets.add(bucketNamed("own-bucket"));
+        buckets.add(bucketNamed("other-bucket"));
+        when(this.minioClient.listBuckets()).thenReturn(buckets);
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(argThat(args -> args != null && args.bucket().equals("own-bucket")))).thenReturn(ownTags);
+        when(this.minioClient.getBucketTags(argThat(args -> args != null && args.bucket().equals("other-bucket")))).thenReturn(otherTags);
+        when(this.minioClient.listObjects(any())).thenReturn(new ArrayList<>());
+
+        // Act
+        var actual = sut.getBuckets(projectId);
+
+        // Assert
+        assertThat(actual.size(), is(1));
+        assertThat(actual.get(0).name, is("own-bucket"));
+        assertThat(actual.get(0).complete, is(true));
+    }
+
+    @Test
+    void uploadObjectStream_WithObjectSmallerThanPartSize_PutsObjectInSingleRequest()
+            throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        // Arrange
+        var projectId = UUID.fromString("7e403ff3-6ddf-4591-a8e6-2b97dbc10636");
+        var tags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "7e403ff3-6ddf-4591-a8e6-2b97dbc10636");}});
+        var stream = new ByteArrayInputStream("eeyore".getBytes());
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(any())).thenReturn(tags);
+        when(this.minioClient.putObject(any())).thenReturn(
+                new ObjectWriteResponse(new Headers.Builder().build(), "mybucket", "", "eeyore.txt", "etag", null));
+
+        // Act
+        sut.uploadObjectStream("mybucket", "ZWV5b3JlLnR4dA==", stream, 6L, "text/plain", projectId);
+
+        // Assert
+        verify(this.minioClient, times(1)).putObject(argThat(args ->
+                args.object().equals("eeyore.txt") && args.objectSize() == 6L));
+    }
+
+    @Test
+    void uploadObjectStream_WithSeveralObjectsLargerThanBufferBudget_ReleasesPartBuffersAfterEachUpload()
+            throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        // Arrange
+        var projectId = UUID.fromString("7e403ff3-6ddf-4591-a8e6-2b97dbc10636");
+        var tags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "7e403ff3-6ddf-4591-a8e6-2b97dbc10636");}});
+        // Four parts of 5MiB, while the budget holds three
+        var content = new byte[18 * 1024 * 1024];
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(any())).thenReturn(tags);
+        when(this.minioMultipartClient.createMultipartUpload(any(), any(), any())).thenReturn("upload-1");
+        when(this.minioMultipartClient.uploadPartAsync(any(), any(), any(), any(), anyInt(), anyInt())).thenAnswer(invocation ->
+                CompletableFuture.completedFuture(new UploadPartResponse(new Headers.Builder().build(), "mybucket", "",
+                        "movie.mp4", "upload-1", invocation.getArgument(5), "etag")));
+        when(this.minioMultipartClient.completeMultipartUpload(any(), any(), any(), any())).thenReturn(
+                new ObjectWriteResponse(new Headers.Builder().build(), "mybucket", "", "movie.mp4", "etag", null));
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            sut.uploadObjectStream("mybucket", StringUtils.encodeBase64("movie.mp4"), new ByteArrayInputStream(content),
+                    -1L, "video/mp4", projectId);
+        }
+
+        // Assert
+        verify(this.minioMultipartClient, times(12)).uploadPartAsync(any(), any(), any(), any(), anyInt(), anyInt());
+        verify(this.minioMultipartClient, times(3)).completeMultipartUpload(any(), any(), any(), any());
+    }
+
+    @Test
+    void uploadObjectStream_WithSizeAboveMaximumObjectSize_ThrowsIllegalArgumentException()
+            throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        // Arrange
+        var projectId = UUID.fromString("7e403ff3-6ddf-4591-a8e6-2b97dbc10636");
+        var tags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "7e403ff3-6ddf-4591-a8e6-2b97dbc10636");}});
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(any())).thenReturn(tags);
+
+        // Act
+        assertThrows(IllegalArgumentException.class, () -> sut.uploadObjectStream("mybucket", StringUtils.encodeBase64("movie.mp4"),
+                new ByteArrayInputStream(new byte[0]), 6L * 1024 * 1024 * 1024 * 1024, "video/mp4", projectId));
+
+        // Assert
+        verify(this.minioMultipartClient, times(0)).createMultipartUpload(any(), any(), any());
+    }
+
+    @Test
+    void deleteBucketAsync_WithForceDelete_RemovesObjectsInBatchesAndThenTheBucket()
+            throws Exception {
+        // Arrange
+        var projectId = UUID.fromString("7e403ff3-6ddf-4591-a8e6-2b97dbc10636");
+        var tags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "7e403ff3-6ddf-4591-a8e6-2b97dbc10636");}});
+        var bucketObjects = new ArrayList<Result<Item>>();
+        for (int i = 0; i < 2_500; i++) {
+            bucketObjects.add(new Result<>(itemNamed("object-" + i, false)));
+        }
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(any())).thenReturn(tags);
+        when(this.minioClient.listObjects(any())).thenReturn(bucketObjects);
+        when(this.minioClient.removeObjects(any())).thenReturn(new ArrayList<>());
+
+        // Act
+        var actual = sut.deleteBucketAsync("mybucket", true, projectId).get();
+
+        // Assert
+        assertThat(actual.getJobId(), is(nullValue()));
+        verify(this.minioClient, times(3)).removeObjects(any());
+        verify(this.minioClient, times(1)).removeBucket(any());
+    }
+
+    @Test
+    void deleteDirectoryAsync_WithObjectsInDirectory_RemovesThemInAJob() throws Exception {
+        // Arrange
+        var projectId = UUID.fromString("7e403ff3-6ddf-4591-a8e6-2b97dbc10636");
+        var tags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "7e403ff3-6ddf-4591-a8e6-2b97dbc10636");}});
+        var directoryObjects = new ArrayList<Result<Item>>();
+        directoryObjects.add(new Result<>(itemNamed("videos/intro.mp4", false)));
+        directoryObjects.add(new Result<>(itemNamed("videos/outro.mp4", false)));
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(any())).thenReturn(tags);
+        when(this.minioClient.listObjects(any())).thenReturn(directoryObjects);
+        when(this.minioClient.removeObjects(any())).thenReturn(new ArrayList<>());
+
+        // Act
+        var job = sut.deleteDirectoryAsync("mybucket", "dmlkZW9zLw==", projectId);
+        job.getCompletion().get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertThat(job.getTarget(), is("videos/"));
+        assertThat(job.getStatus(), is(Job.Status.COMPLETED));
+        assertThat(job.getProcessedObjects().get(), is(2L));
+        verify(this.minioClient, times(1)).removeObjects(any());
+    }
+
+    @Test
+    void getUploadSession_WithSomePartsUploaded_ReturnsUrlsForTheOtherParts() throws Exception {
+        // Arrange
+        var projectId = UUID.fromString("7e403ff3-6ddf-4591-a8e6-2b97dbc10636");
+        var tags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "7e403ff3-6ddf-4591-a8e6-2b97dbc10636");}});
+        var listPartsResult = mock(ListPartsResult.class);
+        var uploadedParts = List.of(uploadedPart(1), uploadedPart(3));
+        when(listPartsResult.partList()).thenReturn(uploadedParts);
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(any())).thenReturn(tags);
+        when(this.minioClient.getPresignedObjectUrl(any())).thenReturn("http://minio/url");
+        when(this.minioMultipartClient.listParts("mybucket", "videos/movie.mp4", "upload-1", 1000, 0))
+                .thenReturn(new ListPartsResponse(Headers.of(), "mybucket", null, "videos/movie.mp4", listPartsResult));
+
+        // Act
+        var actual = sut.getUploadSession("mybucket", "dmlkZW9zL21vdmllLm1wNA==", "upload-1", 18L * 1024 * 1024, projectId);
+
+        // Assert
+        assertThat(actual.partSize(), is(5L * 1024 * 1024));
+        assertThat(actual.partCount(), is(4));
+        assertThat(actual.uploadedParts().size(), is(2));
+        assertThat(actual.partUrls().stream().map(UploadSession.PartUrl::partNumber).toList(), is(List.of(2, 4)));
+    }
+
+    @Test
+    void completeUploadSession_WhenLastPartsAreMissing_ThrowsConflictExceptionWithoutCompleting() throws Exception {
+        // Arrange
+        var projectId = UUID.fromString("7e403ff3-6ddf-4591-a8e6-2b97dbc10636");
+        var tags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "7e403ff3-6ddf-4591-a8e6-2b97dbc10636");}});
+        var listPartsResult = mock(ListPartsResult.class);
+        var uploadedParts = List.of(uploadedPart(1), uploadedPart(2));
+        when(listPartsResult.partList()).thenReturn(uploadedParts);
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(any())).thenReturn(tags);
+        when(this.minioMultipartClient.listParts("mybucket", "videos/movie.mp4", "upload-1", 1000, 0))
+                .thenReturn(new ListPartsResponse(Headers.of(), "mybucket", null, "videos/movie.mp4", listPartsResult));
+
+        // Act
+        var exception = assertThrows(ConflictException.class,
+                () -> sut.completeUploadSession("mybucket", "dmlkZW9zL21vdmllLm1wNA==", "upload-1", 18L * 1024 * 1024, projectId));
+
+        // Assert
+        assertThat(exception.getMessage(), is("Part 3 of 4 of upload upload-1 has not been uploaded"));
+        verify(this.minioMultipartClient, times(0)).completeMultipartUpload(any(), any(), any(), any());
+    }
+
+    @Test
+    void getDownloadUrl_CalledTwiceForSameObject_SignsUrlOnlyOnce() throws Exception {
+        // Arrange
+        var projectId = UUID.fromString("7e403ff3-6ddf-4591-a8e6-2b97dbc10636");
+        var tags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "7e403ff3-6ddf-4591-a8e6-2b97dbc10636");}});
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(any())).thenReturn(tags);
+        when(this.minioClient.getPresignedObjectUrl(any())).thenReturn("http://minio/url");
+
+        // Act
+        var first = sut.getDownloadUrl("mybucket", "dmlkZW9zL21vdmllLm1wNA==", projectId);
+        var second = sut.getDownloadUrl("mybucket", "dmlkZW9zL21vdmllLm1wNA==", projectId);
+
+        // Assert
+        assertThat(second.url(), is(first.url()));
+        assertThat(second.expiresAt(), is(first.expiresAt()));
+        verify(this.minioClient, times(1)).getPresignedObjectUrl(any());
+    }
+
+    @Test
+    void deleteObjects_WithDirectory_DeletesDirectoryContentsAndReturnsSummary()
+            throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        // Arrange
+        var projectId = UUID.fromString("7e403ff3-6ddf-4591-a8e6-2b97dbc10636");
+        var tags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "7e403ff3-6ddf-4591-a8e6-2b97dbc10636");}});
+        var directoryObjects = new ArrayList<Result<Item>>();
+        directoryObjects.add(new Result<>(itemNamed("videos/intro.mp4", false)));
+        directoryObjects.add(new Result<>(itemNamed("videos/outro.mp4", false)));
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(any())).thenReturn(tags);
+        when(this.minioClient.listObjects(any())).thenReturn(directoryObjects);
+        when(this.minioClient.removeObjects(any())).thenReturn(new ArrayList<>());
+
+        // Act
+        var actual = sut.deleteObjects("mybucket", new String[]{"dmlkZW9zLw==", "ZWV5b3JlLnBuZw=="}, projectId);
+
+        // Assert
+        assertThat(actual.deleted(), is(4L));
+        assertThat(actual.failed(), is(0L));
+        verify(this.minioClient, times(1)).removeObjects(any());
+    }
+
+    @Test
+    void createBucketAsync_WhenProjectHasTooManyCallsInFlight_FailsWithTooManyRequestsException() throws Exception {
+        // Arrange
+        var projectId = UUID.randomUUID();
+        var release = new CountDownLatch(1);
+        for (int i = 0; i < 3; i++) {
+            minioBulkhead.supplyAsync(projectId, () -> release.await(5, TimeUnit.SECONDS));
+        }
+
+        // Act
+        var future = sut.createBucketAsync("mybucket", projectId);
+        var otherProjectFuture = minioBulkhead.supplyAsync(UUID.randomUUID(), () -> "done");
+
+        // Assert
+        var exception = assertThrows(ExecutionException.class, future::get);
+        assertThat(exception.getCause() instanceof TooManyRequestsException, is(true));
+        assertThat(otherProjectFuture.get(5, TimeUnit.SECONDS), is("done"));
+        release.countDown();
+    }
+
+    @Test
+    void getBucketByName_WhenBucketDoesNotExist_RecordsBucketExistsCall()
+            throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        // Arrange
+        when(this.minioClient.bucketExists(any())).thenReturn(false);
+
+        // Act
+        assertThrows(BucketNotFoundException.class, () -> sut.getBucketByName("mybucket", null));
+
+        // Assert
+        var timer = meterRegistry.get("minio.requests")
+                .tag("operation", "bucketExists")
+                .tag("outcome", "success")
+                .timer();
+        assertThat(timer.count(), is(1L));
+    }
+
 //    @Test
 //    void deleteBucket_WithObjectsInBucketAndNoForceDelete_ThrowsBucketNotEmptyException() throws ServerException, InsufficientDataException, ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException {
 //        // Arrange
@@ -172,6 +651,23 @@ class MinioServiceTest {
         assertThat(actualObject, is("healthForYou/rightToAccess/a18d2f3b-7809-4efb-865c-113a1105fa98.pdf"));
     }
 
+    @Test
+    void getObject_WithOffsetAndLength_RequestsOnlyThatByteRange()
+            throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        // Arrange
+        var projectId = UUID.fromString("7e403ff3-6ddf-4591-a8e6-2b97dbc10636");
+        var tags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "7e403ff3-6ddf-4591-a8e6-2b97dbc10636");}});
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(any())).thenReturn(tags);
+
+        // Act
+        sut.getObject("mybucket", "ZWV5b3JlLnR4dA==", projectId, 100L, 50L);
+
+        // Assert
+        verify(this.minioClient, times(1)).getObject(argThat(args ->
+                args.object().equals("eeyore.txt") && args.offset() == 100L && args.length() == 50L));
+    }
+
     @Test
     void getDirectoryContents_WithDirectoryThatDoesNotExist_ThrowsNotFoundException()
             throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
@@ -187,7 +683,9 @@ class MinioServiceTest {
         var actual = sut.getDirectoryContents(
                         "mybucket",
                         "dGhpc0RpcmVjdG9yeURvZXNOb3RFeGlzdC8=",
-                        projectId);
+                        projectId,
+                        null,
+                        1000).getItems();
 
         // Assert
         assertThat(actual.size(), is(0));
@@ -231,7 +729,7 @@ class MinioServiceTest {
         when(this.minioClient.listObjects(any())).thenReturn(bucketObjects);
 
         // Act
-        var actual = sut.getDirectoryContents("mybucket", "Lw==", projectId);
+        var actual = sut.getDirectoryContents("mybucket", "Lw==", projectId, null, 1000).getItems();
 
         // Assert
         assertThat(actual.size(), is(2));
@@ -242,4 +740,397 @@ class MinioServiceTest {
         assertThat(second.isDir(), is(true));
     }
 
+    @Test
+    void getDirectoryContents_WithMoreItemsThanLimit_ReturnsContinuationTokenAfterLastItem()
+            throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        // Arrange
+        var bucketObjects = new ArrayList<Result<Item>>();
+        bucketObjects.add(new Result<>(itemNamed("a.png", false)));
+        bucketObjects.add(new Result<>(itemNamed("b/", true)));
+        bucketObjects.add(new Result<>(itemNamed("c.png", false)));
+
+        var projectId = UUID.fromString("60964af5-9f15-42ec-a958-d32c5c217ea0");
+        var tags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "60964af5-9f15-42ec-a958-d32c5c217ea0");}});
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(any())).thenReturn(tags);
+        when(this.minioClient.listObjects(any())).thenReturn(bucketObjects);
+
+        // Act
+        var actual = sut.getDirectoryContents("mybucket", "Lw==", projectId, null, 2);
+
+        // Assert
+        assertThat(actual.getItems().size(), is(2));
+        assertThat(StringUtils.decodeBase64(actual.getNextContinuationToken()).startsWith("b/"), is(true));
+        verify(this.minioClient).listObjects(argThat(args -> args.maxKeys() == 3));
+    }
+
+    @Test
+    void getDirectoryContents_AfterBucketWasCrawled_ServesListingFromMetadataIndex()
+            throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException, InterruptedException {
+        // Arrange
+        var bucketObjects = new ArrayList<Result<Item>>();
+        bucketObjects.add(new Result<>(itemNamed("readme.txt", false)));
+        bucketObjects.add(new Result<>(itemNamed("videos/2023/outro.mp4", false)));
+        bucketObjects.add(new Result<>(itemNamed("videos/intro.mp4", false)));
+
+        var projectId = UUID.fromString("60964af5-9f15-42ec-a958-d32c5c217ea0");
+        var tags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "60964af5-9f15-42ec-a958-d32c5c217ea0");}});
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(any())).thenReturn(tags);
+        when(this.minioClient.listObjects(any())).thenReturn(bucketObjects);
+
+        // The first listing falls back to MinIO and requests a crawl of the bucket
+        sut.getDirectoryContents("mybucket", StringUtils.encodeBase64("videos/"), projectId, null, 1000);
+        sut.crawlMetadataIndex();
+        // The crawl runs on the bucketScanExecutor
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("objectstorage.index.buckets").gauge().value() < 1 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // Act
+        var actual = sut.getDirectoryContents("mybucket", StringUtils.encodeBase64("videos/"), projectId, null, 1000).getItems();
+
+        // Assert
+        assertThat(actual.size(), is(2));
+        assertThat(actual.get(0).getObjectName(), is("videos/2023/"));
+        assertThat(actual.get(0).isDir(), is(true));
+        assertThat(actual.get(1).getObjectName(), is("videos/intro.mp4"));
+        assertThat(actual.get(1).isDir(), is(false));
+        verify(this.minioClient, times(2)).listObjects(any());
+    }
+
+    @Test
+    void streamDirectoryContents_AfterBucketWasCrawled_StreamsListingFromMetadataIndex()
+            throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException, InterruptedException {
+        // Arrange
+        var bucketObjects = new ArrayList<Result<Item>>();
+        bucketObjects.add(new Result<>(itemNamed("readme.txt", false)));
+        bucketObjects.add(new Result<>(itemNamed("videos/2023/outro.mp4", false)));
+        bucketObjects.add(new Result<>(itemNamed("videos/intro.mp4", false)));
+
+        var projectId = UUID.fromString("60964af5-9f15-42ec-a958-d32c5c217ea0");
+        var tags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "60964af5-9f15-42ec-a958-d32c5c217ea0");}});
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(any())).thenReturn(tags);
+        when(this.minioClient.listObjects(any())).thenReturn(bucketObjects);
+
+        // The first listing falls back to MinIO and requests a crawl of the bucket
+        sut.getDirectoryContents("mybucket", StringUtils.encodeBase64("/"), projectId, null, 1000);
+        sut.crawlMetadataIndex();
+        // The crawl runs on the bucketScanExecutor
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("objectstorage.index.buckets").gauge().value() < 1 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // Act
+        var actual = new ArrayList<ItemResponse>();
+        sut.streamDirectoryContents("mybucket", StringUtils.encodeBase64("/"), projectId, null).forEach(actual::add);
+
+        // Assert
+        assertThat(actual.size(), is(2));
+        assertThat(actual.get(0).getObjectName(), is("readme.txt"));
+        assertThat(actual.get(1).getObjectName(), is("videos/"));
+        assertThat(actual.get(1).isDir(), is(true));
+        verify(this.minioClient, times(2)).listObjects(any());
+    }
+
+    @Test
+    void getDirectoryContents_WithConcurrentIdenticalRequests_ListsDirectoryOnlyOnce() throws Exception {
+        // Arrange
+        var bucketObjects = new ArrayList<Result<Item>>();
+        bucketObjects.add(new Result<>(itemNamed("videos/intro.mp4", false)));
+        bucketObjects.add(new Result<>(itemNamed("videos/outro.mp4", false)));
+
+        var projectId = UUID.fromString("60964af5-9f15-42ec-a958-d32c5c217ea0");
+        var tags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "60964af5-9f15-42ec-a958-d32c5c217ea0");}});
+        var listingReleased = new CountDownLatch(1);
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(any())).thenReturn(tags);
+        when(this.minioClient.listObjects(any())).thenAnswer(invocation -> {
+            listingReleased.await(5, TimeUnit.SECONDS);
+            return bucketObjects;
+        });
+        var executor = Executors.newFixedThreadPool(3);
+
+        // Act
+        var requests = new ArrayList<Future<DirectoryContentsPage>>();
+        for (int i = 0; i < 3; i++) {
+            requests.add(executor.submit(() -> sut.getDirectoryContents("mybucket", StringUtils.encodeBase64("videos/"), projectId, null, 1000)));
+        }
+        // Keep the first listing in flight until the other requests are waiting for it
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (readCount("collapsed") < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        listingReleased.countDown();
+        List<DirectoryContentsPage> actual = new ArrayList<>();
+        for (var request : requests) {
+            actual.add(request.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        // Assert
+        for (var page : actual) {
+            assertThat(page.getItems().size(), is(2));
+        }
+        assertThat(readCount("executed"), is(1.0));
+        assertThat(readCount("collapsed"), is(2.0));
+        verify(this.minioClient, times(1)).listObjects(any());
+    }
+
+    private double readCount(String result) {
+        var counter = meterRegistry.find("objectstorage.reads").tag("result", result).counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    @Test
+    void searchObjects_WithGlobAndMinimumSize_StreamsOnlyMatchesFromAllShards() throws Exception {
+        // Arrange
+        var prefixObjects = new ArrayList<Result<Item>>();
+        prefixObjects.add(new Result<>(itemNamed("2023/", true)));
+        prefixObjects.add(new Result<>(itemNamed("2024/", true)));
+        prefixObjects.add(new Result<>(itemNamed("summary.pdf", 20_000_000L)));
+        var shardObjects = new ArrayList<Result<Item>>();
+        shardObjects.add(new Result<>(itemNamed("2023/small.pdf", 1_000L)));
+        shardObjects.add(new Result<>(itemNamed("2023/large.pdf", 15_000_000L)));
+        shardObjects.add(new Result<>(itemNamed("2023/large.docx", 15_000_000L)));
+
+        var projectId = UUID.fromString("7e403ff3-6ddf-4591-a8e6-2b97dbc10636");
+        var tags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "7e403ff3-6ddf-4591-a8e6-2b97dbc10636");}});
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(any())).thenReturn(tags);
+        when(this.minioClient.listObjects(argThat(args -> args != null && !args.recursive()))).thenReturn(prefixObjects);
+        when(this.minioClient.listObjects(argThat(args -> args != null && args.recursive()))).thenAnswer(invocation ->
+                invocation.<ListObjectsArgs>getArgument(0).prefix().equals("2023/") ? shardObjects : List.of());
+        var filter = new SearchFilter("", "*.pdf", 10_000_000L, null, null);
+
+        // Act
+        var search = sut.searchObjects("mybucket", filter, 100, projectId);
+        var actual = new ArrayList<String>();
+        search.writeTo(item -> actual.add(item.getObjectName()));
+
+        // Assert
+        actual.sort(String::compareTo);
+        assertThat(actual, is(List.of("2023/large.pdf", "summary.pdf")));
+        verify(this.minioClient, times(2)).listObjects(argThat(args -> args != null && args.recursive()));
+    }
+
+    @Test
+    void searchObjects_WhenListingOutlastsTimeout_FailsSearch() throws Exception {
+        // Arrange
+        var projectId = UUID.fromString("7e403ff3-6ddf-4591-a8e6-2b97dbc10636");
+        var tags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "7e403ff3-6ddf-4591-a8e6-2b97dbc10636");}});
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(any())).thenReturn(tags);
+        when(this.minioClient.listObjects(any())).thenAnswer(invocation -> {
+            Thread.sleep(3_000);
+            return List.of();
+        });
+        var filter = new SearchFilter("", "*.pdf", null, null, null);
+        var search = sut.searchObjects("mybucket", filter, 100, projectId);
+
+        // Act
+        var exception = assertThrows(IOException.class, () -> search.writeTo(item -> {
+        }));
+
+        // Assert
+        assertThat(exception.getMessage(), is("Search of objects timed out after 1000 ms"));
+    }
+
+    @Test
+    void uploadObjects_WithInvalidObjectName_UploadsOtherObjectsAndReportsFailure()
+            throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        // Arrange
+        var projectId = UUID.fromString("7e403ff3-6ddf-4591-a8e6-2b97dbc10636");
+        var tags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "7e403ff3-6ddf-4591-a8e6-2b97dbc10636");}});
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(any())).thenReturn(tags);
+        when(this.minioClient.putObject(any())).thenAnswer(invocation -> {
+            PutObjectArgs args = invocation.getArgument(0);
+            return new ObjectWriteResponse(new Headers.Builder().build(), "mybucket", "", args.object(), "etag-" + args.object(), null);
+        });
+        var uploads = List.of(
+                new ObjectUpload("docs/eeyore.txt", 6L, "text/plain", () -> new ByteArrayInputStream("eeyore".getBytes())),
+                new ObjectUpload("docs/../pooh.txt", 4L, "text/plain", () -> new ByteArrayInputStream("pooh".getBytes())),
+                new ObjectUpload("docs/piglet.txt", 6L, null, () -> new ByteArrayInputStream("piglet".getBytes())));
+
+        // Act
+        var actual = sut.uploadObjects("mybucket", uploads, projectId);
+
+        // Assert
+        assertThat(actual.uploaded(), is(2L));
+        assertThat(actual.failed(), is(1L));
+        assertThat(actual.objects().get(0).etag(), is("etag-docs/eeyore.txt"));
+        assertThat(actual.objects().get(1).reason(), is("Invalid object name"));
+        assertThat(actual.objects().get(2).etag(), is("etag-docs/piglet.txt"));
+        verify(this.minioClient, times(1)).bucketExists(any());
+        verify(this.minioClient, times(2)).putObject(any());
+    }
+
+    @Test
+    void getCachedObject_CalledTwiceWithSameETag_GetsObjectFromMinioOnlyOnce()
+            throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        // Arrange
+        var projectId = UUID.fromString("7e403ff3-6ddf-4591-a8e6-2b97dbc10636");
+        var tags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "7e403ff3-6ddf-4591-a8e6-2b97dbc10636");}});
+        var stat = new StatObjectResponse(new Headers.Builder()
+                .add("ETag", "\"9a0364b9e99bb480dd25e1f0284c8555\"")
+                .add("Content-Length", "6")
+                .add("Last-Modified", "Thu, 11 May 2023 10:00:00 GMT")
+                .build(), "mybucket", "", "eeyore.txt");
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(any())).thenReturn(tags);
+        when(this.minioClient.getObject(any())).thenReturn(new GetObjectResponse(new Headers.Builder().build(),
+                "mybucket", "", "eeyore.txt", new ByteArrayInputStream("eeyore".getBytes())));
+
+        // Act
+        sut.getCachedObject("mybucket", "ZWV5b3JlLnR4dA==", projectId, stat);
+        var actual = sut.getCachedObject("mybucket", "ZWV5b3JlLnR4dA==", projectId, stat);
+
+        // Assert
+        var content = new byte[actual.remaining()];
+        actual.get(content);
+        assertThat(new String(content), is("eeyore"));
+        verify(this.minioClient, times(1)).getObject(any());
+        assertThat(meterRegistry.get("objectstorage.object.cache.requests").tag("result", "hit").tag("tier", "memory").counter().count(), is(1.0));
+    }
+
+    @Test
+    void getDirectoryArchive_WithObjectsInDirectory_WritesEntriesRelativeToDirectory() throws Exception {
+        // Arrange
+        var projectId = UUID.fromString("60964af5-9f15-42ec-a958-d32c5c217ea0");
+        var tags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "60964af5-9f15-42ec-a958-d32c5c217ea0");}});
+        var directoryObjects = new ArrayList<Result<Item>>();
+        directoryObjects.add(new Result<>(itemNamed("videos/intro.txt", false)));
+        directoryObjects.add(new Result<>(itemNamed("videos/2023/outro.txt", false)));
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(any())).thenReturn(tags);
+        when(this.minioClient.listObjects(any())).thenReturn(directoryObjects);
+        when(this.minioClient.getObject(any())).thenAnswer(invocation -> {
+            GetObjectArgs args = invocation.getArgument(0);
+            return new GetObjectResponse(new Headers.Builder().build(), "mybucket", "", args.object(),
+                    new ByteArrayInputStream(args.object().getBytes()));
+        });
+        var outputStream = new ByteArrayOutputStream();
+
+        // Act
+        sut.getDirectoryArchive("mybucket", "dmlkZW9zLw==", projectId).writeTo(outputStream);
+
+        // Assert
+        var entries = new HashMap<String, String>();
+        try (var zip = new ZipInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            for (var entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.put(entry.getName(), new String(zip.readAllBytes()));
+            }
+        }
+        assertThat(entries.size(), is(2));
+        assertThat(entries.get("intro.txt"), is("videos/intro.txt"));
+        assertThat(entries.get("2023/outro.txt"), is("videos/2023/outro.txt"));
+    }
+
+    @Test
+    void getDirectoryArchive_WhenClientAborts_ClosesEveryOpenedObject() throws Exception {
+        // Arrange
+        var projectId = UUID.fromString("60964af5-9f15-42ec-a958-d32c5c217ea0");
+        var tags = Tags.newBucketTags(new HashMap<>(){{put("projectId", "60964af5-9f15-42ec-a958-d32c5c217ea0");}});
+        var directoryObjects = new ArrayList<Result<Item>>();
+        directoryObjects.add(new Result<>(itemNamed("videos/intro.txt", false)));
+        directoryObjects.add(new Result<>(itemNamed("videos/middle.txt", false)));
+        directoryObjects.add(new Result<>(itemNamed("videos/outro.txt", false)));
+        var opened = new AtomicInteger();
+        var closed = new AtomicInteger();
+        when(this.minioClient.bucketExists(any())).thenReturn(true);
+        when(this.minioClient.getBucketTags(any())).thenReturn(tags);
+        when(this.minioClient.listObjects(any())).thenReturn(directoryObjects);
+        when(this.minioClient.getObject(any())).thenAnswer(invocation -> {
+            GetObjectArgs args = invocation.getArgument(0);
+            opened.incrementAndGet();
+            return new GetObjectResponse(new Headers.Builder().build(), "mybucket", "", args.object(),
+                    new ByteArrayInputStream(args.object().getBytes()) {
+                        @Override
+                        public void close() {
+                            closed.incrementAndGet();
+                        }
+                    });
+        });
+        var outputStream = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                // Abort once the prefetched objects are opened
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (opened.get() < 2 && System.nanoTime() < deadline) {
+                    Thread.onSpinWait();
+                }
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        // Act
+        assertThrows(IOException.class, () -> sut.getDirectoryArchive("mybucket", "dmlkZW9zLw==", projectId).writeTo(outputStream));
+
+        // Assert
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (closed.get() < opened.get() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(opened.get() >= 2, is(true));
+        assertThat(closed.get(), is(opened.get()));
+    }
+
+    private static Part uploadedPart(int partNumber) {
+        var part = mock(Part.class);
+        when(part.partNumber()).thenReturn(partNumber);
+        when(part.etag()).thenReturn("etag-" + partNumber);
+        when(part.partSize()).thenReturn(5L * 1024 * 1024);
+        return part;
+    }
+
+    private static Item itemNamed(String name, boolean isDir) {
+        return new Item() {
+            @Override
+            public String objectName() {
+                return name;
+            }
+
+            @Override
+            public boolean isDir() {
+                return isDir;
+            }
+
+            @Override
+            public ZonedDateTime lastModified() {
+                return ZonedDateTime.now();
+            }
+        };
+    }
+
+    private static Item itemNamed(String name, long size) {
+        return new Item() {
+            @Override
+            public String objectName() {
+                return name;
+            }
+
+            @Override
+            public long size() {
+                return size;
+            }
+
+            @Override
+            public ZonedDateTime lastModified() {
+                return ZonedDateTime.now();
+            }
+        };
+    }
+
+    private static Bucket bucketNamed(String name) {
+        return new Bucket() {
+            @Override
+            public String name() {
+                return name;
+            }
+        };
+    }
 }
@@ -0,0 +1,46 @@
+package nl.hemiron.objectstorage.service;
+
+import nl.hemiron.objectstorage.exceptions.TooManyRequestsException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProjectBulkheadTest {
+
+    @Test
+    void supplyAsync_WhenExecutorRejectsWaitingTask_FailsItsFutureWithTooManyRequestsException() {
+        // Arrange
+        List<Runnable> accepted = new ArrayList<>();
+        Executor executor = task -> {
+            // Takes the first task only, every task after it is rejected
+            if (!accepted.isEmpty()) {
+                throw new RejectedExecutionException("Executor is full");
+            }
+            accepted.add(task);
+        };
+        var sut = new ProjectBulkhead(executor, 1, 10);
+        var projectId = UUID.randomUUID();
+        var running = sut.supplyAsync(projectId, () -> "first");
+        var waiting = sut.supplyAsync(projectId, () -> "second");
+
+        // Act
+        accepted.get(0).run();
+
+        // Assert
+        assertThat(running.join(), is("first"));
+        var exception = assertThrows(ExecutionException.class, () -> waiting.get(1, TimeUnit.SECONDS));
+        assertThat(exception.getCause(), instanceOf(TooManyRequestsException.class));
+        assertThat(sut.getLoad(projectId), is(0));
+    }
+}
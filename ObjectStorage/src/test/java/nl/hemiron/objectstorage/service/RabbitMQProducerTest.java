@@ -0,0 +1,160 @@
+package nl.hemiron.objectstorage.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RabbitMQProducerTest {
+
+    @TempDir
+    Path outboxDirectory;
+
+    private RabbitTemplate rabbitTemplate;
+
+    private RabbitOperations operations;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private RabbitMQProducer sut;
+
+    @BeforeEach
+    void beforeEach() {
+        var connectionFactory = mock(ConnectionFactory.class);
+        when(connectionFactory.isSimplePublisherConfirms()).thenReturn(true);
+        rabbitTemplate = mock(RabbitTemplate.class);
+        when(rabbitTemplate.getConnectionFactory()).thenReturn(connectionFactory);
+        operations = mock(RabbitOperations.class);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void afterEach() throws Exception {
+        sut.stop();
+    }
+
+    @Test
+    void publish_WhenBufferIsFull_WritesEventToOutboxOnPublisherThread() throws Exception {
+        // Arrange
+        var sendStarted = new CountDownLatch(1);
+        var sendReleased = new CountDownLatch(1);
+        when(rabbitTemplate.invoke(any())).thenAnswer(invocation -> {
+            sendStarted.countDown();
+            sendReleased.await(5, TimeUnit.SECONDS);
+            throw new AmqpException("Connection refused");
+        });
+        sut = createProducer(1, 60_000);
+        sut.start();
+        sut.publish(event("a.txt"));
+        sendStarted.await(5, TimeUnit.SECONDS);
+
+        // Act
+        sut.publish(event("b.txt"));
+        sut.publish(event("c.txt"));
+
+        // Assert
+        // The publisher is still waiting for the broker, so the caller didn't write anything
+        assertThat(Files.exists(outboxDirectory.resolve("outbox.jsonl")), is(false));
+        sendReleased.countDown();
+        awaitUntil(() -> eventCount("outboxed") == 3);
+        assertThat(Files.readAllLines(outboxDirectory.resolve("outbox.jsonl")).size(), is(3));
+        assertThat(eventCount("dropped"), is(0.0));
+    }
+
+    @Test
+    void publish_WhenBrokerRecovers_ReplaysEventsFromOutbox() throws Exception {
+        // Arrange
+        var brokerDown = new AtomicBoolean(true);
+        when(rabbitTemplate.invoke(any())).thenAnswer(invocation -> {
+            if (brokerDown.get()) {
+                throw new AmqpException("Connection refused");
+            }
+            RabbitOperations.OperationsCallback<?> callback = invocation.getArgument(0);
+            return callback.doInRabbit(operations);
+        });
+        sut = createProducer(10, 100);
+        sut.start();
+        sut.publish(event("a.txt"));
+        awaitUntil(() -> eventCount("outboxed") == 1);
+
+        // Act
+        brokerDown.set(false);
+
+        // Assert
+        awaitUntil(() -> eventCount("published") == 1);
+        verify(operations, times(1)).send(eq("objectstorage"), eq("objectstorage.object.uploaded"), any(Message.class));
+        awaitUntil(() -> !Files.exists(outboxDirectory.resolve("outbox-replay.jsonl")));
+        assertThat(Files.exists(outboxDirectory.resolve("outbox.jsonl")), is(false));
+    }
+
+    @Test
+    void publish_WhenBrokerNacksBatch_WritesWholeBatchToOutbox() throws Exception {
+        // Arrange
+        when(rabbitTemplate.invoke(any())).thenAnswer(invocation -> {
+            RabbitOperations.OperationsCallback<?> callback = invocation.getArgument(0);
+            return callback.doInRabbit(operations);
+        });
+        doThrow(new AmqpException("Nacked")).when(operations).waitForConfirmsOrDie(anyLong());
+        sut = createProducer(10, 60_000);
+        // Buffered before the publisher starts, so they're sent as one batch
+        sut.publish(event("a.txt"));
+        sut.publish(event("b.txt"));
+        sut.publish(event("c.txt"));
+
+        // Act
+        sut.start();
+
+        // Assert
+        awaitUntil(() -> eventCount("outboxed") == 3);
+        assertThat(eventCount("published"), is(0.0));
+        assertThat(Files.readAllLines(outboxDirectory.resolve("outbox.jsonl")).size(), is(3));
+        verify(operations, times(3)).send(anyString(), anyString(), any(Message.class));
+    }
+
+    private RabbitMQProducer createProducer(int bufferCapacity, long retryMillis) {
+        return new RabbitMQProducer(rabbitTemplate, new ObjectMapper().findAndRegisterModules(), meterRegistry, true,
+                "objectstorage", "objectstorage", bufferCapacity, 100, 1000, retryMillis, outboxDirectory.toString());
+    }
+
+    private double eventCount(String outcome) {
+        return meterRegistry.get("objectstorage.events").tag("outcome", outcome).counter().count();
+    }
+
+    private static MutationEvent event(String objectName) {
+        return MutationEvent.object(MutationEvent.Type.OBJECT_UPLOADED, "mybucket", objectName, 10L);
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(condition.getAsBoolean(), is(true));
+    }
+}
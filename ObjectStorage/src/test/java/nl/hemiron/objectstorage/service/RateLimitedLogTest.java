@@ -0,0 +1,54 @@
+package nl.hemiron.objectstorage.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+
+class RateLimitedLogTest {
+
+    @Test
+    void log_WhenMoreMessagesThanAllowedPerInterval_CountsSuppressedMessagesInNextInterval() throws InterruptedException {
+        // Arrange
+        var logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        List<String> messages = new ArrayList<>();
+        logger.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                messages.add(record.getMessage());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        var sut = new RateLimitedLog(logger, 2, Duration.ofMillis(50));
+
+        // Act
+        for (int i = 0; i < 5; i++) {
+            int object = i;
+            sut.log(Level.WARNING, () -> "Could not upload object " + object);
+        }
+        Thread.sleep(100);
+        sut.log(Level.WARNING, () -> "Could not upload object 5");
+
+        // Assert
+        assertThat(messages, contains(
+                "Could not upload object 0",
+                "Could not upload object 1",
+                "Could not upload object 5 (3 similar messages suppressed)"));
+    }
+}
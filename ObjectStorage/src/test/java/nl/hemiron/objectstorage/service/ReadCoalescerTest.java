@@ -0,0 +1,46 @@
+package nl.hemiron.objectstorage.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.hemiron.objectstorage.exceptions.InternalServerErrorException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReadCoalescerTest {
+
+    @Test
+    void execute_WhenConcurrentCallOutlastsDeadline_ThrowsInternalServerErrorException() throws Exception {
+        // Arrange
+        var sut = new ReadCoalescer(true, 300_000, new SimpleMeterRegistry());
+        var callStarted = new CountDownLatch(1);
+        var callReleased = new CompletableFuture<Void>();
+        var leader = CompletableFuture.supplyAsync(() -> {
+            try {
+                return sut.execute("listDirectory", "mybucket", () -> {
+                    callStarted.countDown();
+                    callReleased.join();
+                    return "result";
+                });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        callStarted.await(5, TimeUnit.SECONDS);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50);
+
+        // Act
+        var exception = assertThrows(InternalServerErrorException.class,
+                () -> sut.execute("listDirectory", "mybucket", deadline, () -> "own result"));
+
+        // Assert
+        assertThat(exception.getMessage(), is("Timed out waiting for listDirectory of a concurrent request"));
+        callReleased.complete(null);
+        assertThat(leader.get(5, TimeUnit.SECONDS), is("result"));
+    }
+}
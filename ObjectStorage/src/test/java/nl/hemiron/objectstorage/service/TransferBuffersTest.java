@@ -0,0 +1,52 @@
+package nl.hemiron.objectstorage.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransferBuffersTest {
+
+    @Test
+    void copy_WhenClientAbortsDownload_ClosesInputAndReportsWrittenBytes() {
+        // Arrange
+        var sut = new TransferBuffers(1024, 1);
+        var closed = new AtomicBoolean();
+        var input = new ByteArrayInputStream(new byte[10 * 1024]) {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+        var output = new OutputStream() {
+            private int writes;
+
+            @Override
+            public void write(int b) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (++writes > 2) {
+                    throw new IOException("Broken pipe");
+                }
+            }
+        };
+        var written = new AtomicLong();
+
+        // Act
+        assertThrows(IOException.class, () -> sut.copy(input, output, written::addAndGet));
+
+        // Assert
+        assertThat(closed.get(), is(true));
+        assertThat(written.get(), is(2048L));
+    }
+}